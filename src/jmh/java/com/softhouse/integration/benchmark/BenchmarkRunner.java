@@ -0,0 +1,44 @@
+package com.softhouse.integration.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the JMH main class, with the GC profiler for the allocation rate and the results written
+ * to target/jmh-result.json, so runs of different releases can be compared. Profilers and result options given on the command line win.
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Keeps the StopWatch logging of the services out of the measurements.
+     */
+    private static final String LOGBACK_CONFIGURATION = "logback-benchmark.xml";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder optionsBuilder = new OptionsBuilder().parent(commandLineOptions);
+        if (commandLineOptions.getProfilers().isEmpty())
+            optionsBuilder.addProfiler(GCProfiler.class);
+        if (!commandLineOptions.getResultFormat().hasValue())
+            optionsBuilder.resultFormat(ResultFormatType.JSON);
+        if (!commandLineOptions.getResult().hasValue())
+            optionsBuilder.result("target/jmh-result.json");
+        List<String> jvmArgsAppend = new ArrayList<>(commandLineOptions.getJvmArgsAppend().orElse(List.of()));
+        jvmArgsAppend.add("-Dlogback.configurationFile=" + LOGBACK_CONFIGURATION);
+        optionsBuilder.jvmArgsAppend(jvmArgsAppend.toArray(String[]::new));
+        new Runner(optionsBuilder.build()).run();
+    }
+
+}
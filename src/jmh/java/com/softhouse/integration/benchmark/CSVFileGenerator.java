@@ -0,0 +1,97 @@
+package com.softhouse.integration.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Synthetic P/T/A/F files for the benchmarks. The same size, error rate and seed always give the same bytes.
+ * Every person is a P line followed by its phone and address and up to two families, so the record order is always valid;
+ * with an error rate a line gets a field error instead: a short name, a mobile without leading 0, a five digit year or an extra address field.
+ */
+public final class CSVFileGenerator {
+
+    private static final String[] FIRST_NAMES = {"Carl Gustaf", "Victoria", "Carl Philip", "Madeleine", "Estelle", "Oscar", "Barack", "Michelle"};
+    private static final String[] LAST_NAMES = {"Bernadotte", "Westling", "Sommerlath", "Obama", "Robinson", "Hellqvist"};
+    private static final String[] STREETS = {"Drottningholms slott", "Haga Slott", "Stockholms slott", "1600 Pennsylvania Avenue", "Solliden"};
+    private static final String[] TOWNS = {"Stockholm", "Solna", "Borgholm", "Washington, D.C"};
+
+    private CSVFileGenerator() {
+    }
+
+    /**
+     * @param size      the exact size of the file, the space after the last whole person is filled with blank lines
+     * @param errorRate the share of lines with a field error, 0 for a valid file
+     * @param seed      picks the names, numbers and erroneous lines
+     */
+    public static byte[] generate(DataSize size, double errorRate, long seed) {
+        if (size.toBytes() > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("size " + size + " does not fit in an array");
+        byte[] content = new byte[(int) size.toBytes()];
+        Random random = new Random(seed);
+        StringBuilder person = new StringBuilder();
+        int length = 0;
+        while (true) {
+            person.setLength(0);
+            appendPerson(person, random, errorRate);
+            byte[] bytes = person.toString().getBytes(StandardCharsets.UTF_8);
+            if (length + bytes.length > content.length)
+                break;
+            System.arraycopy(bytes, 0, content, length, bytes.length);
+            length += bytes.length;
+        }
+        Arrays.fill(content, length, content.length, (byte) '\n');
+        return content;
+    }
+
+    private static void appendPerson(StringBuilder sb, Random random, double errorRate) {
+        line(sb, random, errorRate, "P", pick(random, FIRST_NAMES), pick(random, LAST_NAMES));
+        appendPhone(sb, random, errorRate);
+        appendAddress(sb, random, errorRate);
+        int families = random.nextInt(3);
+        for (int f = 0; f < families; f++) {
+            line(sb, random, errorRate, "F", pick(random, FIRST_NAMES), String.valueOf(1950 + random.nextInt(70)));
+            if (random.nextBoolean())
+                appendPhone(sb, random, errorRate);
+            appendAddress(sb, random, errorRate);
+        }
+    }
+
+    private static void appendPhone(StringBuilder sb, Random random, double errorRate) {
+        int number = 100000 + random.nextInt(900000);
+        line(sb, random, errorRate, "T", "07" + random.nextInt(10) + random.nextInt(10) + "-" + number, "08-" + number);
+    }
+
+    private static void appendAddress(StringBuilder sb, Random random, double errorRate) {
+        line(sb, random, errorRate, "A", pick(random, STREETS), pick(random, TOWNS), String.valueOf(10000 + random.nextInt(90000)));
+    }
+
+    private static void line(StringBuilder sb, Random random, double errorRate, String type, String... fields) {
+        if (errorRate > 0 && random.nextDouble() < errorRate)
+            fieldError(type, fields);
+        sb.append(type);
+        for (String field : fields)
+            sb.append('|').append(field);
+        sb.append('\n');
+    }
+
+    /**
+     * Gives the line a field error while keeping its record type, so the record order stays valid.
+     */
+    private static void fieldError(String type, String[] fields) {
+        switch (type) {
+            case "P" -> fields[0] = "C";
+            case "T" -> fields[0] = fields[0].substring(1);
+            case "A" -> fields[1] = fields[1] + "|" + fields[1];
+            case "F" -> fields[1] = fields[1] + "1";
+            default -> throw new IllegalArgumentException(type);
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.softhouse.integration.benchmark;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import com.softhouse.integration.fileconverter.dto.Address;
+import com.softhouse.integration.fileconverter.dto.Family;
+import com.softhouse.integration.fileconverter.dto.ObjectToXml;
+import com.softhouse.integration.fileconverter.dto.People;
+import com.softhouse.integration.fileconverter.dto.Person;
+import com.softhouse.integration.fileconverter.dto.Phone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per request cost of marshalling a People graph under concurrent load,
+ * creating the JAXBContext for every request against the cached context with per thread marshallers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ObjectToXmlBenchmark {
+
+    @Param({"10", "1000"})
+    private int persons;
+
+    private People people;
+
+    @Setup
+    public void setUp() {
+        List<Person> personList = new ArrayList<>();
+        for (int i = 0; i < persons; i++) {
+            Person person = new Person();
+            person.setFirstname("Carl Gustaf");
+            person.setLastname("Bernadotte");
+            Address address = new Address();
+            address.setStreet("Drottningholms slott");
+            address.setTown("Stockholm");
+            address.setPostalCode("10001");
+            person.setAddress(address);
+            Phone phone = new Phone();
+            phone.setMobile("0768-101801");
+            phone.setLandPhone("08-101801");
+            person.setPhone(phone);
+            Family family = new Family();
+            family.setName("Victoria");
+            family.setBorn("1977");
+            family.setAddress(address);
+            person.getFamily().push(family);
+            personList.add(person);
+        }
+        people = new People(personList);
+    }
+
+    @Benchmark
+    public String newContextPerRequest() throws JAXBException {
+        Marshaller marshallerObj = JAXBContext.newInstance(People.class).createMarshaller();
+        marshallerObj.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        marshallerObj.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        StringWriter sw = new StringWriter();
+        marshallerObj.marshal(people, sw);
+        return sw.toString();
+    }
+
+    @Benchmark
+    public String cachedContext() throws JAXBException {
+        return ObjectToXml.INSTANCE.convertToXML(people);
+    }
+
+}
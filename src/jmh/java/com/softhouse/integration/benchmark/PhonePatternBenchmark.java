@@ -0,0 +1,59 @@
+package com.softhouse.integration.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.softhouse.integration.util.CommonEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching the mobile field of a T line: compiling both patterns per line as fieldsCheck used to,
+ * the precompiled patterns, and the scanner working on the tokenized field.
+ * Run with -prof gc to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhonePatternBenchmark {
+
+    @Param({"0768-101801             ", "08-101802", "08101801"})
+    private String mobile;
+
+    private char[] buffer;
+
+    @Setup
+    public void setUp() {
+        buffer = ("T|" + mobile + "|08-101802").toCharArray();
+    }
+
+    @Benchmark
+    public boolean compilePerLine() {
+        String value = new String(buffer, 2, mobile.length());
+        return Pattern.compile(CommonEnum.PhonePattern.MOBILE.getValue()).matcher(value.trim()).matches() || Pattern.compile(CommonEnum.PhonePattern.PHONE.getValue()).matcher(value.trim()).matches();
+    }
+
+    @Benchmark
+    public boolean precompiledPattern() {
+        String value = new String(buffer, 2, mobile.length()).trim();
+        return CommonEnum.PhonePattern.MOBILE.getPattern().matcher(value).matches() || CommonEnum.PhonePattern.PHONE.getPattern().matcher(value).matches();
+    }
+
+    @Benchmark
+    public boolean scanner() {
+        return CommonEnum.PhonePattern.matchesAny(buffer, 2, 2 + mobile.length());
+    }
+
+}
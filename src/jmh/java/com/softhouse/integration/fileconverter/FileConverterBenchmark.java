@@ -0,0 +1,185 @@
+package com.softhouse.integration.fileconverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+import com.softhouse.integration.IntegrationServiceApplicationConfiguration;
+import com.softhouse.integration.benchmark.CSVFileGenerator;
+import com.softhouse.integration.benchmark.Throughput;
+import com.softhouse.integration.fileconverter.dto.DataEntry;
+import com.softhouse.integration.fileconverter.dto.ObjectToXml;
+import com.softhouse.integration.fileconverter.dto.People;
+import com.softhouse.integration.fileconverter.dto.PeopleXmlWriter;
+import com.softhouse.integration.fileconverter.dto.PersonRecord;
+import com.softhouse.integration.fileconverter.filewriter.ErrorReportProperties;
+import com.softhouse.integration.fileconverter.filewriter.FileWriterServiceImpl;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.parser.CSVLineReader;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import com.softhouse.integration.fileconverter.record.PersonRecordCollector;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+import com.softhouse.integration.fileconverter.rules.ValidationRules;
+import com.softhouse.integration.fileconverter.rules.ValidationRulesProperties;
+import com.softhouse.integration.fileconverter.record.RecordListeners;
+import com.softhouse.integration.util.ByteArrayMultipartFile;
+import com.softhouse.integration.util.CommonEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The steps of a conversion of a valid file on their own: collecting the data entries, ObjectToXml.createPeopleByEntries,
+ * ObjectToXml.convertToXML(People) and both together as the conversion used to do, against collecting the person records
+ * and writing them with the PeopleXmlWriter as FileConverterServiceImpl does now,
+ * and the whole convertFile sequentially and in parallel chunks. Run with the GC profiler to compare the allocation of both models. Every step is counted in MB/s of the csv it comes from,
+ * so the steps of one size add up. Sizes up to 1GB are generated with -p size=1GB, which needs a larger heap (-jvmArgs -Xmx16g).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class FileConverterBenchmark {
+
+    @Param({"1KB", "1MB", "64MB"})
+    private String size;
+
+    private byte[] content;
+    private ByteArrayMultipartFile file;
+    private List<DataEntry> dataEntries;
+    private People people;
+    private FileValidatorServiceImpl sequentialValidatorService;
+    private FileValidatorServiceImpl parallelValidatorService;
+    private FileConverterServiceImpl sequentialConverterService;
+    private FileConverterServiceImpl parallelConverterService;
+    private final ConversionOptions options = new ConversionOptions();
+
+    @Setup
+    public void setUp() throws IOException {
+        content = CSVFileGenerator.generate(DataSize.parse(size), 0, 42);
+        file = new ByteArrayMultipartFile(content, "benchmark.csv", MediaType.TEXT_PLAIN_VALUE);
+        dataEntries = collectDataEntries();
+        people = ObjectToXml.INSTANCE.createPeopleByEntries(dataEntries);
+        IntegrationServiceApplicationConfiguration configuration = new IntegrationServiceApplicationConfiguration();
+        ConverterMessageCatalog converterMessageCatalog = new ConverterMessageCatalog(configuration.messageSource());
+        FileWriterServiceImpl fileWriterService = new FileWriterServiceImpl(new ErrorReportProperties());
+        ConversionMetrics conversionMetrics = FileValidatorBenchmark.conversionMetrics();
+        ParallelProperties sequential = new ParallelProperties();
+        sequential.setEnabled(false);
+        ParallelProperties parallel = new ParallelProperties();
+        parallel.setThreshold(DataSize.ofBytes(0));
+        ValidationRules validationRules = new ValidationRules(new ValidationRulesProperties());
+        sequentialValidatorService = new FileValidatorServiceImpl(converterMessageCatalog, configuration.tika(), fileWriterService, sequential, conversionMetrics, List.of(), validationRules);
+        parallelValidatorService = new FileValidatorServiceImpl(converterMessageCatalog, configuration.tika(), fileWriterService, parallel, conversionMetrics, List.of(), validationRules);
+        sequentialConverterService = new FileConverterServiceImpl(sequentialValidatorService, converterMessageCatalog, new LargeFileProperties(), conversionMetrics);
+        parallelConverterService = new FileConverterServiceImpl(parallelValidatorService, converterMessageCatalog, new LargeFileProperties(), conversionMetrics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sequentialValidatorService.shutdown();
+        parallelValidatorService.shutdown();
+    }
+
+    @Benchmark
+    public List<DataEntry> collectDataEntries(Throughput throughput) throws IOException {
+        throughput.add(content.length);
+        return collectDataEntries();
+    }
+
+    @Benchmark
+    public People createPeopleByEntries(Throughput throughput) {
+        throughput.add(content.length);
+        return ObjectToXml.INSTANCE.createPeopleByEntries(dataEntries);
+    }
+
+    @Benchmark
+    public String convertToXMLPeople(Throughput throughput) throws JAXBException {
+        throughput.add(content.length);
+        return ObjectToXml.INSTANCE.convertToXML(people);
+    }
+
+    @Benchmark
+    public String convertToXML(Throughput throughput) throws JAXBException {
+        throughput.add(content.length);
+        return ObjectToXml.INSTANCE.convertToXML(ObjectToXml.INSTANCE.createPeopleByEntries(dataEntries));
+    }
+
+    @Benchmark
+    public int collectPersonRecords(Throughput throughput) throws IOException {
+        throughput.add(content.length);
+        int[] persons = new int[1];
+        PersonRecordCollector personRecordCollector = new PersonRecordCollector(personRecord -> persons[0]++);
+        readLines(personRecordCollector);
+        personRecordCollector.finish();
+        return persons[0];
+    }
+
+    @Benchmark
+    public String convertPersonRecordsToXML(Throughput throughput) throws IOException, XMLStreamException {
+        throughput.add(content.length);
+        StringWriter stringWriter = new StringWriter();
+        PeopleXmlWriter peopleXmlWriter = new PeopleXmlWriter(stringWriter);
+        PersonRecordCollector personRecordCollector = new PersonRecordCollector(personRecord -> {
+            try {
+                peopleXmlWriter.writePerson(personRecord);
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        readLines(personRecordCollector);
+        personRecordCollector.finish();
+        peopleXmlWriter.writeEndPeople();
+        return stringWriter.toString();
+    }
+
+    @Benchmark
+    public String convertFile(Throughput throughput) {
+        throughput.add(content.length);
+        return sequentialConverterService.convertFile(file, options);
+    }
+
+    @Benchmark
+    public String convertFileParallel(Throughput throughput) {
+        throughput.add(content.length);
+        return parallelConverterService.convertFile(file, options);
+    }
+
+    private List<DataEntry> collectDataEntries() throws IOException {
+        List<DataEntry> entries = new ArrayList<>();
+        DataEntryCollector dataEntryCollector = new DataEntryCollector(entries::add);
+        readLines(dataEntryCollector);
+        dataEntryCollector.finish();
+        return entries;
+    }
+
+    private void readLines(RecordListener recordListener) throws IOException {
+        CSVLineReader lineReader = new CSVLineReader(new InputStreamReader(new ByteArrayInputStream(content)));
+        CSVLineTokenizer columns = new CSVLineTokenizer(CommonEnum.CSVDelimiter.PIPE.getValue().charAt(0));
+        for (int lineNo = 1; lineReader.readLine(); ) {
+            if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                RecordListeners.dispatch(recordListener, lineNo++, columns);
+        }
+    }
+
+}
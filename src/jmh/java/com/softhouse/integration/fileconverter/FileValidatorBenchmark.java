@@ -0,0 +1,295 @@
+package com.softhouse.integration.fileconverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.softhouse.integration.IntegrationServiceApplicationConfiguration;
+import com.softhouse.integration.benchmark.CSVFileGenerator;
+import com.softhouse.integration.benchmark.Throughput;
+import com.softhouse.integration.fileconverter.dto.CSVFieldA;
+import com.softhouse.integration.fileconverter.dto.CSVFieldF;
+import com.softhouse.integration.fileconverter.dto.CSVFieldP;
+import com.softhouse.integration.fileconverter.dto.CSVFieldT;
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.filewriter.ErrorReportProperties;
+import com.softhouse.integration.fileconverter.filewriter.FileWriterServiceImpl;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.metrics.MetricsProperties;
+import com.softhouse.integration.fileconverter.parser.CSVLineReader;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import com.softhouse.integration.fileconverter.parser.TextContentScanner;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+import com.softhouse.integration.fileconverter.rules.ValidationRules;
+import com.softhouse.integration.fileconverter.rules.ValidationRulesProperties;
+import com.softhouse.integration.util.ByteArrayMultipartFile;
+import com.softhouse.integration.util.CommonEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The checks of FileValidatorServiceImpl one by one, and the whole validation sequentially and in parallel chunks.
+ * The mime type checks only look at the prefix and count its bytes. The line checks read and tokenize the lines too,
+ * so the cost of a check is its difference to tokenize. Throughput is reported in MB/s of input ("megabytes"),
+ * the allocation rate by the GC profiler of {@link com.softhouse.integration.benchmark.BenchmarkRunner}.
+ * Sizes up to 1GB are generated with -p size=1GB, which needs a larger heap (-jvmArgs -Xmx8g).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class FileValidatorBenchmark {
+
+    private static final char DELIMITER = CommonEnum.CSVDelimiter.PIPE.getValue().charAt(0);
+
+    @Param({"1KB", "1MB", "64MB"})
+    private String size;
+
+    /**
+     * 0 for a valid file, otherwise the share of lines with a field error.
+     */
+    @Param({"0", "0.01"})
+    private double errorRate;
+
+    private byte[] content;
+    private byte[] prefix;
+    private ByteArrayMultipartFile file;
+    private ConverterMessages messages;
+    private Tika tika;
+    private FileValidatorServiceImpl fileValidatorService;
+    private final ConversionOptions options = new ConversionOptions();
+
+    @Setup
+    public void setUp() {
+        content = CSVFileGenerator.generate(DataSize.parse(size), errorRate, 42);
+        prefix = Arrays.copyOf(content, Math.min(content.length, 8192));
+        file = new ByteArrayMultipartFile(content, "benchmark.csv", MediaType.TEXT_PLAIN_VALUE);
+        IntegrationServiceApplicationConfiguration configuration = new IntegrationServiceApplicationConfiguration();
+        ConverterMessageCatalog converterMessageCatalog = new ConverterMessageCatalog(configuration.messageSource());
+        messages = converterMessageCatalog.getMessages();
+        tika = configuration.tika();
+        ParallelProperties parallelProperties = new ParallelProperties();
+        parallelProperties.setThreshold(DataSize.ofBytes(0));
+        fileValidatorService = new FileValidatorServiceImpl(converterMessageCatalog, tika, new FileWriterServiceImpl(new ErrorReportProperties()), parallelProperties, conversionMetrics(), List.of(), new ValidationRules(new ValidationRulesProperties()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fileValidatorService.shutdown();
+    }
+
+    @Benchmark
+    public boolean mimeTypeSniff(Throughput throughput) {
+        throughput.add(prefix.length);
+        return TextContentScanner.isPlainText(prefix, prefix.length);
+    }
+
+    @Benchmark
+    public String mimeTypeTika(Throughput throughput) {
+        throughput.add(prefix.length);
+        return tika.detect(prefix);
+    }
+
+    @Benchmark
+    public int textContentScan(Throughput throughput) {
+        throughput.add(content.length);
+        return new TextContentScanner(true).scan(content, 0, content.length);
+    }
+
+    @Benchmark
+    public int readLines(Throughput throughput) throws IOException {
+        throughput.add(content.length);
+        CSVLineReader lineReader = lineReader();
+        int lines = 0;
+        while (lineReader.readLine())
+            lines++;
+        return lines;
+    }
+
+    @Benchmark
+    public int tokenize(Throughput throughput) throws IOException {
+        throughput.add(content.length);
+        CSVLineReader lineReader = lineReader();
+        CSVLineTokenizer columns = new CSVLineTokenizer(DELIMITER);
+        int fields = 0;
+        while (lineReader.readLine()) {
+            if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                fields += columns.fieldCount();
+        }
+        return fields;
+    }
+
+    /**
+     * checkFirstCharacter is the same check on the first line only.
+     */
+    @Benchmark
+    public void checkFirstCharacters(Throughput throughput, Blackhole blackhole) throws IOException {
+        throughput.add(content.length);
+        CSVLinesValidator linesValidator = linesValidator();
+        CSVLineReader lineReader = lineReader();
+        CSVLineTokenizer columns = new CSVLineTokenizer(DELIMITER);
+        while (lineReader.readLine()) {
+            if (!columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                continue;
+            String type = linesValidator.recordType(columns);
+            linesValidator.checkFirstCharacters(type);
+            blackhole.consume(type);
+        }
+    }
+
+    @Benchmark
+    public void fieldsOrderCheck(Throughput throughput, Blackhole blackhole) throws IOException {
+        throughput.add(content.length);
+        CSVLinesValidator linesValidator = linesValidator();
+        CSVLineReader lineReader = lineReader();
+        CSVLineTokenizer columns = new CSVLineTokenizer(DELIMITER);
+        while (lineReader.readLine()) {
+            if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                linesValidator.fieldsOrderCheck(CSVLinesValidator.typeIndex(linesValidator.recordType(columns)));
+        }
+        blackhole.consume(linesValidator.getOrderError(0));
+    }
+
+    @Benchmark
+    public long fieldsCheck(Throughput throughput) throws IOException {
+        throughput.add(content.length);
+        CSVLinesValidator linesValidator = linesValidator();
+        CSVLineReader lineReader = lineReader();
+        CSVLineTokenizer columns = new CSVLineTokenizer(DELIMITER);
+        while (lineReader.readLine()) {
+            if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                linesValidator.fieldsCheck(linesValidator.recordType(columns), columns);
+        }
+        return linesValidator.getErrorCount();
+    }
+
+    /**
+     * The checks of the built-in rule set written out by hand, as they were before the rules were configurable,
+     * the baseline of fieldsCheck. Only the errors are counted.
+     */
+    @Benchmark
+    public long fieldsCheckHandWritten(Throughput throughput) throws IOException {
+        throughput.add(content.length);
+        CSVLinesValidator linesValidator = linesValidator();
+        CSVLineReader lineReader = lineReader();
+        CSVLineTokenizer columns = new CSVLineTokenizer(DELIMITER);
+        long errors = 0;
+        while (lineReader.readLine()) {
+            if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                errors += handWrittenFieldsCheck(linesValidator.recordType(columns), columns);
+        }
+        return errors;
+    }
+
+    private static int handWrittenFieldsCheck(String type, CSVLineTokenizer columns) {
+        int errors = 0;
+        if (CSVType.P.name().equals(type)) {
+            if (CSVFieldP.values().length != columns.fieldCount())
+                return 1;
+            if (!isAlphaSpace(columns, CSVFieldP.FIRST_NAME.ordinal()) || columns.fieldLength(CSVFieldP.FIRST_NAME.ordinal()) < 2 || columns.fieldLength(CSVFieldP.FIRST_NAME.ordinal()) > 255)
+                errors++;
+            if (!isAlphaSpace(columns, CSVFieldP.LAST_NAME.ordinal()) || columns.fieldLength(CSVFieldP.LAST_NAME.ordinal()) < 2 || columns.fieldLength(CSVFieldP.LAST_NAME.ordinal()) > 255)
+                errors++;
+        } else if (CSVType.T.name().equals(type)) {
+            if (CSVFieldT.values().length != columns.fieldCount())
+                return 1;
+            if (!CommonEnum.PhonePattern.matchesAny(columns.buffer(), columns.fieldStart(CSVFieldT.MOBILE.ordinal()), columns.fieldEnd(CSVFieldT.MOBILE.ordinal())))
+                errors++;
+        } else if (CSVType.A.name().equals(type)) {
+            if (CSVFieldA.values().length != columns.fieldCount())
+                return 1;
+        } else {
+            if (CSVFieldF.values().length != columns.fieldCount())
+                return 1;
+            if (!isAlphaSpace(columns, CSVFieldF.NAME.ordinal()) || columns.fieldLength(CSVFieldF.NAME.ordinal()) < 2 || columns.fieldLength(CSVFieldF.NAME.ordinal()) > 255)
+                errors++;
+            if (!isDigits(columns, CSVFieldF.YEAR.ordinal()) || columns.fieldLength(CSVFieldF.YEAR.ordinal()) != ConverterMessages.YEAR_DIGITS)
+                errors++;
+        }
+        return errors;
+    }
+
+    private static boolean isAlphaSpace(CSVLineTokenizer columns, int index) {
+        char[] buffer = columns.buffer();
+        for (int i = columns.fieldStart(index); i < columns.fieldEnd(index); i++) {
+            if (!Character.isLetter(buffer[i]) && buffer[i] != ' ')
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigits(CSVLineTokenizer columns, int index) {
+        if (columns.fieldLength(index) == 0)
+            return false;
+        char[] buffer = columns.buffer();
+        for (int i = columns.fieldStart(index); i < columns.fieldEnd(index); i++) {
+            if (!Character.isDigit(buffer[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    public Object validateFile(Throughput throughput) {
+        throughput.add(content.length);
+        try {
+            fileValidatorService.validateFile(file, options, RecordListener.NONE);
+            return null;
+        } catch (CSVException e) {
+            e.getErrorReport().close();
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validateFileParallel(Throughput throughput) {
+        throughput.add(content.length);
+        try {
+            return fileValidatorService.validateFileParallel(file, options, chunk -> RecordListener.NONE);
+        } catch (CSVException e) {
+            e.getErrorReport().close();
+            return e;
+        }
+    }
+
+    private CSVLineReader lineReader() {
+        return new CSVLineReader(new InputStreamReader(new ByteArrayInputStream(content)));
+    }
+
+    private CSVLinesValidator linesValidator() {
+        return new CSVLinesValidator(file.getOriginalFilename(), messages, true, new CSVErrorList(new ErrorReportProperties().getMaxErrors()));
+    }
+
+    /**
+     * Metrics in memory, without the StopWatch tables in the log.
+     */
+    static ConversionMetrics conversionMetrics() {
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setLogStopWatch(false);
+        return new ConversionMetrics(new SimpleMeterRegistry(), metricsProperties);
+    }
+
+}
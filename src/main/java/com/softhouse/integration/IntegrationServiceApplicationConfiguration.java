@@ -1,15 +1,32 @@
 package com.softhouse.integration;
 
+import com.softhouse.integration.fileconverter.LargeFileProperties;
+import com.softhouse.integration.fileconverter.admission.AdmissionProperties;
+import com.softhouse.integration.fileconverter.batch.BatchProperties;
+import com.softhouse.integration.fileconverter.cache.ResultCacheProperties;
+import com.softhouse.integration.fileconverter.ParallelProperties;
+import com.softhouse.integration.fileconverter.filewriter.ErrorReportProperties;
+import com.softhouse.integration.fileconverter.job.ConversionJobProperties;
+import com.softhouse.integration.fileconverter.lane.LaneProperties;
+import com.softhouse.integration.fileconverter.metrics.MetricsProperties;
+import com.softhouse.integration.fileconverter.record.RecordSinkProperties;
+import com.softhouse.integration.fileconverter.rules.ValidationRulesProperties;
+import com.softhouse.integration.fileconverter.warmup.WarmUpProperties;
+import com.softhouse.integration.fileconverter.watch.WatchFolderProperties;
 import org.apache.tika.Tika;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Created by Shahrooz on 02/17/2022.
  */
 @Configuration
+@EnableScheduling
+@EnableConfigurationProperties({AdmissionProperties.class, BatchProperties.class, ConversionJobProperties.class, ErrorReportProperties.class, LaneProperties.class, LargeFileProperties.class, MetricsProperties.class, ParallelProperties.class, RecordSinkProperties.class, ResultCacheProperties.class, ValidationRulesProperties.class, WarmUpProperties.class, WatchFolderProperties.class})
 public class IntegrationServiceApplicationConfiguration {
 
     @Bean
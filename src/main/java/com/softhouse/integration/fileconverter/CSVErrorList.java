@@ -0,0 +1,46 @@
+package com.softhouse.integration.fileconverter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorSink;
+
+/**
+ * Keeps the first errors of a chunk, whose line numbers are only known once the chunks before it are checked.
+ * A chunk never needs more rows than the whole report may have, so the rest is only counted.
+ */
+class CSVErrorList implements CSVErrorSink {
+
+    private final int maxErrors;
+    private final List<CSVLineErrorDTO> errors = new ArrayList<>();
+    private long suppressedCount;
+
+    CSVErrorList(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    @Override
+    public boolean isFull() {
+        return errors.size() >= maxErrors;
+    }
+
+    @Override
+    public void add(CSVLineErrorDTO error) {
+        errors.add(error);
+    }
+
+    @Override
+    public void suppress(long count) {
+        suppressedCount += count;
+    }
+
+    List<CSVLineErrorDTO> getErrors() {
+        return errors;
+    }
+
+    long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+}
@@ -0,0 +1,268 @@
+package com.softhouse.integration.fileconverter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorSink;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+import com.softhouse.integration.fileconverter.rules.RecordGrammar;
+import com.softhouse.integration.fileconverter.rules.RuleSet;
+import com.softhouse.integration.fileconverter.rules.ValidationRules;
+
+/**
+ * The line checks checkFirstCharacter, checkFirstCharacters, fieldsOrderCheck and fieldsCheck on the lines of a file, or of a chunk of it.
+ * The field checks are the ones of a compiled {@link RuleSet}, the order is checked by the state machine of its {@link RecordGrammar}.
+ * The first two throw at once, the line and state of the first order error are kept and field errors are handed to the error sink.
+ * The lines of each record type and the field errors of each message code are counted for the metrics.
+ * The record listener gets every line as long as no error is found, and every field error.
+ * A validator keeps the state of one sequence of lines and is not thread safe.
+ * The checks are package-private so the benchmarks can measure them one by one.
+ */
+class CSVLinesValidator {
+
+    private static final CSVType[] CSV_TYPE_VALUES = CSVType.values();
+    private static final List<String> CSV_TYPES = Arrays.stream(CSVType.values()).map(CSVType::name).toList();
+
+    private final String fileName;
+    private final ConverterMessages messages;
+    private final RuleSet ruleSet;
+    private final RecordGrammar grammar;
+    private final boolean fileStart;
+    private final CSVErrorSink errorSink;
+    private final RecordListener recordListener;
+    private long errorCount;
+    private boolean suppressing;
+    private FileErrorException lineError;
+    private final long[] recordCounts = new long[CSV_TYPES.size()];
+    private final Map<String, Long> errorCounts = new HashMap<>();
+    private int state;
+    private int orderErrorLine;
+    private int orderErrorState;
+    private int firstTypeIndex = -1;
+    private int lineCount;
+
+    /**
+     * A validator of the built-in rule set.
+     */
+    CSVLinesValidator(String fileName, ConverterMessages messages, boolean fileStart, CSVErrorSink errorSink) {
+        this(fileName, messages, ValidationRules.defaultRuleSet(messages), fileStart, errorSink, RecordListener.NONE);
+    }
+
+    /**
+     * @param ruleSet   the field checks, in the language of the messages
+     * @param fileStart false for a chunk which does not start the file, then the first line is not required to be a P line
+     * @param errorSink receives the field errors, numbered from the first line checked
+     */
+    CSVLinesValidator(String fileName, ConverterMessages messages, RuleSet ruleSet, boolean fileStart, CSVErrorSink errorSink, RecordListener recordListener) {
+        this.fileName = fileName;
+        this.messages = messages;
+        this.ruleSet = ruleSet;
+        this.grammar = ruleSet.getGrammar();
+        this.fileStart = fileStart;
+        this.state = fileStart ? RecordGrammar.START : RecordGrammar.ANY;
+        this.errorSink = errorSink;
+        this.recordListener = recordListener;
+    }
+
+    /**
+     * @param columns a non-blank line
+     * @return true if neither this line nor a line before has an error, then the line is handed to the record listener
+     */
+    boolean check(CSVLineTokenizer columns) {
+        lineCount++;
+        String type = recordType(columns);
+        if (lineCount == 1 && fileStart)
+            checkFirstCharacter(type);
+        checkFirstCharacters(type);
+        int typeIndex = typeIndex(type);
+        recordCounts[typeIndex]++;
+        if (lineCount == 1)
+            firstTypeIndex = typeIndex;
+        fieldsOrderCheck(typeIndex);
+        fieldsCheck(type, columns);
+        if (orderErrorLine != 0 || errorCount != 0)
+            return false;
+        switch (CSV_TYPE_VALUES[typeIndex]) {
+            case P -> recordListener.onPerson(lineCount, columns);
+            case T -> recordListener.onPhone(lineCount, columns);
+            case A -> recordListener.onAddress(lineCount, columns);
+            case F -> recordListener.onFamily(lineCount, columns);
+        }
+        return true;
+    }
+
+    CSVErrorSink getErrorSink() {
+        return errorSink;
+    }
+
+    long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return whether an error was found after the errorSink was full, past which the lines add nothing to the error csv
+     */
+    boolean isSuppressing() {
+        return suppressing;
+    }
+
+    /**
+     * @return the number of lines of each CSVType, by its ordinal
+     */
+    long[] getRecordCounts() {
+        return recordCounts;
+    }
+
+    Map<String, Long> getErrorCounts() {
+        return errorCounts;
+    }
+
+    /**
+     * @param lineOffset number of lines of the file before the first line checked
+     * @return the message of the first order error, or null
+     */
+    String getOrderError(int lineOffset) {
+        return orderErrorLine == 0 ? null : orderError(grammar, orderErrorState, lineOffset + orderErrorLine, messages);
+    }
+
+    /**
+     * @return the line of the first order error, counted from the first line checked, 0 if there is none
+     */
+    int getOrderErrorLine() {
+        return orderErrorLine;
+    }
+
+    /**
+     * Keeps the error of checkFirstCharacter or checkFirstCharacters which ended the check at the last line,
+     * so a chunk can be merged up to it before it is thrown.
+     */
+    void setLineError(FileErrorException lineError) {
+        this.lineError = lineError;
+    }
+
+    FileErrorException getLineError() {
+        return lineError;
+    }
+
+    /**
+     * @return the ordinal of the CSVType of the first line, -1 if there is none
+     */
+    int getFirstTypeIndex() {
+        return firstTypeIndex;
+    }
+
+    /**
+     * @return the state of the grammar after the last line
+     */
+    int getState() {
+        return state;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Takes the transition of the record type, the first one which is rejected is kept as the order error.
+     * The next line is checked against the record type of this line either way.
+     */
+    void fieldsOrderCheck(int typeIndex) {
+        if (grammar.next(state, typeIndex) == RecordGrammar.REJECTED && orderErrorLine == 0) {
+            orderErrorLine = lineCount;
+            orderErrorState = state;
+        }
+        state = RecordGrammar.after(typeIndex);
+    }
+
+    /**
+     * @param state  the state of the grammar before the line
+     * @param lineNo the line in the file, counted as the error csv counts it
+     */
+    static String orderError(RecordGrammar grammar, int state, int lineNo, ConverterMessages messages) {
+        return messages.getMessage("MSG_200102", grammar.previousType(state), grammar.followers(state), lineNo);
+    }
+
+    /**
+     * @return the ordinal of the CSVType of the name, -1 if there is none
+     */
+    static int typeIndex(String type) {
+        return CSV_TYPES.indexOf(type);
+    }
+
+    /**
+     * @return the name of the line's CSVType, or null if the first column is not a CSVType (or the line has only delimiters)
+     */
+    String recordType(CSVLineTokenizer columns) {
+        if (columns.fieldCount() == 0)
+            return null;
+        for (String csvType : CSV_TYPES) {
+            if (columns.fieldEquals(0, csvType))
+                return csvType;
+        }
+        return null;
+    }
+
+    void checkFirstCharacters(String type) {
+        if (type == null) {
+            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+            fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200101", Arrays.toString(CSVType.values())));
+            throw new FileErrorException("MSG_200101", fileErrorDTO);
+        }
+    }
+
+    void checkFirstCharacter(String type) {
+        if (type == null || grammar.next(RecordGrammar.START, typeIndex(type)) == RecordGrammar.REJECTED) {
+            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+            String startTypes = grammar.followers(RecordGrammar.START).stream().map(CSVType::name).collect(Collectors.joining(", "));
+            fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200100", startTypes));
+            throw new FileErrorException("MSG_200100", fileErrorDTO);
+        }
+    }
+
+    /**
+     * Runs the checks of the rule set on the line. A line of another number of fields than its rule needs gets only that error.
+     */
+    void fieldsCheck(String type, CSVLineTokenizer columns) {
+        int typeIndex = typeIndex(type);
+        RuleSet.RecordRule recordRule = typeIndex < 0 ? null : ruleSet.recordRule(typeIndex);
+        if (recordRule == null)
+            return;
+        if (recordRule.fieldCount() > 0 && recordRule.fieldCount() != columns.fieldCount()) {
+            addError(ConverterMessages.FIELDS_NEEDED, recordRule.name(), columns.fieldsToString(), recordRule.fieldsNeeded());
+            return;
+        }
+        for (RuleSet.FieldRule fieldRule : recordRule.fieldRules()) {
+            int index = fieldRule.index();
+            if (index >= columns.fieldCount()) {
+                if (!fieldRule.check().test(columns.buffer(), 0, 0))
+                    addError(fieldRule.code(), fieldRule.name(), "", fieldRule.description());
+            } else if (!fieldRule.check().test(columns.buffer(), columns.fieldStart(index), columns.fieldEnd(index)))
+                addError(fieldRule.code(), fieldRule.name(), columns.field(index), fieldRule.description());
+        }
+    }
+
+    /**
+     * A row is only built while the sink is not full, later errors are just counted.
+     */
+    private void addError(String code, String fieldName, String fieldValue, String errorDescription) {
+        errorCount++;
+        errorCounts.merge(code, 1L, Long::sum);
+        recordListener.onError(lineCount, code);
+        if (!errorSink.isFull()) {
+            errorSink.add(CSVLineErrorDTO.builder().lineNo(lineCount).fileName(fileName).fieldValue(fieldValue).fieldName(fieldName).errorDescription(errorDescription).build());
+            return;
+        }
+        suppressing = true;
+        errorSink.suppress(1);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.softhouse.integration.fileconverter;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+
+/**
+ * Options of one conversion, bound from the request parameters. An option left null takes its configured default.
+ */
+@Data
+public class ConversionOptions {
+
+    /**
+     * Most rows of the error csv, further errors are only counted in a summary row.
+     */
+    private Integer maxErrors;
+
+    /**
+     * Read the whole file once the error csv is full, so its summary row has the exact number of the errors not shown.
+     * Otherwise reading stops at the first error past maxErrors and the summary row only gives a lower bound.
+     */
+    private boolean countAllErrors;
+
+    /**
+     * Write the xml without indentation, which leaves out most of its whitespace.
+     */
+    private boolean compact;
+
+    /**
+     * Name of the rule set the fields are checked by, such as the one of a partner.
+     */
+    private String rules;
+
+    /**
+     * A file the service makes up itself, such as the ones of the warm-up. Its records are not handed to the record sinks,
+     * so nothing outside the service ever sees them. It has no setter, so no request can set it.
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean synthetic;
+
+    /**
+     * @return the options of a file the service makes up itself
+     */
+    public static ConversionOptions synthetic() {
+        ConversionOptions options = new ConversionOptions();
+        options.synthetic = true;
+        return options;
+    }
+
+}
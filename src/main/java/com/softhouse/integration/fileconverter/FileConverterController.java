@@ -1,5 +1,25 @@
 package com.softhouse.integration.fileconverter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.softhouse.integration.fileconverter.admission.AdmissionControl;
+import com.softhouse.integration.fileconverter.cache.CacheEntryOutputStream;
+import com.softhouse.integration.fileconverter.cache.CachedResult;
+import com.softhouse.integration.fileconverter.cache.ConversionResultCache;
+import com.softhouse.integration.fileconverter.cache.ResultCacheKey;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.exception.ConversionAbortedException;
+import com.softhouse.integration.fileconverter.lane.ConversionLanes;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import com.softhouse.integration.util.PathMultipartFile;
+import com.softhouse.integration.util.TeeOutputStream;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -8,19 +28,135 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Created by Shahrooz on 02/17/2022.
+ * <p>
+ * Uploads may be compressed with gzip or zstd, they are decompressed as a stream while they are read, up to the
+ * max decoded size of {@link LargeFileProperties}. The cache key is the hash of the upload as it is sent.
+ * Conversions run in the {@link ConversionLanes} by the plain size of the upload, but for the one of the raw body, which reads the network while it converts.
  */
 @RestController
 @RequiredArgsConstructor
 public class FileConverterController {
 
+    /**
+     * Request attributes of Tomcat's sendfile, which sends a file straight from the page cache to the socket.
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final FileConverterService fileConverterService;
+    private final ConversionResultCache conversionResultCache;
+    private final ConversionLanes conversionLanes;
+    private final LargeFileProperties largeFileProperties;
+    private final AdmissionControl admissionControl;
 
     @PostMapping(value = "/convertFile", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> convertFile(@RequestParam(name = "file") MultipartFile file) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(fileConverterService.convertFile(file));
+    public ResponseEntity<?> convertFile(@RequestParam(name = "file") MultipartFile file, ConversionOptions options, HttpServletRequest request) throws IOException {
+        MultipartFile decodedFile = decode(file, request);
+        return conversionLanes.run(conversionLanes.laneSize(decodedFile), () -> convert(file, decodedFile, options, request));
+    }
+
+    private ResponseEntity<?> convert(MultipartFile file, MultipartFile decodedFile, ConversionOptions options, HttpServletRequest request) throws IOException {
+        ResultCacheKey key = conversionResultCache.key(file, options);
+        Optional<CachedResult> cachedResult = conversionResultCache.get(key);
+        if (cachedResult.isPresent())
+            return cachedResponse(cachedResult.get(), new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8), request, CachedResult::toResource);
+        try {
+            String xml = fileConverterService.convertFile(decodedFile, options);
+            conversionResultCache.putXml(key, xml);
+            return ResponseEntity.status(HttpStatus.CREATED).body(xml);
+        } catch (CSVException e) {
+            conversionResultCache.putErrors(key, e.getErrorReport());
+            throw e;
+        }
+    }
+
+    @PostMapping(value = "/convertFile/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertFileStreaming(@RequestParam(name = "file") MultipartFile file, ConversionOptions options, HttpServletRequest request) throws IOException {
+        ResultCacheKey key = conversionResultCache.key(file, options);
+        Optional<CachedResult> cachedResult = conversionResultCache.get(key);
+        if (cachedResult.isPresent())
+            return cachedResponse(cachedResult.get(), MediaType.APPLICATION_XML, request, result -> result::writeTo);
+        MultipartFile decodedFile = decode(file, request);
+        StreamingResponseBody body;
+        try {
+            body = conversionLanes.runStreaming(conversionLanes.laneSize(decodedFile), () -> fileConverterService.convertFileStreaming(decodedFile, options));
+        } catch (CSVException e) {
+            conversionResultCache.putErrors(key, e.getErrorReport());
+            throw e;
+        }
+        StreamingResponseBody cachingBody = outputStream -> {
+            try (CacheEntryOutputStream cacheEntry = conversionResultCache.xmlOutputStream(key)) {
+                body.writeTo(new TeeOutputStream(outputStream, cacheEntry));
+                cacheEntry.commit();
+            }
+        };
+        return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_XML).body(cachingBody);
+    }
+
+    /**
+     * The upload is spooled on the request thread, so a slow client does not hold a lane thread, and the spooled file
+     * is converted in the lane of its plain size.
+     */
+    @PostMapping(value = "/convertLargeFile", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<StreamingResponseBody> convertLargeFile(@RequestParam(name = "fileName", defaultValue = "file.csv") String fileName, InputStream inputStream, ConversionOptions options) throws IOException {
+        PathMultipartFile file = fileConverterService.spoolLargeFile(fileName, inputStream);
+        StreamingResponseBody body;
+        try {
+            body = conversionLanes.runStreaming(file.getSize(), () -> fileConverterService.convertLargeFile(file, options));
+        } catch (RuntimeException | IOException e) {
+            Files.deleteIfExists(file.getPath());
+            throw e;
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_XML).body(body);
+    }
+
+    /**
+     * The body is validated and converted while it arrives, without the multipart resolver buffering it first, and the xml is sent
+     * as the persons are found valid. A body found invalid within the hold-back of {@link LargeFileProperties} gets the error csv,
+     * a later one has its response aborted, see {@link ConversionAbortedException}.
+     * The conversion waits on the network as long as the upload takes, so it runs on the request thread rather than in a lane.
+     * It is not cached, its hash is only known once it is read.
+     */
+    @PostMapping(value = "/convertFile/body", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public void convertFileBody(@RequestParam(name = "fileName", defaultValue = "file.csv") String fileName, InputStream inputStream, ConversionOptions options, HttpServletResponse response) {
+        fileConverterService.convertStream(fileName, inputStream, options, () -> {
+            response.setStatus(HttpStatus.CREATED.value());
+            response.setContentType(MediaType.APPLICATION_XML_VALUE);
+            return response.getOutputStream();
+        });
+    }
+
+    /**
+     * A compressed upload is charged by its plain size, see {@link AdmissionControl#chargeDecoded}.
+     */
+    private MultipartFile decode(MultipartFile file, HttpServletRequest request) throws IOException {
+        MultipartFile decodedFile = DecodedMultipartFile.of(file, largeFileProperties.getMaxDecodedSize().toBytes());
+        admissionControl.chargeDecoded(request, decodedFile);
+        return decodedFile;
+    }
+
+    /**
+     * An xml is answered as a converted file, an error csv as the advice answers a CSVException.
+     * A result file is handed to Tomcat's sendfile if the connector supports it, otherwise it is copied to the response by the body.
+     */
+    private <T> ResponseEntity<T> cachedResponse(CachedResult cachedResult, MediaType xmlMediaType, HttpServletRequest request, Function<CachedResult, T> body) throws IOException {
+        boolean xml = cachedResult.type() == CachedResult.Type.XML;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(xml ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST)
+                .contentType(xml ? xmlMediaType : MediaType.TEXT_PLAIN)
+                .contentLength(cachedResult.size());
+        if (cachedResult.isOnDisk() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, cachedResult.file().toRealPath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, cachedResult.size());
+            return response.build();
+        }
+        return response.body(body.apply(cachedResult));
     }
 
 }
@@ -1,10 +1,38 @@
 package com.softhouse.integration.fileconverter;
 
+import java.io.InputStream;
+
+import com.softhouse.integration.util.HoldBackOutputStream;
+import com.softhouse.integration.util.PathMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Created by Shahrooz on 02/17/2022.
  */
 public interface FileConverterService {
-    String convertFile(MultipartFile file);
+    String convertFile(MultipartFile file, ConversionOptions options);
+
+    /**
+     * Validates the file, then returns a body which converts it straight to the response output person by person.
+     */
+    StreamingResponseBody convertFileStreaming(MultipartFile file, ConversionOptions options);
+
+    /**
+     * Spools the input to a local file, decompressing a gzip or zstd input on the way, for {@link #convertLargeFile(PathMultipartFile, ConversionOptions)}.
+     * A caller which does not get as far as converting it removes the file itself.
+     */
+    PathMultipartFile spoolLargeFile(String fileName, InputStream inputStream);
+
+    /**
+     * Converts a spooled file like {@link #convertFileStreaming(MultipartFile, ConversionOptions)}, reading it through memory-mapped windows.
+     * The file is removed once the body is written, or at once if the conversion fails.
+     */
+    StreamingResponseBody convertLargeFile(PathMultipartFile file, ConversionOptions options);
+
+    /**
+     * Validates and converts a request body in a single read while it is still arriving, decompressing a gzip or zstd body on the way.
+     * The xml is written to the target as the persons are found valid, once more than the hold-back of the large file settings is written.
+     */
+    void convertStream(String fileName, InputStream inputStream, ConversionOptions options, HoldBackOutputStream.Target xmlTarget);
 }
@@ -1,34 +1,50 @@
 package com.softhouse.integration.fileconverter;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Pattern;
-import javax.xml.bind.JAXBException;
-
-import com.softhouse.integration.fileconverter.dto.Address;
-import com.softhouse.integration.fileconverter.dto.CSVFieldA;
-import com.softhouse.integration.fileconverter.dto.CSVFieldF;
-import com.softhouse.integration.fileconverter.dto.CSVFieldP;
-import com.softhouse.integration.fileconverter.dto.CSVFieldT;
-import com.softhouse.integration.fileconverter.dto.CSVType;
-import com.softhouse.integration.fileconverter.dto.DataEntry;
-import com.softhouse.integration.fileconverter.dto.Family;
-import com.softhouse.integration.fileconverter.dto.ObjectToXml;
-import com.softhouse.integration.fileconverter.dto.Phone;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.stream.XMLStreamException;
+
+import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
+import com.softhouse.integration.fileconverter.dto.PeopleXmlWriter;
+import com.softhouse.integration.fileconverter.dto.PersonRecord;
+import com.softhouse.integration.fileconverter.exception.ConversionAbortedException;
 import com.softhouse.integration.fileconverter.exception.FileConverterServiceUnavailableException;
+import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.parser.CSVLineReader;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import com.softhouse.integration.fileconverter.record.PersonRecordCollector;
+import com.softhouse.integration.fileconverter.record.RecordListeners;
 import com.softhouse.integration.util.CommonEnum;
+import com.softhouse.integration.util.ContentEncoding;
+import com.softhouse.integration.util.CountingOutputStream;
+import com.softhouse.integration.util.HoldBackOutputStream;
+import com.softhouse.integration.util.PathMultipartFile;
+import com.softhouse.integration.util.SizeLimitExceededException;
+import com.softhouse.integration.util.StreamMultipartFile;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.MessageSource;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Created by Shahrooz on 02/17/2022.
@@ -38,84 +54,293 @@ import org.springframework.web.multipart.MultipartFile;
 public class FileConverterServiceImpl implements FileConverterService {
 
     private final FileValidatorService fileValidatorService;
-    private final MessageSource messageSource;
+    private final ConverterMessageCatalog converterMessageCatalog;
+    private final LargeFileProperties largeFileProperties;
+    private final ConversionMetrics conversionMetrics;
 
-    public FileConverterServiceImpl(FileValidatorService fileValidatorService, MessageSource messageSource) {
+    public FileConverterServiceImpl(FileValidatorService fileValidatorService, ConverterMessageCatalog converterMessageCatalog, LargeFileProperties largeFileProperties, ConversionMetrics conversionMetrics) {
         this.fileValidatorService = fileValidatorService;
-        this.messageSource = messageSource;
+        this.converterMessageCatalog = converterMessageCatalog;
+        this.largeFileProperties = largeFileProperties;
+        this.conversionMetrics = conversionMetrics;
     }
 
     /**
-     * First a set of validation is run, if it is successful, then converted xml file is returned.
-     * For XML conversions JAXB api is used.
+     * Validation and conversion happen in one read of the file: every person is written to the xml as soon as its lines are read,
+     * from a {@link PersonRecord} reused person after person, so only the xml grows with the file. If the file is valid,
+     * the xml is returned. It is the same xml as the JAXB mapping of the file used to give, see {@link PeopleXmlWriter}.
      * <p>
-     * Running time measured to see which method is bottleneck.
+     * Running time of each phase and the size of the xml are recorded in the metrics.
      *
-     * @param file The file to be converted to XML
+     * @param file    The file to be converted to XML
+     * @param options The most rows of the error csv, and whether the xml is compact
      * @return xml converted file, or a csv file containing the error(s)
      */
     @Override
-    public String convertFile(MultipartFile file) {
+    public String convertFile(MultipartFile file, ConversionOptions options) {
+        if (fileValidatorService.isParallel(file))
+            return convertFileParallel(file, options);
+        ConverterMessages messages = converterMessageCatalog.getMessages();
         StopWatch stopWatch = new StopWatch("convertFile");
-        stopWatch.start("validateFile");
-        fileValidatorService.validateFile(file);
+        stopWatch.start("validateAndConvert");
+        XmlFragment xml = xmlFragment(file, messages, false, options.isCompact());
+        fileValidatorService.validateFile(file, options, xml.personRecordCollector());
         stopWatch.stop();
-        stopWatch.start("convertToXML");
-        String xmlStr = convertToXML(file);
+        stopWatch.start("writeEndPeople");
+        String xmlStr;
+        try {
+            xmlStr = xml.finish().toString();
+        } catch (XMLStreamException e) {
+            throw convertException(file, e, messages);
+        }
         stopWatch.stop();
-        log.info("file with size={} converted, running time (s) = {}", file.getSize(), stopWatch.getTotalTimeSeconds());
-        log.info("{}", stopWatch.prettyPrint());
+        log.debug("file with size={} converted, running time (s) = {}", file.getSize(), stopWatch.getTotalTimeSeconds());
+        conversionMetrics.record(stopWatch);
+        conversionMetrics.output("xml", xmlStr);
         return xmlStr;
     }
 
-    private String convertToXML(MultipartFile file) {
-        List<DataEntry> dataEntries = new ArrayList<>();
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+    /**
+     * The file is split into chunks at P records, and each chunk is converted by the thread validating it into an xml fragment
+     * of its persons. The fragments are joined in file order, which gives the same xml as the sequential conversion.
+     */
+    private String convertFileParallel(MultipartFile file, ConversionOptions options) {
+        ConverterMessages messages = converterMessageCatalog.getMessages();
+        StopWatch stopWatch = new StopWatch("convertFileParallel");
+        stopWatch.start("validateAndConvertChunks");
+        Map<Integer, XmlFragment> xmlFragments = new ConcurrentHashMap<>();
+        int chunkCount = fileValidatorService.validateFileParallel(file, options, chunk -> xmlFragments.computeIfAbsent(chunk, i -> xmlFragment(file, messages, true, options.isCompact())).personRecordCollector());
+        stopWatch.stop();
+        stopWatch.start("joinFragments");
+        StringBuilder xml = new StringBuilder("<people>");
+        boolean hasPerson = false;
+        for (int i = 0; i < chunkCount; i++) {
+            XmlFragment xmlFragment = xmlFragments.get(i);
+            try {
+                xml.append(xmlFragment.finish());
+            } catch (XMLStreamException e) {
+                throw convertException(file, e, messages);
+            }
+            hasPerson |= xmlFragment.peopleXmlWriter().hasPerson();
+        }
+        String xmlStr = hasPerson ? xml.append(options.isCompact() ? "</people>" : "\n</people>").toString() : "<people/>";
+        stopWatch.stop();
+        log.debug("file with size={} converted in {} chunks, running time (s) = {}", file.getSize(), chunkCount, stopWatch.getTotalTimeSeconds());
+        conversionMetrics.record(stopWatch);
+        conversionMetrics.output("xml", xmlStr);
+        return xmlStr;
+    }
+
+    /**
+     * @param fragment true for the persons of a chunk only, false for the whole people element
+     */
+    private XmlFragment xmlFragment(MultipartFile file, ConverterMessages messages, boolean fragment, boolean compact) {
+        try {
+            StringWriter stringWriter = new StringWriter();
+            PeopleXmlWriter peopleXmlWriter = new PeopleXmlWriter(stringWriter, fragment, compact);
+            return new XmlFragment(stringWriter, peopleXmlWriter, new PersonRecordCollector(personRecord -> writePerson(file, peopleXmlWriter, personRecord, messages)));
+        } catch (XMLStreamException e) {
+            throw convertException(file, e, messages);
+        }
+    }
+
+    /**
+     * The file is validated first, so the response status is known before any xml is written.
+     * Then the file is read a second time and every person is written to the response as soon as its lines are read,
+     * so only one person is held in memory whatever the size of the file.
+     *
+     * @param file    The file to be converted to XML
+     * @param options The most rows of the error csv, and whether the xml is compact
+     * @return a body writing the xml converted file, or a csv file containing the error(s) is thrown
+     */
+    @Override
+    public StreamingResponseBody convertFileStreaming(MultipartFile file, ConversionOptions options) {
+        fileValidatorService.validateFile(file, options);
+        ConverterMessages messages = converterMessageCatalog.getMessages();
+        return outputStream -> writeXML(file, outputStream, options.isCompact(), messages);
+    }
+
+    /**
+     * The upload is read from the network here, so the caller can do it before the conversion takes a lane thread.
+     *
+     * @param fileName    The name used in the error csv
+     * @param inputStream The file to be converted to XML
+     * @return the spooled file, read through memory-mapped windows
+     */
+    @Override
+    public PathMultipartFile spoolLargeFile(String fileName, InputStream inputStream) {
+        return new PathMultipartFile(spool(fileName, inputStream), fileName, MediaType.TEXT_PLAIN_VALUE, largeFileProperties.getWindowSize().toBytes());
+    }
+
+    /**
+     * Only the spooled file grows with the input: both the validation and the conversion read it through
+     * memory-mapped windows and the xml is streamed, so the same xml and error csv as {@link #convertFile(MultipartFile, ConversionOptions)}
+     * are produced for files far beyond the multipart limit. The spooled file is removed once the body is written.
+     *
+     * @param file    The file spooled by {@link #spoolLargeFile(String, InputStream)}
+     * @param options The most rows of the error csv, and whether the xml is compact
+     * @return a body writing the xml converted file, or a csv file containing the error(s) is thrown
+     */
+    @Override
+    public StreamingResponseBody convertLargeFile(PathMultipartFile file, ConversionOptions options) {
+        try {
+            StreamingResponseBody body = convertFileStreaming(file, options);
+            return outputStream -> {
+                try {
+                    body.writeTo(outputStream);
+                } finally {
+                    deleteQuietly(file.getPath());
+                }
+            };
+        } catch (RuntimeException e) {
+            deleteQuietly(file.getPath());
+            throw e;
+        }
+    }
+
+    /**
+     * The body is read by the validation, which hands every person to the xml as soon as its lines are read, so reading
+     * the network, validating, converting and sending overlap. The xml is held back as far as the hold-back of the large file settings,
+     * so a body found invalid within it gets the error csv. Once the target is opened, a body found invalid or a failed conversion
+     * is thrown as a {@link ConversionAbortedException}, as the xml sent can not be taken back.
+     *
+     * @param fileName    The name used in the error csv
+     * @param inputStream The request body to be converted to XML
+     * @param options     The most rows of the error csv, and whether the xml is compact
+     * @param xmlTarget   Opens the output of the xml, such as the response once its status is set
+     */
+    @Override
+    public void convertStream(String fileName, InputStream inputStream, ConversionOptions options, HoldBackOutputStream.Target xmlTarget) {
+        ConverterMessages messages = converterMessageCatalog.getMessages();
+        StreamMultipartFile file;
+        try {
+            file = new StreamMultipartFile(ContentEncoding.decodeIfCompressed(inputStream, largeFileProperties.getMaxDecodedSize().toBytes()), fileName, MediaType.TEXT_PLAIN_VALUE);
+        } catch (IOException e) {
+            log.error("MSG_200313", e);
+            throw new FileConverterServiceUnavailableException(messages.getMessage("MSG_200313", fileName), e);
+        }
+        StopWatch stopWatch = new StopWatch("convertStream");
+        stopWatch.start("validateAndConvert");
+        HoldBackOutputStream holdBackOutputStream = new HoldBackOutputStream(xmlTarget, (int) largeFileProperties.getHoldBack().toBytes());
+        CountingOutputStream countingOutputStream = new CountingOutputStream(holdBackOutputStream);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(countingOutputStream, StandardCharsets.UTF_8));
+            PeopleXmlWriter peopleXmlWriter = new PeopleXmlWriter(writer, false, options.isCompact());
+            PersonRecordCollector personRecordCollector = new PersonRecordCollector(personRecord -> writePerson(file, peopleXmlWriter, personRecord, messages));
+            fileValidatorService.validateFile(file, options, personRecordCollector);
+            personRecordCollector.finish();
+            peopleXmlWriter.writeEndPeople();
+            // closed only once the body is found valid, as closing opens the target for the xml held back
+            writer.close();
+        } catch (IOException | XMLStreamException e) {
+            throw aborted(file, holdBackOutputStream, convertException(file, e, messages));
+        } catch (RuntimeException e) {
+            throw aborted(file, holdBackOutputStream, e);
+        }
+        stopWatch.stop();
+        log.debug("file with size={} converted while read, running time (s) = {}", file.getSize(), stopWatch.getTotalTimeSeconds());
+        conversionMetrics.record(stopWatch);
+        conversionMetrics.output("xml", countingOutputStream.getCount());
+    }
+
+    /**
+     * @return the exception as it is while the xml is held back, otherwise a {@link ConversionAbortedException}
+     */
+    private RuntimeException aborted(MultipartFile file, HoldBackOutputStream holdBackOutputStream, RuntimeException e) {
+        if (!holdBackOutputStream.isOpened())
+            return e;
+        log.info("conversion of {} aborted after a part of the xml was sent, {}", file.getOriginalFilename(), e.getMessage());
+        return new ConversionAbortedException(e.getMessage(), e);
+    }
+
+    private Path spool(String fileName, InputStream inputStream) {
+        Path spoolFile = null;
+        try {
+            Files.createDirectories(largeFileProperties.getDirectory());
+            spoolFile = Files.createTempFile(largeFileProperties.getDirectory(), "upload-", ".csv");
+            try (InputStream plainInputStream = ContentEncoding.decodeIfCompressed(inputStream, largeFileProperties.getMaxDecodedSize().toBytes())) {
+                Files.copy(plainInputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return spoolFile;
+        } catch (SizeLimitExceededException e) {
+            deleteQuietly(spoolFile);
+            log.info("file {} rejected, {} when decompressed", fileName, e.getMessage());
+            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+            fileErrorDTO.getGeneralErrors().add(converterMessageCatalog.getMessages().getMessage("MSG_200331", fileName, DataSize.ofBytes(e.getLimit())));
+            conversionMetrics.errors("MSG_200331", 1);
+            throw new FileErrorException("MSG_200331", fileErrorDTO);
+        } catch (IOException e) {
+            if (spoolFile != null)
+                deleteQuietly(spoolFile);
+            log.error("MSG_200313", e);
+            throw new FileConverterServiceUnavailableException(converterMessageCatalog.getMessages().getMessage("MSG_200313", fileName), e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("can not delete {}", path, e);
+        }
+    }
+
+    private void writeXML(MultipartFile file, OutputStream outputStream, boolean compact, ConverterMessages messages) {
+        StopWatch stopWatch = new StopWatch("convertFileStreaming");
+        stopWatch.start("writeXML");
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
         try (InputStream inputStream = file.getInputStream()) {
             try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
                 try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    AtomicReference<DataEntry> dataEntry = new AtomicReference<>(new DataEntry());
-                    bufferedReader.lines().filter(line -> !line.trim().isEmpty()).map(line -> line.trim().split(Pattern.quote(CommonEnum.CSVDelimiter.PIPE.getValue()))).forEach(columns -> {
-                        if (CSVType.P.name().equals(columns[0])) {
-                            dataEntry.set(new DataEntry());
-                            dataEntry.get().setFirstName(columns[CSVFieldP.FIRST_NAME.ordinal()]);
-                            dataEntry.get().setLastName(columns[CSVFieldP.LAST_NAME.ordinal()]);
-                            dataEntries.add(dataEntry.get());
-                        } else if (CSVType.T.name().equals(columns[0])) {
-                            if (dataEntry.get().getFamilies().isEmpty()) {
-                                dataEntry.get().setMobile(columns[CSVFieldT.MOBILE.ordinal()]);
-                                dataEntry.get().setLandPhone(columns[CSVFieldT.PHONE.ordinal()]);
-                            } else {
-                                Phone phone = new Phone();
-                                phone.setMobile(columns[CSVFieldT.MOBILE.ordinal()]);
-                                phone.setLandPhone(columns[CSVFieldT.PHONE.ordinal()]);
-                                dataEntry.get().getFamilies().peek().setPhone(phone);
-                            }
-                        } else if (CSVType.A.name().equals(columns[0])) {
-                            if (dataEntry.get().getFamilies().isEmpty()) {
-                                dataEntry.get().setStreet(columns[CSVFieldA.ADDRESS.ordinal()]);
-                                dataEntry.get().setTown(columns[CSVFieldA.TOWN.ordinal()]);
-                                dataEntry.get().setPostalCode(columns[CSVFieldA.POSTAL_CODE.ordinal()]);
-                            } else {
-                                Address address = new Address();
-                                address.setTown(columns[CSVFieldA.TOWN.ordinal()]);
-                                address.setStreet(columns[CSVFieldA.ADDRESS.ordinal()]);
-                                address.setPostalCode(columns[CSVFieldA.POSTAL_CODE.ordinal()]);
-                                dataEntry.get().getFamilies().peek().setAddress(address);
-                            }
-                        } else {
-                            Family family = new Family();
-                            family.setName(columns[CSVFieldF.NAME.ordinal()]);
-                            family.setBorn(columns[CSVFieldF.YEAR.ordinal()]);
-                            dataEntry.get().getFamilies().add(family);
-                        }
-                    });
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(countingOutputStream, StandardCharsets.UTF_8));
+                    PeopleXmlWriter peopleXmlWriter = new PeopleXmlWriter(writer, false, compact);
+                    PersonRecordCollector personRecordCollector = new PersonRecordCollector(personRecord -> writePerson(file, peopleXmlWriter, personRecord, messages));
+                    CSVLineReader lineReader = new CSVLineReader(bufferedReader);
+                    CSVLineTokenizer columns = new CSVLineTokenizer(CommonEnum.CSVDelimiter.PIPE.getValue().charAt(0));
+                    for (int lineNo = 1; lineReader.readLine(); ) {
+                        if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                            RecordListeners.dispatch(personRecordCollector, lineNo++, columns);
+                    }
+                    personRecordCollector.finish();
+                    peopleXmlWriter.writeEndPeople();
+                    writer.flush();
                 }
             }
-            return ObjectToXml.INSTANCE.convertToXML(ObjectToXml.INSTANCE.createPeopleByEntries(dataEntries));
-        } catch (IOException | JAXBException e) {
-            log.error("MSG_200106", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200106", new String[]{fileName}, new Locale("en")), e);
+        } catch (IOException | XMLStreamException e) {
+            throw convertException(file, e, messages);
+        }
+        stopWatch.stop();
+        log.debug("file with size={} streamed, running time (s) = {}", file.getSize(), stopWatch.getTotalTimeSeconds());
+        conversionMetrics.record(stopWatch);
+        conversionMetrics.output("xml", countingOutputStream.getCount());
+    }
+
+    private void writePerson(MultipartFile file, PeopleXmlWriter peopleXmlWriter, PersonRecord personRecord, ConverterMessages messages) {
+        try {
+            peopleXmlWriter.writePerson(personRecord);
+        } catch (XMLStreamException e) {
+            throw convertException(file, e, messages);
+        }
+    }
+
+    /**
+     * The messages are passed in, since the streaming body does not run on the request thread which knows the request locale.
+     */
+    private FileConverterServiceUnavailableException convertException(MultipartFile file, Exception e, ConverterMessages messages) {
+        log.error("MSG_200106", e);
+        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+        return new FileConverterServiceUnavailableException(messages.getMessage("MSG_200106", fileName), e);
+    }
+
+    private record XmlFragment(StringWriter stringWriter, PeopleXmlWriter peopleXmlWriter, PersonRecordCollector personRecordCollector) {
+
+        /**
+         * Writes the last person and closes the xml.
+         */
+        StringBuffer finish() throws XMLStreamException {
+            personRecordCollector.finish();
+            peopleXmlWriter.writeEndPeople();
+            return stringWriter.getBuffer();
         }
     }
 
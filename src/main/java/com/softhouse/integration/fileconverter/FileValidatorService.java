@@ -1,5 +1,8 @@
 package com.softhouse.integration.fileconverter;
 
+import java.util.function.IntFunction;
+
+import com.softhouse.integration.fileconverter.record.RecordListener;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -7,6 +10,25 @@ import org.springframework.web.multipart.MultipartFile;
  */
 public interface FileValidatorService {
 
-    void validateFile(MultipartFile file);
+    void validateFile(MultipartFile file, ConversionOptions options);
+
+    /**
+     * Validates the file in one read, handing every record that is valid so far to the given listener and to the registered
+     * record sinks, so the caller can build its output in the same pass.
+     */
+    void validateFile(MultipartFile file, ConversionOptions options, RecordListener recordListener);
+
+    /**
+     * @return true if the file is large enough to be split into chunks which are validated in parallel
+     */
+    boolean isParallel(MultipartFile file);
+
+    /**
+     * Validates the file in chunks which start at a P record, handing the valid records of each chunk to the listener
+     * given for its index, with line numbers counted from the start of the chunk. The result is the same as of the sequential validation.
+     *
+     * @return the number of chunks
+     */
+    int validateFileParallel(MultipartFile file, ConversionOptions options, IntFunction<RecordListener> chunkListeners);
 
 }
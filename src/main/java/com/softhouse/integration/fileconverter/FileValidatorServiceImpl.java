@@ -1,40 +1,67 @@
 package com.softhouse.integration.fileconverter;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 
-import com.softhouse.integration.fileconverter.dto.CSVFieldA;
-import com.softhouse.integration.fileconverter.dto.CSVFieldF;
-import com.softhouse.integration.fileconverter.dto.CSVFieldP;
-import com.softhouse.integration.fileconverter.dto.CSVFieldT;
-import com.softhouse.integration.fileconverter.dto.CSVFollowerF;
-import com.softhouse.integration.fileconverter.dto.CSVFollowerP;
 import com.softhouse.integration.fileconverter.dto.CSVType;
 import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
 import com.softhouse.integration.fileconverter.exception.CSVException;
 import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
 import com.softhouse.integration.fileconverter.exception.FileConverterServiceUnavailableException;
 import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorSink;
 import com.softhouse.integration.fileconverter.filewriter.FileWriterService;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.parser.BinaryContentException;
+import com.softhouse.integration.fileconverter.parser.CSVChunkSplitter;
+import com.softhouse.integration.fileconverter.parser.CSVLineReader;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import com.softhouse.integration.fileconverter.parser.TextContentInputStream;
+import com.softhouse.integration.fileconverter.parser.TextContentScanner;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+import com.softhouse.integration.fileconverter.record.RecordListeners;
+import com.softhouse.integration.fileconverter.record.RecordSink;
+import com.softhouse.integration.fileconverter.rules.RecordGrammar;
+import com.softhouse.integration.fileconverter.rules.RuleSet;
+import com.softhouse.integration.fileconverter.rules.ValidationRules;
+import com.softhouse.integration.util.ByteBufferInputStream;
 import com.softhouse.integration.util.CommonEnum;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import com.softhouse.integration.util.PathMultipartFile;
+import com.softhouse.integration.util.SizeLimitExceededException;
+import com.softhouse.integration.util.StreamMultipartFile;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.tika.Tika;
-import org.springframework.context.MessageSource;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -44,216 +71,481 @@ import org.springframework.web.multipart.MultipartFile;
 @Component
 public class FileValidatorServiceImpl implements FileValidatorService {
 
-    private final MessageSource messageSource;
+    /**
+     * Bytes read to decide whether a file is plain text, Tika reads about as many.
+     */
+    private static final int TEXT_PREFIX_SIZE = 8192;
+    private static final String RECORD_TYPES = Arrays.stream(CSVType.values()).map(CSVType::name).collect(Collectors.joining());
+
+    private final ConverterMessageCatalog converterMessageCatalog;
     private final Tika tika;
     private final FileWriterService fileWriterService;
+    private final ParallelProperties parallelProperties;
+    private final ConversionMetrics conversionMetrics;
+    private final List<RecordSink> recordSinks;
+    private final ValidationRules validationRules;
+    private final ForkJoinPool forkJoinPool;
 
-    public FileValidatorServiceImpl(MessageSource messageSource, Tika tika, FileWriterService fileWriterService) {
-        this.messageSource = messageSource;
+    public FileValidatorServiceImpl(ConverterMessageCatalog converterMessageCatalog, Tika tika, FileWriterService fileWriterService, ParallelProperties parallelProperties, ConversionMetrics conversionMetrics, List<RecordSink> recordSinks, ValidationRules validationRules) {
+        this.converterMessageCatalog = converterMessageCatalog;
         this.tika = tika;
         this.fileWriterService = fileWriterService;
+        this.parallelProperties = parallelProperties;
+        this.conversionMetrics = conversionMetrics;
+        this.recordSinks = recordSinks;
+        this.validationRules = validationRules;
+        this.forkJoinPool = new ForkJoinPool(parallelProperties.getParallelism());
+        if (parallelProperties.isEnabled() && !recordSinks.isEmpty())
+            log.warn("record sinks {} need the records in file order, large files are validated sequentially",
+                    recordSinks.stream().map(recordSink -> recordSink.getClass().getSimpleName()).toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    @Override
+    public void validateFile(MultipartFile file, ConversionOptions options) {
+        if (isParallel(file))
+            validateFileParallel(file, options, chunk -> RecordListener.NONE);
+        else
+            validateFile(file, options, RecordListener.NONE);
     }
 
     /**
-     * Several check will be run in turn:
-     * emptyCheck, mimeTypeCheck, checkFirstCharacter, checkFirstCharacters, fieldsOrderCheck, fieldsCheck
-     * IF an Error is found the makeErrorCSVText will be run, and thrown.
+     * A compressed upload is only read as a stream, splitting it into chunks would need its plain content in the heap.
+     * Neither is a request body which is still arriving, nor a file while record sinks are registered, they need its records in file order.
+     */
+    @Override
+    public boolean isParallel(MultipartFile file) {
+        return parallelProperties.isEnabled() && recordSinks.isEmpty() && file != null && !(file instanceof DecodedMultipartFile) && !(file instanceof StreamMultipartFile) && file.getSize() >= parallelProperties.getThreshold().toBytes() && file.getSize() <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * The checks emptyCheck, mimeTypeCheck, checkFirstCharacter, checkFirstCharacters, fieldsOrderCheck and fieldsCheck
+     * are all run on a single read of the file. The result is the same as running them in turn:
+     * the first three fail fast, an order error is kept until the end of the file (a later unknown record type wins over it),
+     * and field errors are written to the error csv in line order. IF an Error is found the error csv is thrown.
      * <p>
-     * Running time measured to see which method is bottleneck.
+     * Records are handed to the recordListener and to the listeners the record sinks open for the file, unless the options mark it synthetic, as long as no error is found,
+     * so conversion and the other outputs can happen in the same pass. They all get the errors and the end of the file.
+     * <p>
+     * The fields are checked by the rule set the options name.
+     * <p>
+     * Running time of each check, the size of the file, its records and its errors are recorded in the metrics.
+     * The size is taken once the file is read, a request body which is still arriving has no size before.
      *
-     * @param file The file to be validated
+     * @param file           The file to be validated
+     * @param options        The most rows of the error csv
+     * @param recordListener Receives the records of the file
      */
     @Override
-    public void validateFile(MultipartFile file) {
+    public void validateFile(MultipartFile file, ConversionOptions options, RecordListener recordListener) {
+        ConverterMessages messages = converterMessageCatalog.getMessages();
         StopWatch stopWatch = new StopWatch("validateFile");
         stopWatch.start("emptyCheck");
-        emptyCheck(file);
-        stopWatch.stop();
-        stopWatch.start("mimeTypeCheck");
-        mimeTypeCheck(file);
-        stopWatch.stop();
-        stopWatch.start("checkFirstCharacter");
-        checkFirstCharacter(file);
+        emptyCheck(file, messages);
         stopWatch.stop();
-        stopWatch.start("checkFirstCharacters");
-        checkFirstCharacters(file);
-        stopWatch.stop();
-        stopWatch.start("fieldsOrderCheck");
-        fieldsOrderCheck(file);
-        stopWatch.stop();
-        stopWatch.start("fieldsCheck");
-        List<CSVLineErrorDTO> errors = fieldsCheck(file);
-        stopWatch.stop();
-        stopWatch.start("makeErrorCSVText");
-        String errorFile = makeErrorCSVText(errors);
-        stopWatch.stop();
-        log.info("file with size={} validated, running time (s) = {}", file.getSize(), stopWatch.getTotalTimeSeconds());
-        log.info("{}", stopWatch.prettyPrint());
-        if (!errors.isEmpty())
-            throw new CSVException(messageSource.getMessage("MSG_200319", null, new Locale("en")), fileWriterService.toByteArray(errorFile));
+        RuleSet ruleSet = ruleSet(options, messages);
+        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+        RecordListener listener = options.isSynthetic() ? recordListener : withSinks(fileName, recordListener);
+        try {
+            fileCheck(file, fileName, options, ruleSet, listener, stopWatch, messages);
+        } catch (RuntimeException e) {
+            listener.onEnd(false);
+            throw e;
+        } finally {
+            conversionMetrics.input(file.getSize());
+        }
+        listener.onEnd(true);
     }
 
-    private void emptyCheck(MultipartFile file) {
-        FileErrorDTO fileErrorDTO = new FileErrorDTO();
-        if (file == null || file.isEmpty()) {
-            fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200304", new String[]{""}, new Locale("en")));
-            throw new FileErrorException(fileErrorDTO);
+    private void fileCheck(MultipartFile file, String fileName, ConversionOptions options, RuleSet ruleSet, RecordListener recordListener, StopWatch stopWatch, ConverterMessages messages) {
+        CSVErrorReport errorReport = fileWriterService.createErrorReport(fileName, options.getMaxErrors(), messages);
+        try {
+            try (InputStream inputStream = new BufferedInputStream(file.getInputStream())) {
+                stopWatch.start("mimeTypeCheck");
+                byte[] prefix = readPrefix(inputStream);
+                String detectedMimeType = mimeTypeCheck(fileName, inputStream, prefix, messages);
+                boolean utf8 = isUtf8(prefix);
+                stopWatch.stop();
+                try (InputStreamReader inputStreamReader = new InputStreamReader(detectedMimeType == null ? new TextContentInputStream(inputStream, utf8) : inputStream)) {
+                    try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+                        if (detectedMimeType != null) {
+                            blankCheck(fileName, bufferedReader, messages);
+                            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+                            fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200303", fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, detectedMimeType));
+                            throw new FileErrorException("MSG_200303", fileErrorDTO);
+                        }
+                        stopWatch.start("linesCheck");
+                        linesCheck(fileName, bufferedReader, ruleSet, errorReport, options.isCountAllErrors(), recordListener, messages);
+                        stopWatch.stop();
+                    }
+                }
+            } catch (BinaryContentException e) {
+                throw binaryContentError(fileName, e, messages);
+            } catch (SizeLimitExceededException e) {
+                throw decodedSizeError(fileName, e, messages);
+            } catch (IOException e) {
+                log.error("MSG_200313", e);
+                throw new FileConverterServiceUnavailableException(messages.getMessage("MSG_200313", fileName), e);
+            }
+            stopWatch.start("finishErrorReport");
+            errorReport.finish();
+            stopWatch.stop();
+        } catch (RuntimeException e) {
+            errorReport.close();
+            throw counted(e);
         }
+        errorsCheck(file, errorReport, stopWatch, messages);
+    }
+
+    /**
+     * The same checks as validateFile, on chunks of the file which start at a P record and are checked on a ForkJoin pool.
+     * The mime type is checked on the start of the file before it is split.
+     *
+     * @param file           The file to be validated
+     * @param options        The most rows of the error csv
+     * @param chunkListeners Gives the listener of the records of each chunk by its index, listeners of different chunks are called at the same time
+     * @return the number of chunks, their indexes are 0 until this
+     */
+    @Override
+    public int validateFileParallel(MultipartFile file, ConversionOptions options, IntFunction<RecordListener> chunkListeners) {
+        ConverterMessages messages = converterMessageCatalog.getMessages();
+        StopWatch stopWatch = new StopWatch("validateFileParallel");
+        stopWatch.start("emptyCheck");
+        emptyCheck(file, messages);
+        stopWatch.stop();
+        RuleSet ruleSet = ruleSet(options, messages);
+        conversionMetrics.input(file.getSize());
         String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-        if (file.isEmpty()) {
-            fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200304", new String[]{fileName}, new Locale("en")));
-            throw new FileErrorException(fileErrorDTO);
-        }
-        try (InputStream inputStream = file.getInputStream()) {
-            try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    if (bufferedReader.lines().allMatch(line -> line.trim().isEmpty())) {
-                        fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200304", new String[]{fileName}, new Locale("en")));
-                        throw new FileErrorException(fileErrorDTO);
-                    }
+        CSVErrorReport errorReport = fileWriterService.createErrorReport(fileName, options.getMaxErrors(), messages);
+        int chunkCount;
+        try {
+            boolean utf8;
+            try (InputStream inputStream = new BufferedInputStream(file.getInputStream())) {
+                stopWatch.start("mimeTypeCheck");
+                byte[] prefix = readPrefix(inputStream);
+                String detectedMimeType = mimeTypeCheck(fileName, inputStream, prefix, messages);
+                utf8 = isUtf8(prefix);
+                stopWatch.stop();
+                if (detectedMimeType != null) {
+                    blankCheck(fileName, new BufferedReader(new InputStreamReader(inputStream)), messages);
+                    FileErrorDTO fileErrorDTO = new FileErrorDTO();
+                    fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200303", fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, detectedMimeType));
+                    throw new FileErrorException("MSG_200303", fileErrorDTO);
                 }
             }
+            stopWatch.start("splitChunks");
+            ByteBuffer content = content(file);
+            List<ByteBuffer> chunks = CSVChunkSplitter.split(content, chunkSize(content.remaining()), CSVType.P.name().charAt(0), CommonEnum.CSVDelimiter.PIPE.getValue().charAt(0));
+            chunkCount = chunks.size();
+            stopWatch.stop();
+            stopWatch.start("chunksCheck");
+            chunksCheck(fileName, chunks, utf8, ruleSet, errorReport, options.isCountAllErrors(), chunkListeners, messages);
+            stopWatch.stop();
+            stopWatch.start("finishErrorReport");
+            errorReport.finish();
+            stopWatch.stop();
+        } catch (BinaryContentException e) {
+            errorReport.close();
+            throw counted(binaryContentError(fileName, e, messages));
         } catch (IOException e) {
+            errorReport.close();
             log.error("MSG_200313", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200313", new String[]{fileName}, new Locale("en")), e);
+            throw new FileConverterServiceUnavailableException(messages.getMessage("MSG_200313", fileName), e);
+        } catch (RuntimeException e) {
+            errorReport.close();
+            throw counted(e);
         }
+        log.debug("file split into {} chunks", chunkCount);
+        errorsCheck(file, errorReport, stopWatch, messages);
+        return chunkCount;
     }
 
-    private void mimeTypeCheck(MultipartFile file) {
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+    /**
+     * @return the rule set the options name, in the language of the request
+     */
+    private RuleSet ruleSet(ConversionOptions options, ConverterMessages messages) {
+        RuleSet ruleSet = validationRules.get(options.getRules(), messages);
+        if (ruleSet == null) {
+            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+            fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200327", options.getRules()));
+            throw counted(new FileErrorException("MSG_200327", fileErrorDTO));
+        }
+        return ruleSet;
+    }
+
+    private void emptyCheck(MultipartFile file, ConverterMessages messages) {
+        if (file == null || file.isEmpty()) {
+            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+            fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200304", ""));
+            throw counted(new FileErrorException("MSG_200304", fileErrorDTO));
+        }
+    }
+
+    /**
+     * Only used when the mime type is already rejected: a file with nothing but blank lines has to be reported as empty.
+     */
+    private void blankCheck(String fileName, BufferedReader bufferedReader, ConverterMessages messages) {
+        if (bufferedReader.lines().allMatch(line -> line.trim().isEmpty()))
+            throw emptyError(fileName, messages);
+    }
+
+    /**
+     * A prefix which is plain text and starts with a record is taken as text/plain at once. Any other prefix is left to Tika,
+     * which only reads the start of the file too. Both mark and reset the stream, so the lines can still be read from its start afterwards.
+     *
+     * @return null if the file is plain text, otherwise the detected mime type
+     */
+    private String mimeTypeCheck(String fileName, InputStream inputStream, byte[] prefix, ConverterMessages messages) {
         try {
-            String detectedMimeType = tika.detect(file.getBytes());
-            if (!MimeTypeUtils.TEXT_PLAIN_VALUE.equals(detectedMimeType)) {
-                FileErrorDTO fileErrorDTO = new FileErrorDTO();
-                fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200303", new String[]{fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, detectedMimeType}, new Locale("en")));
-                throw new FileErrorException(fileErrorDTO);
-            }
+            if (TextContentScanner.isPlainText(prefix, prefix.length) && startsWithRecord(prefix))
+                return null;
+            String detectedMimeType = tika.detect(inputStream);
+            return MimeTypeUtils.TEXT_PLAIN_VALUE.equals(detectedMimeType) ? null : detectedMimeType;
         } catch (IOException e) {
             log.error("MSG_200321", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200321", new String[]{fileName}, new Locale("en")), e);
+            throw new FileConverterServiceUnavailableException(messages.getMessage("MSG_200321", fileName), e);
         }
     }
 
-    private void checkFirstCharacters(MultipartFile file) {
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-        try (InputStream inputStream = file.getInputStream()) {
-            try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    List<String> csvTypes = Arrays.stream(CSVType.values()).map(CSVType::name).toList();
-                    if (bufferedReader.lines().filter(line -> !line.trim().isEmpty()).map(line -> line.trim().split(Pattern.quote(CommonEnum.CSVDelimiter.PIPE.getValue()))).map(strings -> strings[0]).anyMatch(string -> !csvTypes.contains(string))) {
-                        FileErrorDTO fileErrorDTO = new FileErrorDTO();
-                        fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200101", new String[]{Arrays.toString(CSVType.values())}, new Locale("en")));
-                        throw new FileErrorException(fileErrorDTO);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            log.error("MSG_200313", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200313", new String[]{fileName}, new Locale("en")), e);
+    /**
+     * The lines are decoded with the default charset. If it is UTF-8 and the prefix is well-formed UTF-8 with at least one
+     * multi-byte sequence, the file is known to be UTF-8 and the rest of it has to be well-formed too.
+     * Otherwise, such as for a prefix of plain ASCII, only NUL bytes are taken as binary content, so a file in another
+     * charset is accepted wherever its first non-ASCII byte is.
+     */
+    private boolean isUtf8(byte[] prefix) {
+        if (!StandardCharsets.UTF_8.equals(Charset.defaultCharset()) || !hasNonAscii(prefix))
+            return false;
+        return new TextContentScanner(true).scan(prefix, 0, prefix.length) == -1;
+    }
+
+    private boolean hasNonAscii(byte[] prefix) {
+        for (byte b : prefix) {
+            if (b < 0)
+                return true;
         }
+        return false;
     }
 
-    private void checkFirstCharacter(MultipartFile file) {
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-        try (InputStream inputStream = file.getInputStream()) {
-            try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    if (!CSVType.P.name().equals(bufferedReader.lines().filter(line -> !line.trim().isEmpty()).map(line -> line.trim().split(Pattern.quote(CommonEnum.CSVDelimiter.PIPE.getValue()))).map(strings -> strings[0]).findFirst().get())) {
-                        FileErrorDTO fileErrorDTO = new FileErrorDTO();
-                        fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200100", new String[]{Arrays.toString(CSVType.values())}, new Locale("en")));
-                        throw new FileErrorException(fileErrorDTO);
-                    }
-                }
+    /**
+     * Reads the start of the file without consuming it.
+     */
+    private byte[] readPrefix(InputStream inputStream) throws IOException {
+        inputStream.mark(TEXT_PREFIX_SIZE);
+        byte[] prefix = inputStream.readNBytes(TEXT_PREFIX_SIZE);
+        inputStream.reset();
+        return prefix;
+    }
+
+    private boolean startsWithRecord(byte[] prefix) {
+        int i = 0;
+        while (i < prefix.length && (prefix[i] & 0xff) <= ' ')
+            i++;
+        return i + 1 < prefix.length && RECORD_TYPES.indexOf(prefix[i]) >= 0 && prefix[i + 1] == CommonEnum.CSVDelimiter.PIPE.getValue().charAt(0);
+    }
+
+    private FileErrorException binaryContentError(String fileName, BinaryContentException e, ConverterMessages messages) {
+        log.info("file {} rejected, {}", fileName, e.getMessage());
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200303", fileName, MimeTypeUtils.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        return new FileErrorException("MSG_200303", fileErrorDTO);
+    }
+
+    /**
+     * A compressed upload which decompresses to more than the limit, see {@link DecodedMultipartFile}.
+     */
+    private FileErrorException decodedSizeError(String fileName, SizeLimitExceededException e, ConverterMessages messages) {
+        log.info("file {} rejected, {} when decompressed", fileName, e.getMessage());
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200331", fileName, DataSize.ofBytes(e.getLimit())));
+        return new FileErrorException("MSG_200331", fileErrorDTO);
+    }
+
+    private void linesCheck(String fileName, BufferedReader bufferedReader, RuleSet ruleSet, CSVErrorReport errorReport, boolean countAllErrors, RecordListener recordListener, ConverterMessages messages) throws IOException {
+        CSVLinesValidator linesValidator = chunkCheck(fileName, bufferedReader, ruleSet, true, errorReport, countAllErrors, recordListener, messages);
+        if (linesValidator.getLineError() != null)
+            throw linesValidator.getLineError();
+        if (linesValidator.isSuppressing() && !countAllErrors)
+            errorReport.markLowerBound();
+        conversionMetrics.records(linesValidator.getRecordCounts());
+        conversionMetrics.errors(linesValidator.getErrorCounts());
+        if (linesValidator.getLineCount() == 0)
+            throw emptyError(fileName, messages);
+        if (linesValidator.getOrderError(0) != null)
+            throw orderError(linesValidator.getOrderError(0));
+    }
+
+    /**
+     * Runs the line checks on a file or a chunk of it. Records are handed to the recordListener as long as the chunk has no error.
+     * Unless countAllErrors is set, reading stops after the line of the first error the errorSink has no room for, as the file is invalid either way.
+     * An unknown record type ends the check too, its error is kept by the validator.
+     */
+    private CSVLinesValidator chunkCheck(String fileName, BufferedReader bufferedReader, RuleSet ruleSet, boolean fileStart, CSVErrorSink errorSink, boolean countAllErrors, RecordListener recordListener, ConverterMessages messages) throws IOException {
+        CSVLinesValidator linesValidator = new CSVLinesValidator(fileName, messages, ruleSet, fileStart, errorSink, recordListener);
+        CSVLineReader lineReader = new CSVLineReader(bufferedReader);
+        CSVLineTokenizer columns = new CSVLineTokenizer(CommonEnum.CSVDelimiter.PIPE.getValue().charAt(0));
+        try {
+            while ((countAllErrors || !linesValidator.isSuppressing()) && lineReader.readLine()) {
+                if (columns.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                    linesValidator.check(columns);
             }
-        } catch (IOException e) {
-            log.error("MSG_200313", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200313", new String[]{fileName}, new Locale("en")), e);
+        } catch (FileErrorException e) {
+            linesValidator.setLineError(e);
         }
+        return linesValidator;
     }
 
-    private void fieldsOrderCheck(MultipartFile file) {
-        FileErrorDTO fileErrorDTO = new FileErrorDTO();
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-        try (InputStream inputStream = file.getInputStream()) {
-            try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    List<String> firstChars = bufferedReader.lines().filter(line -> !line.trim().isEmpty()).map(line -> line.trim().split(Pattern.quote(CommonEnum.CSVDelimiter.PIPE.getValue()))).map(strings -> strings[0]).toList();
-                    List<String> followerP = Arrays.stream(CSVFollowerP.values()).map(CSVFollowerP::name).toList();
-                    List<String> followerF = Arrays.stream(CSVFollowerF.values()).map(CSVFollowerF::name).toList();
-                    for (int i = 0; i < firstChars.size() - 1; i++) {
-                        String firstChar = firstChars.get(i);
-                        if (firstChar.equals(CSVType.P.name()) && !followerP.contains(firstChars.get(i + 1))) {
-                            fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200102", new String[]{CSVType.P.name(), Arrays.toString(CSVFollowerP.values())}, new Locale("en")));
-                            throw new FileErrorException(fileErrorDTO);
-                        }
-                        if (firstChar.equals(CSVType.F.name()) && !followerF.contains(firstChars.get(i + 1))) {
-                            fileErrorDTO.getGeneralErrors().add(messageSource.getMessage("MSG_200102", new String[]{CSVType.F.name(), Arrays.toString(CSVFollowerF.values())}, new Locale("en")));
-                            throw new FileErrorException(fileErrorDTO);
-                        }
-                    }
+    /**
+     * The chunks are checked on the pool and merged in file order, so the outcome is the one of linesCheck:
+     * the first unknown record type of the file wins, then the first order error (including the one between two chunks),
+     * and the order and field errors get the line numbers they have in the whole file.
+     * Unless countAllErrors is set, the merge stops at the line where linesCheck would have stopped reading, the first one with an error the report has no room for.
+     * Rows, order errors and unknown record types the chunks found after that line are left out, as are the chunks after it.
+     */
+    private void chunksCheck(String fileName, List<ByteBuffer> chunks, boolean utf8, RuleSet ruleSet, CSVErrorReport errorReport, boolean countAllErrors, IntFunction<RecordListener> chunkListeners, ConverterMessages messages) throws IOException {
+        List<Callable<CSVLinesValidator>> tasks = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            boolean fileStart = i == 0;
+            RecordListener recordListener = chunkListeners.apply(i);
+            tasks.add(() -> {
+                try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new TextContentInputStream(new ByteBufferInputStream(chunk), utf8)))) {
+                    return chunkCheck(fileName, bufferedReader, ruleSet, fileStart, new CSVErrorList(errorReport.getMaxErrors()), countAllErrors, recordListener, messages);
                 }
+            });
+        }
+        RecordGrammar grammar = ruleSet.getGrammar();
+        String orderError = null;
+        int lastState = RecordGrammar.ANY;
+        int lineOffset = 0;
+        long[] recordCounts = new long[CSVType.values().length];
+        Map<String, Long> errorCounts = new HashMap<>();
+        for (Future<CSVLinesValidator> future : forkJoinPool.invokeAll(tasks)) {
+            CSVLinesValidator linesValidator = chunkResult(future);
+            if (linesValidator.getLineCount() == 0)
+                continue;
+            if (orderError == null && linesValidator.getFirstTypeIndex() >= 0 && grammar.next(lastState, linesValidator.getFirstTypeIndex()) == RecordGrammar.REJECTED)
+                orderError = CSVLinesValidator.orderError(grammar, lastState, lineOffset + 1, messages);
+            CSVErrorList chunkErrors = (CSVErrorList) linesValidator.getErrorSink();
+            int stopLine = 0;
+            for (CSVLineErrorDTO error : chunkErrors.getErrors()) {
+                if (!countAllErrors && stopLine == 0 && errorReport.isFull())
+                    stopLine = error.getLineNo();
+                if (stopLine != 0 && error.getLineNo() > stopLine)
+                    break;
+                error.setLineNo(error.getLineNo() + lineOffset);
+                errorReport.add(error);
+            }
+            if (linesValidator.isSuppressing() && (stopLine == 0 || stopLine == linesValidator.getLineCount())) {
+                errorReport.suppress(chunkErrors.getSuppressedCount());
+                if (!countAllErrors)
+                    stopLine = linesValidator.getLineCount();
+            }
+            if (linesValidator.getLineError() != null && (stopLine == 0 || linesValidator.getLineCount() <= stopLine))
+                throw linesValidator.getLineError();
+            if (orderError == null && (stopLine == 0 || linesValidator.getOrderErrorLine() <= stopLine))
+                orderError = linesValidator.getOrderError(lineOffset);
+            for (int i = 0; i < recordCounts.length; i++)
+                recordCounts[i] += linesValidator.getRecordCounts()[i];
+            linesValidator.getErrorCounts().forEach((code, count) -> errorCounts.merge(code, count, Long::sum));
+            lineOffset += linesValidator.getLineCount();
+            lastState = linesValidator.getState();
+            if (stopLine != 0) {
+                errorReport.markLowerBound();
+                break;
             }
-        } catch (IOException e) {
-            log.error("MSG_200313", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200313", new String[]{fileName}, new Locale("en")), e);
         }
+        conversionMetrics.records(recordCounts);
+        conversionMetrics.errors(errorCounts);
+        if (lineOffset == 0)
+            throw emptyError(fileName, messages);
+        if (orderError != null)
+            throw orderError(orderError);
     }
 
-    private List<CSVLineErrorDTO> fieldsCheck(MultipartFile file) {
-        List<CSVLineErrorDTO> errors = new ArrayList<>();
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-        try (InputStream inputStream = file.getInputStream()) {
-            try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    AtomicInteger lineNo = new AtomicInteger(0);
-                    bufferedReader.lines().filter(line -> !line.trim().isEmpty()).map(line -> line.trim().split(Pattern.quote(CommonEnum.CSVDelimiter.PIPE.getValue()))).forEach(columns -> {
-                        lineNo.incrementAndGet();
-                        if (CSVType.P.name().equals(columns[0])) {
-                            if (CSVFieldP.values().length != columns.length)
-                                errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(Arrays.toString(columns)).fieldName(CSVType.P.name()).errorDescription(messageSource.getMessage("MSG_200103", new Integer[]{CSVFieldP.values().length}, new Locale("en"))).build());
-                            else {
-                                if (!org.apache.commons.lang3.StringUtils.isAlphaSpace(columns[CSVFieldP.FIRST_NAME.ordinal()]) || columns[CSVFieldP.FIRST_NAME.ordinal()].length() < 2 || columns[CSVFieldP.FIRST_NAME.ordinal()].length() > 255) {
-                                    errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(columns[CSVFieldP.FIRST_NAME.ordinal()]).fieldName(messageSource.getMessage("Field.firstName", null, new Locale("en"))).errorDescription(messageSource.getMessage("MSG_200308", null, new Locale("en"))).build());
-                                }
-                                if (!org.apache.commons.lang3.StringUtils.isAlphaSpace(columns[CSVFieldP.LAST_NAME.ordinal()]) || columns[CSVFieldP.LAST_NAME.ordinal()].length() < 2 || columns[CSVFieldP.LAST_NAME.ordinal()].length() > 255) {
-                                    errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(columns[CSVFieldP.LAST_NAME.ordinal()]).fieldName(messageSource.getMessage("Field.lastName", null, new Locale("en"))).errorDescription(messageSource.getMessage("MSG_200308", null, new Locale("en"))).build());
-                                }
-                            }
-                        } else if (CSVType.T.name().equals(columns[0])) {
-                            if (CSVFieldT.values().length != columns.length)
-                                errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(Arrays.toString(columns)).fieldName(CSVType.T.name()).errorDescription(messageSource.getMessage("MSG_200103", new Integer[]{CSVFieldP.values().length}, new Locale("en"))).build());
-                            else {
-                                if (!(Pattern.compile(CommonEnum.PhonePattern.MOBILE.getValue()).matcher(columns[CSVFieldT.MOBILE.ordinal()].trim()).matches() || Pattern.compile(CommonEnum.PhonePattern.PHONE.getValue()).matcher(columns[CSVFieldT.MOBILE.ordinal()].trim()).matches())) {
-                                    errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(columns[CSVFieldT.MOBILE.ordinal()]).fieldName(messageSource.getMessage("Field.mobile", null, new Locale("en"))).errorDescription(messageSource.getMessage("MSG_200104", null, new Locale("en"))).build());
-                                }
-                            }
-                        } else if (CSVType.A.name().equals(columns[0])) {
-                            if (CSVFieldA.values().length != columns.length)
-                                errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(Arrays.toString(columns)).fieldName(CSVType.P.name()).errorDescription(messageSource.getMessage("MSG_200103", new Integer[]{CSVFieldP.values().length}, new Locale("en"))).build());
-                        } else {
-                            if (CSVFieldF.values().length != columns.length)
-                                errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(Arrays.toString(columns)).fieldName(CSVType.P.name()).errorDescription(messageSource.getMessage("MSG_200103", new Integer[]{CSVFieldP.values().length}, new Locale("en"))).build());
-                            else {
-                                if (!org.apache.commons.lang3.StringUtils.isAlphaSpace(columns[CSVFieldF.NAME.ordinal()]) || columns[CSVFieldF.NAME.ordinal()].length() < 2 || columns[CSVFieldF.NAME.ordinal()].length() > 255) {
-                                    errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(columns[CSVFieldF.NAME.ordinal()]).fieldName(messageSource.getMessage("Field.name", null, new Locale("en"))).errorDescription(messageSource.getMessage("MSG_200308", null, new Locale("en"))).build());
-                                }
-                                if (!NumberUtils.isDigits(columns[CSVFieldF.YEAR.ordinal()]) || columns[CSVFieldF.YEAR.ordinal()].length() != 4) {
-                                    errors.add(CSVLineErrorDTO.builder().lineNo(lineNo.get()).fileName(fileName).fieldValue(columns[CSVFieldF.YEAR.ordinal()]).fieldName(messageSource.getMessage("Field.year", null, new Locale("en"))).errorDescription(messageSource.getMessage("MSG_200105", new Integer[]{4}, new Locale("en"))).build());
-                                }
-                            }
-                        }
-                    });
-                }
+    private CSVLinesValidator chunkResult(Future<CSVLinesValidator> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (e.getCause() instanceof IOException ioException)
+                throw ioException;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * A file under 2GB given as a path is mapped as a whole, any other file is read into the heap.
+     */
+    private ByteBuffer content(MultipartFile file) throws IOException {
+        if (file instanceof PathMultipartFile pathMultipartFile) {
+            try (FileChannel channel = FileChannel.open(pathMultipartFile.getPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
             }
-        } catch (IOException e) {
-            log.error("MSG_200313", e);
-            throw new FileConverterServiceUnavailableException(messageSource.getMessage("MSG_200313", new String[]{fileName}, new Locale("en")), e);
         }
-        return errors;
+        return ByteBuffer.wrap(file.getBytes());
     }
 
-    private String makeErrorCSVText(List<CSVLineErrorDTO> errors) {
-        return errors.isEmpty() ? null : Arrays.stream(CommonEnum.RequestFileCSVError.values()).map(CommonEnum.RequestFileCSVError::getValue).collect(Collectors.joining(CommonEnum.CSVDelimiter.PIPE.getValue())) + System.lineSeparator() + errors.stream().sorted(Comparator.comparing(CSVLineErrorDTO::getFileName).thenComparingInt(CSVLineErrorDTO::getLineNo)).map(CSVLineErrorDTO::toString).collect(Collectors.joining());
+    /**
+     * @return the recordListener together with the listeners the record sinks open for the file
+     */
+    private RecordListener withSinks(String fileName, RecordListener recordListener) {
+        if (recordSinks.isEmpty())
+            return recordListener;
+        List<RecordListener> listeners = new ArrayList<>(recordSinks.size() + 1);
+        listeners.add(recordListener);
+        for (RecordSink recordSink : recordSinks) {
+            RecordListener listener = recordSink.open(fileName);
+            if (listener != null)
+                listeners.add(listener);
+        }
+        return RecordListeners.of(listeners);
+    }
+
+    private int chunkSize(long size) {
+        long chunkSize = size / (parallelProperties.getParallelism() * 4L);
+        return (int) Math.max(chunkSize, parallelProperties.getMinChunkSize().toBytes());
+    }
+
+    private FileErrorException emptyError(String fileName, ConverterMessages messages) {
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200304", fileName));
+        return new FileErrorException("MSG_200304", fileErrorDTO);
+    }
+
+    private FileErrorException orderError(String orderError) {
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(orderError);
+        return new FileErrorException("MSG_200102", fileErrorDTO);
+    }
+
+    private void errorsCheck(MultipartFile file, CSVErrorReport errorReport, StopWatch stopWatch, ConverterMessages messages) {
+        log.debug("file with size={} validated, running time (s) = {}", file.getSize(), stopWatch.getTotalTimeSeconds());
+        conversionMetrics.record(stopWatch);
+        if (errorReport.isEmpty()) {
+            errorReport.close();
+            return;
+        }
+        log.info("{} errors found, {} of them suppressed", errorReport.getErrorCount() + errorReport.getSuppressedCount(), errorReport.getSuppressedCount());
+        conversionMetrics.output("errors", errorReport.getSize());
+        throw new CSVException(messages.getMessage("MSG_200319"), errorReport);
+    }
+
+    /**
+     * Counts a rejected file by the message code of its error, the field errors are counted by the line checks.
+     */
+    private <E extends RuntimeException> E counted(E e) {
+        if (e instanceof FileErrorException fileErrorException && fileErrorException.getCode() != null)
+            conversionMetrics.errors(fileErrorException.getCode(), 1);
+        return e;
     }
 
 }
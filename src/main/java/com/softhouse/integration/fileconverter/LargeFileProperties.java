@@ -0,0 +1,37 @@
+package com.softhouse.integration.fileconverter;
+
+import java.nio.file.Path;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the large file mode, where the upload is spooled to disk and read through memory-mapped windows.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.large-file")
+public class LargeFileProperties {
+
+    /**
+     * Directory the uploads are spooled to.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "integration-service", "large-files");
+
+    /**
+     * Size of the memory-mapped window the spooled file is read through.
+     */
+    private DataSize windowSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Most bytes a gzip or zstd upload may have once it is decompressed, on every endpoint taking one.
+     */
+    private DataSize maxDecodedSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Most xml the raw body endpoint holds back before it starts its response. A body found invalid within it is answered
+     * with the error csv, a body found invalid later has its response aborted.
+     */
+    private DataSize holdBack = DataSize.ofKilobytes(256);
+
+}
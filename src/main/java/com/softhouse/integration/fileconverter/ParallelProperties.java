@@ -0,0 +1,31 @@
+package com.softhouse.integration.fileconverter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the parallel mode, where a file is split into chunks at P records which are validated and converted at the same time.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.parallel")
+public class ParallelProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Files smaller than this are read sequentially, splitting them costs more than it saves.
+     */
+    private DataSize threshold = DataSize.ofMegabytes(4);
+
+    /**
+     * Smallest chunk a file is split into.
+     */
+    private DataSize minChunkSize = DataSize.ofKilobytes(512);
+
+    /**
+     * Number of threads of the pool the chunks run on.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+}
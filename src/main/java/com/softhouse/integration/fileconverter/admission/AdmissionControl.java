@@ -0,0 +1,152 @@
+package com.softhouse.integration.fileconverter.admission;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletRequest;
+
+import com.softhouse.integration.fileconverter.exception.AdmissionRejectedException;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * The heap budget of the running conversions. The budget is counted in kilobytes by a fair semaphore, so requests are admitted
+ * in the order they arrive and a large request is not passed over by smaller ones behind it.
+ * The budget, the heap held by the running conversions and the number of running and waiting requests are exposed as metrics.
+ * A compressed upload is charged again by its plain size once the controller has found it compressed.
+ */
+@Slf4j
+@Component
+public class AdmissionControl {
+
+    private static final int KILOBYTE = 1024;
+
+    /**
+     * Request attribute of the {@link AdmissionTicket} of an admitted request.
+     */
+    public static final String TICKET_ATTRIBUTE = AdmissionTicket.class.getName();
+
+    public enum Admission {
+        ADMITTED, QUEUE_FULL, TIMED_OUT
+    }
+
+    private final AdmissionProperties admissionProperties;
+    private final ConversionMetrics conversionMetrics;
+    private final ConverterMessageCatalog converterMessageCatalog;
+    private final int budget;
+    private final Semaphore semaphore;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public AdmissionControl(AdmissionProperties admissionProperties, ConversionMetrics conversionMetrics, ConverterMessageCatalog converterMessageCatalog) {
+        this.admissionProperties = admissionProperties;
+        this.conversionMetrics = conversionMetrics;
+        this.converterMessageCatalog = converterMessageCatalog;
+        this.budget = (int) Math.min(Integer.MAX_VALUE, admissionProperties.getMemoryBudget().toBytes() / KILOBYTE);
+        this.semaphore = new Semaphore(budget, true);
+        conversionMetrics.admissionMemory("budget", () -> (long) budget * KILOBYTE);
+        conversionMetrics.admissionMemory("in_flight", () -> (long) (budget - semaphore.availablePermits()) * KILOBYTE);
+        conversionMetrics.admissionRequests("running", running::get);
+        conversionMetrics.admissionRequests("queued", queued::get);
+    }
+
+    /**
+     * @param contentLength size of the upload, -1 if it is not known
+     * @param streaming     true if the conversion reads the upload as a stream
+     * @return the kilobytes of the budget the request is estimated to need, at most the whole budget
+     */
+    public int cost(long contentLength, boolean streaming) {
+        long size = contentLength < 0 ? admissionProperties.getUnknownSize().toBytes() : contentLength;
+        long cost = size * admissionProperties.getCostFactor();
+        if (streaming)
+            cost = Math.min(cost, admissionProperties.getStreamingCost().toBytes());
+        return (int) Math.max(1, Math.min(budget, (cost + KILOBYTE - 1) / KILOBYTE));
+    }
+
+    /**
+     * Takes the cost from the budget, waiting up to maxWait for running conversions to release it.
+     * An admitted request has to release its cost once it is answered.
+     */
+    public Admission admit(int cost) throws InterruptedException {
+        if (semaphore.tryAcquire(cost, 0, TimeUnit.NANOSECONDS))
+            return admitted(0);
+        if (queued.incrementAndGet() > admissionProperties.getMaxQueued()) {
+            queued.decrementAndGet();
+            return rejected(Admission.QUEUE_FULL, cost);
+        }
+        long start = System.nanoTime();
+        try {
+            if (semaphore.tryAcquire(cost, admissionProperties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS))
+                return admitted(System.nanoTime() - start);
+        } finally {
+            queued.decrementAndGet();
+        }
+        return rejected(Admission.TIMED_OUT, cost);
+    }
+
+    /**
+     * Raises the ticket of an admitted request holding a compressed upload to the cost of its plain size, which is taken
+     * as the compressed size at the compression ratio, up to the most plain bytes the upload may have.
+     * Nothing is charged for a request which was not admitted by the filter or an upload which is not compressed.
+     *
+     * @throws AdmissionRejectedException if the budget is not freed in time
+     */
+    public void chargeDecoded(ServletRequest request, MultipartFile file) {
+        if (!(request.getAttribute(TICKET_ATTRIBUTE) instanceof AdmissionTicket ticket) || !(file instanceof DecodedMultipartFile decodedFile))
+            return;
+        long plainSize = Math.min(decodedFile.getMaxDecodedSize(), decodedFile.getSize() * admissionProperties.getCompressionRatio());
+        boolean raised;
+        try {
+            raised = ticket.raise(cost(plainSize, false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            raised = false;
+        }
+        if (!raised)
+            throw new AdmissionRejectedException(converterMessageCatalog.getMessages().getMessage("MSG_200330"), admissionProperties.getRetryAfterSeconds());
+    }
+
+    /**
+     * For work which goes on after the response, such as a queued job: the filter then leaves the cost to it.
+     *
+     * @return the release of the request's cost, to be run once the work is done, nothing for a request the filter did not admit
+     */
+    public Runnable handOver(ServletRequest request) {
+        if (request.getAttribute(TICKET_ATTRIBUTE) instanceof AdmissionTicket ticket)
+            return ticket.handOver();
+        return () -> {
+        };
+    }
+
+    public void release(int cost) {
+        running.decrementAndGet();
+        semaphore.release(cost);
+    }
+
+    /**
+     * Takes more of the budget for a request which is running already, waiting up to maxWait.
+     */
+    boolean acquire(int cost) throws InterruptedException {
+        if (semaphore.tryAcquire(cost, admissionProperties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS))
+            return true;
+        rejected(Admission.TIMED_OUT, cost);
+        return false;
+    }
+
+    private Admission admitted(long waitNanos) {
+        running.incrementAndGet();
+        conversionMetrics.admissionWait(waitNanos);
+        return Admission.ADMITTED;
+    }
+
+    private Admission rejected(Admission admission, int cost) {
+        log.info("request of {}KB rejected, {}, {}KB of {}KB in flight", cost, admission, budget - semaphore.availablePermits(), budget);
+        conversionMetrics.admissionRejected(admission.name().toLowerCase());
+        return admission;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.softhouse.integration.fileconverter.admission;
+
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admits the conversion requests by the heap their Content-Length is estimated to need. It runs before the multipart resolver,
+ * so a rejected upload is never buffered. A request which does not fit waits for the budget for a while; it is rejected
+ * with 429 if too many requests are waiting already, and with 503 if the budget is not freed in time, both with Retry-After.
+ * The cost is released when the response is complete, which for a streamed body is the end of its async processing,
+ * or by the work it is handed over to, see {@link AdmissionTicket}. The ticket is kept in the request for the controllers.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionProperties admissionProperties;
+    private final AdmissionControl admissionControl;
+    private final ConverterMessageCatalog converterMessageCatalog;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public AdmissionFilter(AdmissionProperties admissionProperties, AdmissionControl admissionControl, ConverterMessageCatalog converterMessageCatalog, ObjectMapper objectMapper) {
+        this.admissionProperties = admissionProperties;
+        this.admissionControl = admissionControl;
+        this.converterMessageCatalog = converterMessageCatalog;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !admissionProperties.isEnabled() || !HttpMethod.POST.matches(request.getMethod()) || !matches(admissionProperties.getPaths(), request);
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        int cost = admissionControl.cost(request.getContentLengthLong(), matches(admissionProperties.getStreamingPaths(), request));
+        AdmissionControl.Admission admission;
+        try {
+            admission = admissionControl.admit(cost);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admission = AdmissionControl.Admission.TIMED_OUT;
+        }
+        if (admission != AdmissionControl.Admission.ADMITTED) {
+            reject(response, admission == AdmissionControl.Admission.QUEUE_FULL ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+        AdmissionTicket ticket = new AdmissionTicket(admissionControl, cost);
+        request.setAttribute(AdmissionControl.TICKET_ATTRIBUTE, ticket);
+        Runnable release = () -> {
+            if (!ticket.isHandedOver())
+                ticket.release();
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted())
+                request.getAsyncContext().addListener(new ReleaseListener(release));
+            else
+                release.run();
+        }
+    }
+
+    private boolean matches(Iterable<String> patterns, HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path))
+                return true;
+        }
+        return false;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status) throws IOException {
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(converterMessageCatalog.getMessages().getMessage("MSG_200330"));
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionProperties.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), fileErrorDTO);
+    }
+
+    private record ReleaseListener(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.softhouse.integration.fileconverter.admission;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the admission control, which keeps the heap the running conversions are estimated to need under a budget.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Heap the running conversions may need together. A request estimated to need more gets all of it, so it runs alone.
+     */
+    private DataSize memoryBudget = DataSize.ofMegabytes(256);
+
+    /**
+     * Copies of an upload a conversion holds in the heap at once: the multipart buffer, the prefix read for the mime type,
+     * the records and the xml.
+     */
+    private int costFactor = 4;
+
+    /**
+     * Plain bytes a gzip or zstd upload is charged per compressed byte, its plain size is only known once it is read.
+     * The charge is bounded by converter.large-file.max-decoded-size.
+     */
+    private int compressionRatio = 10;
+
+    /**
+     * Size assumed for a request without a Content-Length, such as a chunked upload.
+     */
+    private DataSize unknownSize = DataSize.ofMegabytes(15);
+
+    /**
+     * Requests waiting for the budget, a request beyond them is rejected with 429.
+     */
+    private int maxQueued = 20;
+
+    /**
+     * How long a request waits for the budget before it is rejected with 503.
+     */
+    private Duration maxWait = Duration.ofSeconds(2);
+
+    /**
+     * Seconds a client is told to wait before retrying a rejected request.
+     */
+    private long retryAfterSeconds = 5;
+
+    /**
+     * Paths of the conversions, only POST requests to them are admitted.
+     */
+    private List<String> paths = new ArrayList<>(List.of("/convertFile", "/convertFile/**", "/convertLargeFile", "/convertBatch", "/convertJobs"));
+
+    /**
+     * Paths of the conversions which read the upload as a stream and hold a bounded part of it whatever its size.
+     */
+    private List<String> streamingPaths = new ArrayList<>(List.of("/convertFile/body", "/convertLargeFile"));
+
+    /**
+     * Heap a conversion of a streaming path is estimated to need at most.
+     */
+    private DataSize streamingCost = DataSize.ofMegabytes(16);
+
+}
@@ -0,0 +1,59 @@
+package com.softhouse.integration.fileconverter.admission;
+
+/**
+ * The cost an admitted request holds of the budget. The {@link AdmissionFilter} releases it once the response is complete,
+ * unless the work outlives the response and the ticket is handed over to it.
+ */
+public class AdmissionTicket {
+
+    private final AdmissionControl admissionControl;
+    private int cost;
+    private boolean released;
+    private volatile boolean handedOver;
+
+    AdmissionTicket(AdmissionControl admissionControl, int cost) {
+        this.admissionControl = admissionControl;
+        this.cost = cost;
+    }
+
+    /**
+     * Takes the rest of a higher cost from the budget, waiting for it as long as a request waits to be admitted.
+     *
+     * @return false if the budget is not freed in time, the cost is unchanged then
+     */
+    public synchronized boolean raise(int cost) throws InterruptedException {
+        if (released || cost <= this.cost)
+            return true;
+        if (!admissionControl.acquire(cost - this.cost))
+            return false;
+        this.cost = cost;
+        return true;
+    }
+
+    /**
+     * The filter no longer releases the cost, the returned release has to be run once the work is done.
+     */
+    public Runnable handOver() {
+        handedOver = true;
+        return this::release;
+    }
+
+    public synchronized int getCost() {
+        return cost;
+    }
+
+    boolean isHandedOver() {
+        return handedOver;
+    }
+
+    /**
+     * Only the first release returns the cost to the budget.
+     */
+    synchronized void release() {
+        if (released)
+            return;
+        released = true;
+        admissionControl.release(cost);
+    }
+
+}
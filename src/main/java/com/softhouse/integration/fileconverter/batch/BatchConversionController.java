@@ -0,0 +1,36 @@
+package com.softhouse.integration.fileconverter.batch;
+
+import java.util.List;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Upload many files, or zip archives of them, as "files" parts and get back a zip of the results.
+ */
+@RestController
+@RequiredArgsConstructor
+public class BatchConversionController {
+
+    private static final MediaType APPLICATION_ZIP = MediaType.parseMediaType("application/zip");
+
+    private final BatchConversionService batchConversionService;
+
+    @PostMapping(value = "/convertBatch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertBatch(@RequestParam(name = "files") List<MultipartFile> files, ConversionOptions options) {
+        return ResponseEntity.status(HttpStatus.CREATED).contentType(APPLICATION_ZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("converted.zip").build().toString())
+                .body(batchConversionService.convertBatch(files, options));
+    }
+
+}
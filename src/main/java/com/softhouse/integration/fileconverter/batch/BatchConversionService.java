@@ -0,0 +1,23 @@
+package com.softhouse.integration.fileconverter.batch;
+
+import java.util.List;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Converts many files in one request.
+ */
+public interface BatchConversionService {
+
+    /**
+     * Converts the files, and the entries of the zip archives among them, concurrently.
+     * A file which can not be converted does not stop the others, its errors are added to the combined error csv.
+     * The error cap of the options applies to every file on its own.
+     *
+     * @return a body writing a zip with the xml of every converted file and an errors.csv if any file has errors
+     */
+    StreamingResponseBody convertBatch(List<MultipartFile> files, ConversionOptions options);
+
+}
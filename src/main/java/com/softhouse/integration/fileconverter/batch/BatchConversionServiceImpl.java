@@ -0,0 +1,340 @@
+package com.softhouse.integration.fileconverter.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.PreDestroy;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.FileConverterService;
+import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+import com.softhouse.integration.fileconverter.exception.FileConverterServiceUnavailableException;
+import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.util.LocaleContextTaskDecorator;
+import com.softhouse.integration.util.PathMultipartFile;
+import com.softhouse.integration.util.SizeLimitExceededException;
+import com.softhouse.integration.util.SizeLimitedInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StopWatch;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Converts the files of a batch on a pool shared by all batches, so the number of conversions at the same time stays bounded
+ * however many batches are sent. Every file is converted like a single upload, and its errors become rows of the combined error csv:
+ * the rows of its error report, or one row with line number 0 for each general error. The files are ordered by name,
+ * the rows of a file stay in line order, and the reports are copied into the zip without being read into memory.
+ * The entries of the archives and the xml of the files are spooled to local files, so the heap a batch holds does not grow with it;
+ * the number of files and the bytes the archives expand to are bounded per batch while the archives are read.
+ */
+@Slf4j
+@Service
+public class BatchConversionServiceImpl implements BatchConversionService {
+
+    private static final String ERRORS_ENTRY = "errors.csv";
+    private static final List<String> ZIP_TYPES = List.of("application/zip", "application/x-zip-compressed");
+
+    private final FileConverterService fileConverterService;
+    private final ConverterMessageCatalog converterMessageCatalog;
+    private final BatchProperties batchProperties;
+    private final ConversionMetrics conversionMetrics;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    public BatchConversionServiceImpl(FileConverterService fileConverterService, ConverterMessageCatalog converterMessageCatalog, BatchProperties batchProperties, ConversionMetrics conversionMetrics) {
+        this.fileConverterService = fileConverterService;
+        this.converterMessageCatalog = converterMessageCatalog;
+        this.batchProperties = batchProperties;
+        this.conversionMetrics = conversionMetrics;
+        executor.setCorePoolSize(batchProperties.getParallelism());
+        executor.setMaxPoolSize(batchProperties.getParallelism());
+        executor.setQueueCapacity(batchProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("batch-conversion-");
+        executor.setTaskDecorator(new LocaleContextTaskDecorator());
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public StreamingResponseBody convertBatch(List<MultipartFile> files, ConversionOptions options) {
+        ConverterMessages messages = converterMessageCatalog.getMessages();
+        StopWatch stopWatch = new StopWatch("convertBatch");
+        stopWatch.start("expandArchives");
+        List<FileErrors> errors = new ArrayList<>();
+        List<MultipartFile> batchFiles = new ArrayList<>();
+        List<Path> entryFiles = new ArrayList<>();
+        try {
+            BatchBudget budget = new BatchBudget(files.stream().filter(file -> !isArchive(file)).count(), batchProperties.getMaxExpandedSize().toBytes());
+            if (budget.files > batchProperties.getMaxFiles())
+                throw tooManyFiles(messages);
+            for (MultipartFile file : files) {
+                if (isArchive(file))
+                    expand(file, budget, batchFiles, entryFiles, errors, messages);
+                else
+                    batchFiles.add(file);
+            }
+        } catch (RuntimeException e) {
+            entryFiles.forEach(this::deleteQuietly);
+            errors.forEach(FileErrors::close);
+            throw e;
+        }
+        stopWatch.stop();
+        stopWatch.start("convertFiles");
+        Map<String, Path> xmlEntries = new LinkedHashMap<>();
+        try {
+            List<Future<Path>> results = batchFiles.stream().map(file -> submit(file, options)).toList();
+            for (int i = 0; i < batchFiles.size(); i++) {
+                String fileName = fileName(batchFiles.get(i));
+                if (results.get(i) == null) {
+                    errors.add(generalErrors(fileName, List.of(messages.getMessage("MSG_200322", fileName))));
+                    continue;
+                }
+                try {
+                    xmlEntries.put(xmlEntryName(fileName, xmlEntries), results.get(i).get());
+                } catch (ExecutionException e) {
+                    errors.add(fileErrors(fileName, e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results.forEach(this::cancel);
+                    xmlEntries.values().forEach(this::deleteQuietly);
+                    errors.forEach(FileErrors::close);
+                    throw new FileConverterServiceUnavailableException(messages.getMessage("MSG_200106"), e);
+                }
+            }
+        } finally {
+            entryFiles.forEach(this::deleteQuietly);
+        }
+        stopWatch.stop();
+        errors.sort(Comparator.comparing(FileErrors::fileName));
+        log.debug("batch of {} files converted, {} with errors, running time (s) = {}", batchFiles.size(), batchFiles.size() - xmlEntries.size(), stopWatch.getTotalTimeSeconds());
+        conversionMetrics.record(stopWatch);
+        return outputStream -> writeZip(outputStream, xmlEntries, errors);
+    }
+
+    private boolean isArchive(MultipartFile file) {
+        return ZIP_TYPES.contains(file.getContentType()) || (file.getOriginalFilename() != null && file.getOriginalFilename().toLowerCase(Locale.ROOT).endsWith(".zip"));
+    }
+
+    /**
+     * Spools the entries of the archive to local files, without their directories. An archive which can not be read,
+     * has no files or does not fit in the bytes left of the batch is reported as an error and none of its entries are converted.
+     * Every entry counts against the files of the batch at once, so an archive of too many entries is not read to its end.
+     */
+    private void expand(MultipartFile archive, BatchBudget budget, List<MultipartFile> batchFiles, List<Path> entryFiles, List<FileErrors> errors, ConverterMessages messages) {
+        String archiveName = fileName(archive);
+        List<MultipartFile> entries = new ArrayList<>();
+        List<Path> spooled = new ArrayList<>();
+        int archiveFiles = 0;
+        long archiveSize = 0;
+        try (ZipInputStream zipInputStream = new ZipInputStream(archive.getInputStream())) {
+            for (ZipEntry zipEntry = zipInputStream.getNextEntry(); zipEntry != null; zipEntry = zipInputStream.getNextEntry()) {
+                String entryName = StringUtils.getFilename(StringUtils.cleanPath(zipEntry.getName()));
+                if (zipEntry.isDirectory() || !StringUtils.hasText(entryName) || entryName.startsWith(".") || zipEntry.getName().startsWith("__MACOSX/"))
+                    continue;
+                if (budget.files + ++archiveFiles > batchProperties.getMaxFiles())
+                    throw tooManyFiles(messages);
+                Path entryFile = createTempFile("entry-", ".csv");
+                spooled.add(entryFile);
+                archiveSize += Files.copy(new SizeLimitedInputStream(zipInputStream, budget.bytes - archiveSize), entryFile, StandardCopyOption.REPLACE_EXISTING);
+                entries.add(new PathMultipartFile(entryFile, entryName, MediaType.TEXT_PLAIN_VALUE));
+            }
+        } catch (SizeLimitExceededException e) {
+            errors.add(generalErrors(archiveName, List.of(messages.getMessage("MSG_200324", archiveName, batchProperties.getMaxExpandedSize()))));
+            spooled.forEach(this::deleteQuietly);
+            return;
+        } catch (IOException e) {
+            log.warn("archive {} can not be read", archiveName, e);
+            entries.clear();
+        } catch (RuntimeException e) {
+            spooled.forEach(this::deleteQuietly);
+            throw e;
+        }
+        if (entries.isEmpty()) {
+            errors.add(generalErrors(archiveName, List.of(messages.getMessage("MSG_200323", archiveName))));
+            spooled.forEach(this::deleteQuietly);
+            return;
+        }
+        budget.files += archiveFiles;
+        budget.bytes -= archiveSize;
+        batchFiles.addAll(entries);
+        entryFiles.addAll(spooled);
+    }
+
+    private FileErrorException tooManyFiles(ConverterMessages messages) {
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200325", batchProperties.getMaxFiles()));
+        return new FileErrorException("MSG_200325", fileErrorDTO);
+    }
+
+    /**
+     * @return the xml file of the conversion, or null if the pool has no room for it
+     */
+    private Future<Path> submit(MultipartFile file, ConversionOptions options) {
+        try {
+            return executor.submit(() -> convert(file, options));
+        } catch (TaskRejectedException e) {
+            log.info("batch conversion pool is full, file {} rejected", fileName(file));
+            return null;
+        }
+    }
+
+    /**
+     * Writes the xml of the file to a local file, it is removed once it is copied into the zip.
+     */
+    private Path convert(MultipartFile file, ConversionOptions options) throws IOException {
+        StreamingResponseBody body = fileConverterService.convertFileStreaming(file, options);
+        Path xmlFile = createTempFile("result-", ".xml");
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(xmlFile))) {
+            body.writeTo(outputStream);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(xmlFile);
+            throw e;
+        }
+        return xmlFile;
+    }
+
+    /**
+     * Removes the xml file of a conversion which has finished already.
+     */
+    private void cancel(Future<Path> result) {
+        if (result == null || result.cancel(true) || result.isCancelled())
+            return;
+        try {
+            deleteQuietly(result.get());
+        } catch (ExecutionException | InterruptedException e) {
+            log.debug("no xml file of a cancelled conversion", e);
+        }
+    }
+
+    private FileErrors fileErrors(String fileName, Throwable cause) {
+        if (cause instanceof CSVException csvException)
+            return new FileErrors(fileName, List.of(), csvException.getErrorReport());
+        if (cause instanceof FileErrorException fileErrorException)
+            return generalErrors(fileName, fileErrorException.getFileErrorDTO().getGeneralErrors());
+        log.error("file {} of batch can not be converted", fileName, cause);
+        return generalErrors(fileName, List.of(String.valueOf(cause.getMessage())));
+    }
+
+    private FileErrors generalErrors(String fileName, Collection<String> errorDescriptions) {
+        return new FileErrors(fileName, errorDescriptions.stream()
+                .map(errorDescription -> CSVLineErrorDTO.builder().lineNo(0).fileName(fileName).fieldName("").fieldValue("").errorDescription(errorDescription).build())
+                .toList(), null);
+    }
+
+    private String fileName(MultipartFile file) {
+        return file.getOriginalFilename() == null ? "" : StringUtils.cleanPath(file.getOriginalFilename());
+    }
+
+    /**
+     * @return the file name with an xml extension, numbered if a file of the same name is already converted
+     */
+    private String xmlEntryName(String fileName, Map<String, Path> xmlEntries) {
+        String baseName = StringUtils.stripFilenameExtension(StringUtils.getFilename(fileName));
+        String entryName = baseName + ".xml";
+        for (int i = 1; xmlEntries.containsKey(entryName); i++)
+            entryName = baseName + "-" + i + ".xml";
+        return entryName;
+    }
+
+    /**
+     * Finishes the zip without closing the response output stream, and removes the xml files and the spool files of the error reports.
+     */
+    private void writeZip(OutputStream outputStream, Map<String, Path> xmlEntries, List<FileErrors> errors) throws IOException {
+        try {
+            ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+            for (Map.Entry<String, Path> xmlEntry : xmlEntries.entrySet()) {
+                zipOutputStream.putNextEntry(new ZipEntry(xmlEntry.getKey()));
+                Files.copy(xmlEntry.getValue(), zipOutputStream);
+                zipOutputStream.closeEntry();
+            }
+            if (!errors.isEmpty()) {
+                zipOutputStream.putNextEntry(new ZipEntry(ERRORS_ENTRY));
+                CSVErrorReport.writeHeader(zipOutputStream);
+                for (FileErrors fileErrors : errors)
+                    fileErrors.writeTo(zipOutputStream);
+                zipOutputStream.closeEntry();
+            }
+            zipOutputStream.finish();
+        } finally {
+            xmlEntries.values().forEach(this::deleteQuietly);
+            errors.forEach(FileErrors::close);
+        }
+    }
+
+    private Path createTempFile(String prefix, String suffix) throws IOException {
+        Files.createDirectories(batchProperties.getDirectory());
+        return Files.createTempFile(batchProperties.getDirectory(), prefix, suffix);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("can not delete {}", path, e);
+        }
+    }
+
+    /**
+     * What is left of a batch while its archives are expanded: the files counted so far and the bytes its archives may still expand to.
+     */
+    private static final class BatchBudget {
+
+        private long files;
+        private long bytes;
+
+        BatchBudget(long files, long bytes) {
+            this.files = files;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The errors of one file of the batch, either general errors or the error report of its lines.
+     */
+    private record FileErrors(String fileName, List<CSVLineErrorDTO> generalErrors, CSVErrorReport errorReport) {
+
+        void writeTo(OutputStream outputStream) throws IOException {
+            for (CSVLineErrorDTO generalError : generalErrors)
+                outputStream.write(generalError.toString().getBytes(StandardCharsets.UTF_8));
+            if (errorReport != null)
+                errorReport.writeTo(outputStream, false);
+        }
+
+        void close() {
+            if (errorReport != null)
+                errorReport.close();
+        }
+
+    }
+
+}
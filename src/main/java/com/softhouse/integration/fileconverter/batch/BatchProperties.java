@@ -0,0 +1,42 @@
+package com.softhouse.integration.fileconverter.batch;
+
+import java.nio.file.Path;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the batch conversion of many files, or of the entries of a zip archive, in one request.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.batch")
+public class BatchProperties {
+
+    /**
+     * Number of files converted at the same time, shared by all batch requests.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Files waiting for a thread of the pool, shared by all batch requests. A file beyond them is reported as an error of the file.
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * Most files a batch may have, counting the entries of its archives. A batch is rejected as soon as its archives pass it.
+     */
+    private int maxFiles = 1000;
+
+    /**
+     * Most bytes the entries of the archives of a batch may expand to together, an archive which does not fit in the rest
+     * is reported as an error of the archive.
+     */
+    private DataSize maxExpandedSize = DataSize.ofMegabytes(100);
+
+    /**
+     * Directory the entries of the archives and the xml of the files are spooled to until the zip is written.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "integration-service", "batch");
+
+}
@@ -0,0 +1,102 @@
+package com.softhouse.integration.fileconverter.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects a result while it is streamed to the response. It is kept in memory up to the largest heap entry and then
+ * moved to a file of the disk tier; a result too large for the cache is dropped. A failing write only drops the result,
+ * it never fails the response. {@link #commit()} adds the result to the cache, closing without it drops the result.
+ */
+@Slf4j
+public class CacheEntryOutputStream extends OutputStream {
+
+    private final ConversionResultCache cache;
+    private final String key;
+    private final CachedResult.Type type;
+    private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private OutputStream outputStream = memory;
+    private Path file;
+    private long size;
+    private boolean dropped;
+
+    CacheEntryOutputStream(ConversionResultCache cache, String key, CachedResult.Type type) {
+        this.cache = cache;
+        this.key = key;
+        this.type = type;
+        this.dropped = key == null;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (dropped)
+            return;
+        size += len;
+        try {
+            if (file == null && size > cache.maxHeapEntrySize()) {
+                if (size > cache.maxDiskEntrySize()) {
+                    drop();
+                    return;
+                }
+                file = cache.createTempFile();
+                outputStream = new BufferedOutputStream(Files.newOutputStream(file));
+                memory.writeTo(outputStream);
+                memory.reset();
+            } else if (file != null && size > cache.maxDiskEntrySize()) {
+                drop();
+                return;
+            }
+            outputStream.write(b, off, len);
+        } catch (IOException e) {
+            log.warn("can not cache {}", key, e);
+            drop();
+        }
+    }
+
+    public void commit() {
+        if (dropped)
+            return;
+        try {
+            outputStream.close();
+            if (file == null)
+                cache.put(key, type, memory.toByteArray());
+            else
+                cache.putDisk(key, type, file, size);
+            file = null;
+        } catch (IOException e) {
+            log.warn("can not cache {}", key, e);
+        }
+        dropped = true;
+    }
+
+    @Override
+    public void close() {
+        drop();
+    }
+
+    private void drop() {
+        dropped = true;
+        memory.reset();
+        if (file == null)
+            return;
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            log.warn("can not close {}", file, e);
+        }
+        cache.deleteQuietly(file);
+        file = null;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.softhouse.integration.fileconverter.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * The xml or the error csv of a file, held either in the heap or in a file of the disk tier.
+ *
+ * @param content the result in the heap, or null
+ * @param file    the result file, or null
+ */
+public record CachedResult(Type type, long size, byte[] content, Path file) {
+
+    public enum Type {
+        XML(".xml"), ERRORS(".csv");
+
+        private final String extension;
+
+        Type(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        static Type of(String name) {
+            return name.endsWith(XML.extension) ? XML : ERRORS;
+        }
+    }
+
+    static CachedResult inHeap(Type type, byte[] content) {
+        return new CachedResult(type, content.length, content, null);
+    }
+
+    static CachedResult onDisk(Type type, Path file, long size) {
+        return new CachedResult(type, size, null, file);
+    }
+
+    public boolean isOnDisk() {
+        return file != null;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (isOnDisk())
+            Files.copy(file, outputStream);
+        else
+            outputStream.write(content);
+    }
+
+    public Resource toResource() {
+        return isOnDisk() ? new FileSystemResource(file) : new ByteArrayResource(content);
+    }
+
+}
@@ -0,0 +1,289 @@
+package com.softhouse.integration.fileconverter.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
+import com.softhouse.integration.fileconverter.filewriter.ErrorReportProperties;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.record.RecordSink;
+import com.softhouse.integration.fileconverter.rules.ValidationRules;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * The xml or the error csv of a file, found by the hash of its content, so a resent file is answered without validating
+ * and converting it again. Results are kept in a heap tier and, if enabled, written through to a disk tier; each tier
+ * evicts its least recently used results beyond its size. A result file is named by a random prefix and its key, so an
+ * evicted file can be removed after a delay while the same result is cached again under a new file.
+ * The disk tier is loaded from its directory at startup. The key holds the fingerprint of the rule set and the version of the
+ * result format, so the results left by a run with other rules or an older format are never found and age out of the tier.
+ * Nothing is cached while record sinks are registered, since a cached result skips the validation which hands them the records.
+ */
+@Slf4j
+@Component
+public class ConversionResultCache {
+
+    static final String HEAP = "heap";
+    static final String DISK = "disk";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char KEY_SEPARATOR = '_';
+    /**
+     * Version of the xml and the error csv, to be raised whenever a change of the code changes either of them.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private final ResultCacheProperties resultCacheProperties;
+    private final ErrorReportProperties errorReportProperties;
+    private final ConversionMetrics conversionMetrics;
+    private final ValidationRules validationRules;
+    private final List<RecordSink> recordSinks;
+    private final SizeBoundedLru heap;
+    private final SizeBoundedLru disk;
+    private final Queue<EvictedFile> evictedFiles = new ConcurrentLinkedQueue<>();
+
+    public ConversionResultCache(ResultCacheProperties resultCacheProperties, ErrorReportProperties errorReportProperties, ConversionMetrics conversionMetrics, ValidationRules validationRules, List<RecordSink> recordSinks) {
+        this.resultCacheProperties = resultCacheProperties;
+        this.errorReportProperties = errorReportProperties;
+        this.conversionMetrics = conversionMetrics;
+        this.validationRules = validationRules;
+        this.recordSinks = recordSinks;
+        if (resultCacheProperties.isEnabled() && !recordSinks.isEmpty())
+            log.warn("record sinks {} need every file validated, conversion results are not cached",
+                    recordSinks.stream().map(recordSink -> recordSink.getClass().getSimpleName()).toList());
+        this.heap = new SizeBoundedLru(resultCacheProperties.getHeapSize().toBytes());
+        this.disk = new SizeBoundedLru(resultCacheProperties.getDiskSize().toBytes());
+        conversionMetrics.cacheSize(HEAP, heap::size);
+        if (resultCacheProperties.isEnabled() && resultCacheProperties.isDiskEnabled()) {
+            conversionMetrics.cacheSize(DISK, disk::size);
+            loadDirectory();
+        }
+    }
+
+    /**
+     * Reads the whole file to hash it with SHA-256. A result is only shared by files of the same hash, which unlike with
+     * a non-cryptographic hash can not be crafted to get the result of another file. A file checked by a named rule set
+     * has results of its own, and so has every configuration of a rule set.
+     *
+     * @return the key of the file's results, or null if the cache is disabled, record sinks are registered or the rule set is not configured
+     */
+    public ResultCacheKey key(MultipartFile file, ConversionOptions options) {
+        if (!resultCacheProperties.isEnabled() || !recordSinks.isEmpty())
+            return null;
+        String rulesFingerprint = validationRules.fingerprint(options.getRules());
+        if (rulesFingerprint == null)
+            return null;
+        MessageDigest digest = sha256();
+        try (InputStream inputStream = file.getInputStream()) {
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            for (int read; (read = inputStream.read(buffer)) != -1; )
+                digest.update(buffer, 0, read);
+        } catch (IOException e) {
+            log.warn("can not hash {}, it is not cached", file.getOriginalFilename(), e);
+            return null;
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        int maxErrors = options.getMaxErrors() == null ? errorReportProperties.getMaxErrors() : Math.max(1, options.getMaxErrors());
+        String errorsVariant = StringUtils.cleanPath(file.getOriginalFilename()) + '\0' + maxErrors + '\0' + options.isCountAllErrors() + '\0' + LocaleContextHolder.getLocale().getLanguage();
+        String rulesVariant = '-' + HexFormat.of().formatHex(digest.digest((FORMAT_VERSION + "\0" + rulesFingerprint).getBytes(StandardCharsets.UTF_8)), 0, 8);
+        String errorsHash = HexFormat.of().formatHex(digest.digest(errorsVariant.getBytes(StandardCharsets.UTF_8)), 0, 8);
+        String xmlVariant = rulesVariant + (options.isCompact() ? "-compact" : "");
+        return new ResultCacheKey(hash + xmlVariant + CachedResult.Type.XML.getExtension(), hash + rulesVariant + '-' + errorsHash + CachedResult.Type.ERRORS.getExtension());
+    }
+
+    /**
+     * Looks for the xml first and then for the error csv, each in the heap before the disk.
+     */
+    public Optional<CachedResult> get(ResultCacheKey key) {
+        if (key == null)
+            return Optional.empty();
+        for (String name : List.of(key.xml(), key.errors())) {
+            CachedResult result = heap.get(name);
+            if (result != null) {
+                conversionMetrics.cacheHit(HEAP);
+                return Optional.of(result);
+            }
+            result = disk.get(name);
+            if (result != null) {
+                if (Files.exists(result.file())) {
+                    conversionMetrics.cacheHit(DISK);
+                    return Optional.of(result);
+                }
+                disk.remove(name);
+            }
+        }
+        conversionMetrics.cacheMiss();
+        return Optional.empty();
+    }
+
+    public void putXml(ResultCacheKey key, String xml) {
+        if (key != null)
+            put(key.xml(), CachedResult.Type.XML, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copies the finished error csv, the report itself is still written to the response.
+     */
+    public void putErrors(ResultCacheKey key, CSVErrorReport errorReport) {
+        if (key == null || errorReport.getSize() > Math.max(maxHeapEntrySize(), maxDiskEntrySize()))
+            return;
+        try (CacheEntryOutputStream outputStream = new CacheEntryOutputStream(this, key.errors(), CachedResult.Type.ERRORS)) {
+            errorReport.writeTo(outputStream, true);
+            outputStream.commit();
+        } catch (IOException e) {
+            log.warn("can not cache {}", key.errors(), e);
+        }
+    }
+
+    /**
+     * A stream collecting the xml while it is written to the response, it is cached by {@link CacheEntryOutputStream#commit()}.
+     */
+    public CacheEntryOutputStream xmlOutputStream(ResultCacheKey key) {
+        return new CacheEntryOutputStream(this, key == null ? null : key.xml(), CachedResult.Type.XML);
+    }
+
+    @Scheduled(fixedDelayString = "${converter.cache.cleanup-interval:PT10S}")
+    public void deleteEvictedFiles() {
+        Instant now = Instant.now();
+        for (EvictedFile evictedFile = evictedFiles.peek(); evictedFile != null && !evictedFile.deleteAt().isAfter(now); evictedFile = evictedFiles.peek()) {
+            if (evictedFiles.remove(evictedFile))
+                deleteQuietly(evictedFile.file());
+        }
+    }
+
+    long maxHeapEntrySize() {
+        return Math.min(resultCacheProperties.getMaxHeapEntrySize().toBytes(), resultCacheProperties.getHeapSize().toBytes());
+    }
+
+    long maxDiskEntrySize() {
+        if (!resultCacheProperties.isDiskEnabled())
+            return 0;
+        return Math.min(resultCacheProperties.getMaxDiskEntrySize().toBytes(), resultCacheProperties.getDiskSize().toBytes());
+    }
+
+    /**
+     * Adds the result to the heap and writes it through to the disk, as far as it fits each tier.
+     */
+    void put(String key, CachedResult.Type type, byte[] content) {
+        if (content.length <= maxHeapEntrySize())
+            evicted(HEAP, heap.put(key, CachedResult.inHeap(type, content)));
+        if (content.length > maxDiskEntrySize() || disk.contains(key))
+            return;
+        Path file = null;
+        try {
+            file = createTempFile();
+            Files.write(file, content);
+            putDisk(key, type, file, content.length);
+        } catch (IOException e) {
+            log.warn("can not cache {}", key, e);
+            if (file != null)
+                deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Moves a complete temp file into the disk tier.
+     */
+    void putDisk(String key, CachedResult.Type type, Path tempFile, long size) throws IOException {
+        Path file = Files.move(tempFile, resultCacheProperties.getDirectory().resolve(UUID.randomUUID().toString() + KEY_SEPARATOR + key), StandardCopyOption.ATOMIC_MOVE);
+        List<CachedResult> evicted = disk.put(key, CachedResult.onDisk(type, file, size));
+        if (evicted == null)
+            deleteQuietly(file);
+        evicted(DISK, evicted);
+    }
+
+    Path createTempFile() throws IOException {
+        Files.createDirectories(resultCacheProperties.getDirectory());
+        return Files.createTempFile(resultCacheProperties.getDirectory(), "entry-", TEMP_SUFFIX);
+    }
+
+    void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("can not delete {}", path, e);
+        }
+    }
+
+    private void evicted(String tier, List<CachedResult> evicted) {
+        if (evicted == null)
+            return;
+        Instant deleteAt = Instant.now().plus(resultCacheProperties.getDeleteDelay());
+        for (CachedResult result : evicted) {
+            conversionMetrics.cacheEviction(tier);
+            if (result.isOnDisk())
+                evictedFiles.add(new EvictedFile(result.file(), deleteAt));
+        }
+    }
+
+    /**
+     * Adds the result files left by the last run, the oldest first so the most recently written are kept if they do not all fit.
+     * Temp files of results which were being written are removed.
+     */
+    private void loadDirectory() {
+        Path directory = resultCacheProperties.getDirectory();
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.sorted(Comparator.comparing(this::lastModified)).toList();
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int separator = name.indexOf(KEY_SEPARATOR);
+                if (name.endsWith(TEMP_SUFFIX) || separator < 0) {
+                    deleteQuietly(file);
+                    continue;
+                }
+                String key = name.substring(separator + 1);
+                evicted(DISK, disk.put(key, CachedResult.onDisk(CachedResult.Type.of(key), file, Files.size(file))));
+            }
+            log.info("{} results loaded from {}", disk.count(), directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record EvictedFile(Path file, Instant deleteAt) {
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.softhouse.integration.fileconverter.cache;
+
+/**
+ * The names a file's results are cached under. Both start with the hash of the content. The xml depends only on the content
+ * and on the compact option.
+ * The error csv also depends on the file name in its rows, on the most rows and on the locale of the messages, so a hash of
+ * those is added to its name.
+ *
+ * @param xml    the name of the xml, also the name of its file in the disk tier
+ * @param errors the name of the error csv
+ */
+public record ResultCacheKey(String xml, String errors) {
+}
@@ -0,0 +1,59 @@
+package com.softhouse.integration.fileconverter.cache;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the cache of conversion results, which answers a resent file without validating and converting it again.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.cache")
+public class ResultCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Total size of the results kept in the heap, the least recently used are evicted first.
+     */
+    private DataSize heapSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Larger results are only kept on disk.
+     */
+    private DataSize maxHeapEntrySize = DataSize.ofMegabytes(4);
+
+    /**
+     * Also keep the results in files, which survive a restart and are sent to the client without copying them through the heap.
+     */
+    private boolean diskEnabled = false;
+
+    /**
+     * Directory of the result files.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "integration-service", "result-cache");
+
+    /**
+     * Total size of the result files, the least recently used are evicted first.
+     */
+    private DataSize diskSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Larger results are not cached.
+     */
+    private DataSize maxDiskEntrySize = DataSize.ofMegabytes(256);
+
+    /**
+     * An evicted result file is removed after this delay, since a response may still be sending it.
+     */
+    private Duration deleteDelay = Duration.ofMinutes(1);
+
+    /**
+     * How often evicted result files are removed, in ISO-8601 form as it is read by the scheduler.
+     */
+    private Duration cleanupInterval = Duration.ofSeconds(10);
+
+}
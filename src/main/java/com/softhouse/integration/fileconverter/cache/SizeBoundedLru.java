@@ -0,0 +1,65 @@
+package com.softhouse.integration.fileconverter.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tier of the result cache: a map in access order which evicts the least recently used results once their total size
+ * exceeds the limit. The results are content-addressed, so a result already cached under a key is never replaced.
+ */
+class SizeBoundedLru {
+
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxSize;
+    private long size;
+
+    SizeBoundedLru(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    synchronized CachedResult get(String key) {
+        return results.get(key);
+    }
+
+    synchronized boolean contains(String key) {
+        return results.containsKey(key);
+    }
+
+    /**
+     * @return the results evicted to make room, or null if the key is already cached and the result is not added
+     */
+    synchronized List<CachedResult> put(String key, CachedResult result) {
+        if (results.putIfAbsent(key, result) != null)
+            return null;
+        size += result.size();
+        List<CachedResult> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, CachedResult>> iterator = results.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            CachedResult eldest = iterator.next().getValue();
+            if (eldest == result)
+                continue;
+            iterator.remove();
+            size -= eldest.size();
+            evicted.add(eldest);
+        }
+        return evicted;
+    }
+
+    synchronized void remove(String key) {
+        CachedResult result = results.remove(key);
+        if (result != null)
+            size -= result.size();
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized int count() {
+        return results.size();
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.softhouse.integration.fileconverter.dto;
+
+import java.io.Writer;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the people xml person by person with StAX, so a person can be written as soon as its lines are read.
+ * The output is the same as the JAXB marshalling of the people the service used to do: a formatted fragment, indented by four spaces,
+ * fields which are not given left out and elements without content written as empty elements.
+ * In fragment mode only the persons are written, without the people element, so the fragments of parts of a file can be joined.
+ * In compact mode nothing is indented, as JAXB writes it without formatted output.
+ */
+public class PeopleXmlWriter {
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final String INDENT = "    ";
+
+    private final XMLStreamWriter xmlStreamWriter;
+    private final boolean fragment;
+    private final boolean compact;
+    private boolean hasPerson;
+
+    public PeopleXmlWriter(Writer writer) throws XMLStreamException {
+        this(writer, false);
+    }
+
+    public PeopleXmlWriter(Writer writer, boolean fragment) throws XMLStreamException {
+        this(writer, fragment, false);
+    }
+
+    public PeopleXmlWriter(Writer writer, boolean fragment, boolean compact) throws XMLStreamException {
+        this.xmlStreamWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
+        this.fragment = fragment;
+        this.compact = compact;
+    }
+
+    /**
+     * Writes the record straight from its buffer. As in the JAXB mapping, the person has an address
+     * only with a postal code and a phone only with a mobile, while a family has them whenever its lines gave them.
+     */
+    public void writePerson(PersonRecord personRecord) throws XMLStreamException {
+        if (!hasPerson && !fragment)
+            xmlStreamWriter.writeStartElement("people");
+        hasPerson = true;
+        boolean hasAddress = personRecord.has(0, PersonRecord.Field.POSTAL_CODE);
+        boolean hasPhone = personRecord.has(0, PersonRecord.Field.MOBILE);
+        boolean hasContent = personRecord.has(0, PersonRecord.Field.FIRST_NAME) || personRecord.has(0, PersonRecord.Field.LAST_NAME) || hasAddress || hasPhone || personRecord.familyCount() > 0;
+        if (!startComplexElement("person", 1, hasContent))
+            return;
+        writeElement("firstname", personRecord, 0, PersonRecord.Field.FIRST_NAME, 2);
+        writeElement("lastname", personRecord, 0, PersonRecord.Field.LAST_NAME, 2);
+        if (hasAddress)
+            writeAddress(personRecord, 0, 2);
+        if (hasPhone)
+            writePhone(personRecord, 0, 2);
+        for (int family = 1; family <= personRecord.familyCount(); family++) {
+            boolean familyHasContent = personRecord.has(family, PersonRecord.Field.NAME) || personRecord.has(family, PersonRecord.Field.BORN) || personRecord.hasFamilyPhone(family) || personRecord.hasFamilyAddress(family);
+            if (!startComplexElement("family", 2, familyHasContent))
+                continue;
+            writeElement("name", personRecord, family, PersonRecord.Field.NAME, 3);
+            writeElement("born", personRecord, family, PersonRecord.Field.BORN, 3);
+            if (personRecord.hasFamilyPhone(family))
+                writePhone(personRecord, family, 3);
+            if (personRecord.hasFamilyAddress(family))
+                writeAddress(personRecord, family, 3);
+            endComplexElement(2);
+        }
+        endComplexElement(1);
+    }
+
+    /**
+     * Closes the people element and flushes, the underlying writer is left open.
+     */
+    public void writeEndPeople() throws XMLStreamException {
+        if (fragment) {
+            xmlStreamWriter.flush();
+            return;
+        }
+        if (hasPerson) {
+            if (!compact)
+                xmlStreamWriter.writeCharacters("\n");
+            xmlStreamWriter.writeEndElement();
+        } else
+            xmlStreamWriter.writeEmptyElement("people");
+        xmlStreamWriter.flush();
+    }
+
+    public boolean hasPerson() {
+        return hasPerson;
+    }
+
+    private void writeAddress(PersonRecord personRecord, int group, int depth) throws XMLStreamException {
+        boolean hasContent = personRecord.has(group, PersonRecord.Field.STREET) || personRecord.has(group, PersonRecord.Field.TOWN) || personRecord.has(group, PersonRecord.Field.POSTAL_CODE);
+        if (!startComplexElement("address", depth, hasContent))
+            return;
+        writeElement("street", personRecord, group, PersonRecord.Field.STREET, depth + 1);
+        writeElement("town", personRecord, group, PersonRecord.Field.TOWN, depth + 1);
+        writeElement("postalCode", personRecord, group, PersonRecord.Field.POSTAL_CODE, depth + 1);
+        endComplexElement(depth);
+    }
+
+    private void writePhone(PersonRecord personRecord, int group, int depth) throws XMLStreamException {
+        boolean hasContent = personRecord.has(group, PersonRecord.Field.MOBILE) || personRecord.has(group, PersonRecord.Field.LAND_PHONE);
+        if (!startComplexElement("phone", depth, hasContent))
+            return;
+        writeElement("mobile", personRecord, group, PersonRecord.Field.MOBILE, depth + 1);
+        writeElement("landPhone", personRecord, group, PersonRecord.Field.LAND_PHONE, depth + 1);
+        endComplexElement(depth);
+    }
+
+    /**
+     * @return true if the element is opened, false if it is written as an empty element
+     */
+    private boolean startComplexElement(String name, int depth, boolean hasContent) throws XMLStreamException {
+        indent(depth);
+        if (!hasContent) {
+            xmlStreamWriter.writeEmptyElement(name);
+            return false;
+        }
+        xmlStreamWriter.writeStartElement(name);
+        return true;
+    }
+
+    private void endComplexElement(int depth) throws XMLStreamException {
+        indent(depth);
+        xmlStreamWriter.writeEndElement();
+    }
+
+    private void writeElement(String name, PersonRecord personRecord, int group, PersonRecord.Field field, int depth) throws XMLStreamException {
+        if (!personRecord.has(group, field))
+            return;
+        indent(depth);
+        xmlStreamWriter.writeStartElement(name);
+        xmlStreamWriter.writeCharacters(personRecord.chars(), personRecord.start(group, field), personRecord.length(group, field));
+        xmlStreamWriter.writeEndElement();
+    }
+
+    private void indent(int depth) throws XMLStreamException {
+        if (compact)
+            return;
+        xmlStreamWriter.writeCharacters("\n");
+        for (int i = 0; i < depth; i++)
+            xmlStreamWriter.writeCharacters(INDENT);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.softhouse.integration.fileconverter.dto;
+
+import java.util.Arrays;
+
+/**
+ * A person and its families as read from the csv, kept flat: the characters of all fields are copied into one buffer and
+ * every field is an offset and a length into it. The person is group 0 and its families are groups 1 to {@link #familyCount()}.
+ * A record is cleared and reused for the next person, so once the buffers have grown to the largest person
+ * a file is read without allocating per person. {@link PeopleXmlWriter#writePerson(PersonRecord)} writes it as
+ * the JAXB mapping of the same lines used to be written.
+ * <p>
+ * A record is not thread safe.
+ */
+public class PersonRecord {
+
+    public enum Field {
+        FIRST_NAME, LAST_NAME, NAME, BORN, STREET, TOWN, POSTAL_CODE, MOBILE, LAND_PHONE
+    }
+
+    private static final int FIELD_COUNT = Field.values().length;
+    private static final int HAS_PHONE = 1;
+    private static final int HAS_ADDRESS = 2;
+
+    private char[] chars = new char[256];
+    private int charCount;
+    private int[] starts = new int[FIELD_COUNT * 4];
+    private int[] lengths = new int[FIELD_COUNT * 4];
+    private int[] flags = new int[4];
+    private int familyCount;
+
+    public PersonRecord() {
+        clear();
+    }
+
+    /**
+     * Starts the next person, all fields are null.
+     */
+    public void clear() {
+        charCount = 0;
+        familyCount = 0;
+        clearGroup(0);
+    }
+
+    /**
+     * Starts a family, the fields set afterwards belong to it.
+     */
+    public void startFamily() {
+        familyCount++;
+        int groups = familyCount + 1;
+        if (flags.length < groups) {
+            flags = Arrays.copyOf(flags, groups * 2);
+            starts = Arrays.copyOf(starts, groups * 2 * FIELD_COUNT);
+            lengths = Arrays.copyOf(lengths, groups * 2 * FIELD_COUNT);
+        }
+        clearGroup(familyCount);
+    }
+
+    /**
+     * Copies a field of the current group, that is the last family or the person if it has none.
+     */
+    public void set(Field field, char[] buffer, int start, int length) {
+        if (charCount + length > chars.length)
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        System.arraycopy(buffer, start, chars, charCount, length);
+        int slot = familyCount * FIELD_COUNT + field.ordinal();
+        starts[slot] = charCount;
+        lengths[slot] = length;
+        charCount += length;
+    }
+
+    /**
+     * Marks that the current family has a phone, which is written even if its fields are null.
+     */
+    public void setFamilyPhone() {
+        flags[familyCount] |= HAS_PHONE;
+    }
+
+    /**
+     * Marks that the current family has an address, which is written even if its fields are null.
+     */
+    public void setFamilyAddress() {
+        flags[familyCount] |= HAS_ADDRESS;
+    }
+
+    public int familyCount() {
+        return familyCount;
+    }
+
+    public boolean hasFamilyPhone(int group) {
+        return (flags[group] & HAS_PHONE) != 0;
+    }
+
+    public boolean hasFamilyAddress(int group) {
+        return (flags[group] & HAS_ADDRESS) != 0;
+    }
+
+    public boolean has(int group, Field field) {
+        return lengths[group * FIELD_COUNT + field.ordinal()] >= 0;
+    }
+
+    public char[] chars() {
+        return chars;
+    }
+
+    public int start(int group, Field field) {
+        return starts[group * FIELD_COUNT + field.ordinal()];
+    }
+
+    /**
+     * @return the length of the field, -1 if it is null
+     */
+    public int length(int group, Field field) {
+        return lengths[group * FIELD_COUNT + field.ordinal()];
+    }
+
+    /**
+     * Creates the String of a field, for tests and logging.
+     */
+    public String get(int group, Field field) {
+        return has(group, field) ? new String(chars, start(group, field), length(group, field)) : null;
+    }
+
+    private void clearGroup(int group) {
+        Arrays.fill(lengths, group * FIELD_COUNT, (group + 1) * FIELD_COUNT, -1);
+        flags[group] = 0;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.softhouse.integration.fileconverter.exception;
+
+import java.io.Serial;
+
+/**
+ * Thrown when an admitted request turns out to need more of the heap budget than it was charged, and the budget is not
+ * freed in time. The client should retry after retryAfterSeconds.
+ */
+public class AdmissionRejectedException extends ConversionRejectedException {
+
+    @Serial
+    static final long serialVersionUID = 5192873321470598324L;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds, null);
+    }
+}
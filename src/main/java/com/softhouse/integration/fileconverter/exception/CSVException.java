@@ -2,6 +2,7 @@ package com.softhouse.integration.fileconverter.exception;
 
 import java.io.Serial;
 
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -14,10 +15,20 @@ public class CSVException extends RuntimeException {
 
     @Serial
     static final long serialVersionUID = -3616754821125285157L;
-    private final byte[] content;
+    /**
+     * The error csv, its spool file is removed once it is written to the response or closed.
+     */
+    private final transient CSVErrorReport errorReport;
 
-    public CSVException(String message, byte[] content) {
+    public CSVException(String message, CSVErrorReport errorReport) {
         super(message);
-        this.content = content;
+        this.errorReport = errorReport;
+    }
+
+    /**
+     * @return the whole error csv in memory, only meant for small reports
+     */
+    public byte[] getContent() {
+        return errorReport.toByteArray();
     }
 }
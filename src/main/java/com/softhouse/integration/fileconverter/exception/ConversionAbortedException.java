@@ -0,0 +1,18 @@
+package com.softhouse.integration.fileconverter.exception;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a conversion fails after a part of its xml was sent, such as a body found invalid past the hold-back of /convertFile/body.
+ * Its handler throws it on: the response is committed, so the container closes the connection without ending the response,
+ * and the client can not take the part it got for a whole xml.
+ */
+public class ConversionAbortedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 4630721796520958105L;
+
+    public ConversionAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
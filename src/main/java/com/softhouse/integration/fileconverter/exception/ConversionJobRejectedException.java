@@ -0,0 +1,16 @@
+package com.softhouse.integration.fileconverter.exception;
+
+import java.io.Serial;
+
+/**
+ * Thrown when no more jobs can be queued, the client should retry after retryAfterSeconds.
+ */
+public class ConversionJobRejectedException extends ConversionRejectedException {
+
+    @Serial
+    static final long serialVersionUID = 4153291796526713470L;
+
+    public ConversionJobRejectedException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, retryAfterSeconds, cause);
+    }
+}
@@ -0,0 +1,21 @@
+package com.softhouse.integration.fileconverter.exception;
+
+import java.io.Serial;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the lane a conversion belongs in has no room left, the client should retry after retryAfterSeconds.
+ */
+@Getter
+public class ConversionLaneRejectedException extends ConversionRejectedException {
+
+    @Serial
+    static final long serialVersionUID = -2870913645268127745L;
+    private final String lane;
+
+    public ConversionLaneRejectedException(String message, String lane, long retryAfterSeconds, Throwable cause) {
+        super(message, retryAfterSeconds, cause);
+        this.lane = lane;
+    }
+}
@@ -0,0 +1,22 @@
+package com.softhouse.integration.fileconverter.exception;
+
+import java.io.Serial;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the service has no room for a conversion now, such as a full job queue, lane or heap budget.
+ * It is answered with 503 and a Retry-After of retryAfterSeconds.
+ */
+@Getter
+public class ConversionRejectedException extends RuntimeException {
+
+    @Serial
+    static final long serialVersionUID = -6409513377524890216L;
+    private final long retryAfterSeconds;
+
+    public ConversionRejectedException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
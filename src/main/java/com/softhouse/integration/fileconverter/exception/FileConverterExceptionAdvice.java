@@ -4,7 +4,11 @@ import java.io.IOException;
 import javax.servlet.http.HttpServletResponse;
 
 import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -33,10 +37,30 @@ public class FileConverterExceptionAdvice {
         httpServletResponse.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
     }
 
+    /**
+     * A full job queue, lane or heap budget: the client should retry after the Retry-After.
+     */
+    @ExceptionHandler(ConversionRejectedException.class)
+    ResponseEntity<FileErrorDTO> conversionRejectedExceptionHandler(ConversionRejectedException ex) {
+        FileErrorDTO fileErrorDTO = new FileErrorDTO();
+        fileErrorDTO.getGeneralErrors().add(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds())).body(fileErrorDTO);
+    }
+
+    /**
+     * Left unanswered, as the response is committed: thrown on, it makes the container close the connection.
+     * The handler is needed so the handlers of its cause, such as the one of a CSVException, do not write to the response.
+     */
+    @ExceptionHandler(ConversionAbortedException.class)
+    void conversionAbortedExceptionHandler(ConversionAbortedException ex) {
+        throw ex;
+    }
+
     @ExceptionHandler(CSVException.class)
-    ResponseEntity<byte[]> csvFileExceptionHandler(CSVException ex) {
-        log.info("{}", ex.getContent().length < 10000 ? new String(ex.getContent()) : "cvs content length=" + ex.getContent().length);
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body(ex.getContent());
+    ResponseEntity<Resource> csvFileExceptionHandler(CSVException ex) throws IOException {
+        CSVErrorReport errorReport = ex.getErrorReport();
+        log.info("csv errors={}, suppressed={}", errorReport.getErrorCount(), errorReport.getSuppressedCount());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body(new InputStreamResource(errorReport.getInputStream()));
     }
 
 }
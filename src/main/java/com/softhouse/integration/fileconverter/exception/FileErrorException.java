@@ -16,9 +16,18 @@ public class FileErrorException extends RuntimeException {
     @Serial
     static final long serialVersionUID = 1488617718443574515L;
     private final FileErrorDTO fileErrorDTO;
+    /**
+     * The message code of the error, counted in the metrics. Null if the error is not one of the file checks.
+     */
+    private final String code;
 
     public FileErrorException(FileErrorDTO fileErrorDTO) {
+        this(null, fileErrorDTO);
+    }
+
+    public FileErrorException(String code, FileErrorDTO fileErrorDTO) {
         super(fileErrorDTO.toString());
+        this.code = code;
         this.fileErrorDTO = fileErrorDTO;
     }
 }
@@ -0,0 +1,197 @@
+package com.softhouse.integration.fileconverter.filewriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+import com.softhouse.integration.fileconverter.exception.FileWriterServiceUnavailableException;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.util.CommonEnum;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The error csv of a file, written row by row as the errors are found. The errors come in line order, so the rows need no sorting.
+ * Rows are kept in memory up to the spool threshold and then moved to a spool file, so the heap use does not grow with the number of errors.
+ * After maxErrors rows the errors are only counted, and {@link #finish()} adds a summary row with their number,
+ * which is a lower bound if the file was not read to its end.
+ * The spool file is removed by {@link #close()}, or when the stream of {@link #getInputStream()} is closed.
+ */
+@Slf4j
+public class CSVErrorReport implements CSVErrorSink, Closeable {
+
+    private static final byte[] HEADER = (Arrays.stream(CommonEnum.RequestFileCSVError.values()).map(CommonEnum.RequestFileCSVError::getValue)
+            .collect(Collectors.joining(CommonEnum.CSVDelimiter.PIPE.getValue())) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+    private final String fileName;
+    private final int maxErrors;
+    private final Path directory;
+    private final long spoolThreshold;
+    private final ConverterMessages messages;
+    private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private OutputStream outputStream = memory;
+    private Path spoolFile;
+    private int errorCount;
+    private long suppressedCount;
+    private boolean lowerBound;
+    private long size = HEADER.length;
+
+    CSVErrorReport(String fileName, int maxErrors, Path directory, long spoolThreshold, ConverterMessages messages) {
+        this.fileName = fileName;
+        this.maxErrors = maxErrors;
+        this.directory = directory;
+        this.spoolThreshold = spoolThreshold;
+        this.messages = messages;
+    }
+
+    @Override
+    public boolean isFull() {
+        return errorCount >= maxErrors;
+    }
+
+    @Override
+    public void add(CSVLineErrorDTO error) {
+        if (isFull()) {
+            suppress(1);
+            return;
+        }
+        errorCount++;
+        write(error);
+    }
+
+    @Override
+    public void suppress(long count) {
+        suppressedCount += count;
+    }
+
+    /**
+     * The file was not read to its end once the report was full, so the number of the suppressed errors is only a lower bound.
+     */
+    public void markLowerBound() {
+        lowerBound = true;
+    }
+
+    /**
+     * Adds the summary row if errors are suppressed, and closes the spool file for writing. No rows can be added afterwards.
+     */
+    public void finish() {
+        if (suppressedCount > 0)
+            write(CSVLineErrorDTO.builder().fileName(fileName).lineNo(0).fieldName("").fieldValue("").errorDescription(messages.getMessage(lowerBound ? "MSG_200332" : "MSG_200326", suppressedCount)).build());
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            throw writeException(e);
+        }
+    }
+
+    public boolean isEmpty() {
+        return errorCount == 0 && suppressedCount == 0;
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * @return the bytes of the whole error csv, with its header
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Writes the header row of an error csv, for a csv combining the rows of several reports.
+     */
+    public static void writeHeader(OutputStream out) throws IOException {
+        out.write(HEADER);
+    }
+
+    /**
+     * @param header false to write only the rows, to combine the reports of several files
+     */
+    public void writeTo(OutputStream out, boolean header) throws IOException {
+        if (header)
+            writeHeader(out);
+        if (spoolFile == null)
+            memory.writeTo(out);
+        else
+            Files.copy(spoolFile, out);
+    }
+
+    /**
+     * The whole error csv, it can be read once and removes the spool file when it is closed.
+     */
+    public InputStream getInputStream() throws IOException {
+        InputStream rows = spoolFile == null ? new ByteArrayInputStream(memory.toByteArray()) : Files.newInputStream(spoolFile, StandardOpenOption.DELETE_ON_CLOSE);
+        return new SequenceInputStream(new ByteArrayInputStream(HEADER), rows);
+    }
+
+    /**
+     * The whole error csv in memory, only meant for small reports.
+     */
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            writeTo(byteArrayOutputStream, true);
+            return byteArrayOutputStream.toByteArray();
+        } catch (IOException e) {
+            throw writeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (spoolFile == null)
+            return;
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException e) {
+            log.warn("can not delete {}", spoolFile, e);
+        }
+    }
+
+    private void write(CSVLineErrorDTO error) {
+        try {
+            byte[] row = error.toString().getBytes(StandardCharsets.UTF_8);
+            outputStream.write(row);
+            size += row.length;
+            if (spoolFile == null && memory.size() > spoolThreshold)
+                spool();
+        } catch (IOException e) {
+            throw writeException(e);
+        }
+    }
+
+    private void spool() throws IOException {
+        Files.createDirectories(directory);
+        spoolFile = Files.createTempFile(directory, "errors-", ".csv");
+        outputStream = new BufferedOutputStream(Files.newOutputStream(spoolFile));
+        memory.writeTo(outputStream);
+        memory.reset();
+    }
+
+    private FileWriterServiceUnavailableException writeException(IOException e) {
+        log.error("MSG_200317", e);
+        return new FileWriterServiceUnavailableException(messages.getMessage("MSG_200317"), e);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.softhouse.integration.fileconverter.filewriter;
+
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+
+/**
+ * Receives the errors of the lines in line order. Once it is full the errors are only counted, so no row has to be built for them.
+ */
+public interface CSVErrorSink {
+
+    boolean isFull();
+
+    void add(CSVLineErrorDTO error);
+
+    void suppress(long count);
+
+}
@@ -0,0 +1,31 @@
+package com.softhouse.integration.fileconverter.filewriter;
+
+import java.nio.file.Path;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the error csv, which is written row by row while a file is validated.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.error-report")
+public class ErrorReportProperties {
+
+    /**
+     * Most rows of an error csv unless the request asks for another limit. By default every error is written, as the error csv always had it.
+     */
+    private int maxErrors = Integer.MAX_VALUE;
+
+    /**
+     * Rows are kept in memory up to this size, a larger error csv is moved to a spool file.
+     */
+    private DataSize spoolThreshold = DataSize.ofMegabytes(1);
+
+    /**
+     * Directory of the spool files.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "integration-service", "error-reports");
+
+}
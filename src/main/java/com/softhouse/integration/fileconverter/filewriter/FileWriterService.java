@@ -1,10 +1,16 @@
 package com.softhouse.integration.fileconverter.filewriter;
 
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+
 /**
  * Created by Shahrooz on 02/17/2022.
  */
 public interface FileWriterService {
 
-    byte[] toByteArray(String text);
+    /**
+     * @param maxErrors the most rows of the report, null for the configured default
+     * @return an empty error csv for the rows of the given file
+     */
+    CSVErrorReport createErrorReport(String fileName, Integer maxErrors, ConverterMessages messages);
 
 }
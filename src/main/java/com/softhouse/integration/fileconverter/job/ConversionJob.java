@@ -0,0 +1,31 @@
+package com.softhouse.integration.fileconverter.job;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * State of a conversion job. A COMPLETED job has an xml result, an INVALID job has either general errors
+ * or an error csv result, a FAILED job has a message.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ConversionJob {
+    private final String id;
+    private final String fileName;
+    private final Instant submittedAt = Instant.now();
+    private volatile ConversionJobStatus status = ConversionJobStatus.QUEUED;
+    private volatile Instant finishedAt;
+    private volatile Set<String> generalErrors;
+    private volatile String message;
+    @JsonIgnore
+    private volatile Path resultFile;
+
+    public boolean hasResult() {
+        return resultFile != null;
+    }
+}
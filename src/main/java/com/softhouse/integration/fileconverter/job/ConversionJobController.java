@@ -0,0 +1,59 @@
+package com.softhouse.integration.fileconverter.job;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.LargeFileProperties;
+import com.softhouse.integration.fileconverter.admission.AdmissionControl;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Submit a file, which may be compressed with gzip or zstd, poll the job, then download the xml of a COMPLETED job or the error csv of an INVALID job.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/convertJobs")
+public class ConversionJobController {
+
+    private final ConversionJobService conversionJobService;
+    private final LargeFileProperties largeFileProperties;
+    private final AdmissionControl admissionControl;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ConversionJob> submit(@RequestParam(name = "file") MultipartFile file, ConversionOptions options, HttpServletRequest request) throws IOException {
+        MultipartFile decodedFile = DecodedMultipartFile.of(file, largeFileProperties.getMaxDecodedSize().toBytes());
+        admissionControl.chargeDecoded(request, decodedFile);
+        ConversionJob job = conversionJobService.submit(decodedFile, options, admissionControl.handOver(request));
+        return ResponseEntity.accepted().location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri()).body(job);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ConversionJob> getJob(@PathVariable String id) {
+        return ResponseEntity.of(conversionJobService.getJob(id));
+    }
+
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getResult(@PathVariable String id) {
+        return conversionJobService.getJob(id).<ResponseEntity<?>>map(job -> {
+            if (!job.hasResult())
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+            MediaType mediaType = job.getStatus() == ConversionJobStatus.COMPLETED ? MediaType.APPLICATION_XML : MediaType.TEXT_PLAIN;
+            return ResponseEntity.ok().contentType(mediaType).body(new FileSystemResource(job.getResultFile()));
+        }).orElse(ResponseEntity.notFound().build());
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.softhouse.integration.fileconverter.job;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the asynchronous conversion jobs.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.job")
+public class ConversionJobProperties {
+
+    /**
+     * Number of threads converting jobs.
+     */
+    private int poolSize = 4;
+
+    /**
+     * Number of jobs waiting for a thread, a job submitted when the queue is full is rejected.
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * Directory keeping the uploaded files and the results of the jobs.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "integration-service", "jobs");
+
+    /**
+     * How long a finished job and its result are kept.
+     */
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * How often expired jobs are removed, in ISO-8601 form as it is read by the scheduler.
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+
+    /**
+     * Seconds a client is told to wait before retrying a rejected job.
+     */
+    private long retryAfterSeconds = 30;
+
+}
@@ -0,0 +1,20 @@
+package com.softhouse.integration.fileconverter.job;
+
+import java.util.Optional;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ConversionJobService {
+
+    /**
+     * Keeps the file on local disk and queues its conversion.
+     *
+     * @param release run once the job has finished, or at once if it is not queued
+     * @return the queued job
+     */
+    ConversionJob submit(MultipartFile file, ConversionOptions options, Runnable release);
+
+    Optional<ConversionJob> getJob(String id);
+
+}
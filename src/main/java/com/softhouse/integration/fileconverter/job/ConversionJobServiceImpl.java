@@ -0,0 +1,195 @@
+package com.softhouse.integration.fileconverter.job;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.FileConverterService;
+import com.softhouse.integration.fileconverter.dto.FileErrorDTO;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.exception.ConversionJobRejectedException;
+import com.softhouse.integration.fileconverter.exception.FileConverterServiceUnavailableException;
+import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.util.LocaleContextTaskDecorator;
+import com.softhouse.integration.util.PathMultipartFile;
+import com.softhouse.integration.util.SizeLimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Runs conversions on a bounded pool instead of the request thread. The upload is kept in the job directory
+ * until the job has run, the xml or the error csv is written next to it and removed when the job expires.
+ * Jobs are only kept in memory, so the directory is cleared at startup. The heap budget the request was admitted with is
+ * held until its job has run.
+ */
+@Slf4j
+@Service
+public class ConversionJobServiceImpl implements ConversionJobService {
+
+    private final FileConverterService fileConverterService;
+    private final ConverterMessageCatalog converterMessageCatalog;
+    private final ConversionJobProperties conversionJobProperties;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+
+    public ConversionJobServiceImpl(FileConverterService fileConverterService, ConverterMessageCatalog converterMessageCatalog, ConversionJobProperties conversionJobProperties) {
+        this.fileConverterService = fileConverterService;
+        this.converterMessageCatalog = converterMessageCatalog;
+        this.conversionJobProperties = conversionJobProperties;
+        executor.setCorePoolSize(conversionJobProperties.getPoolSize());
+        executor.setMaxPoolSize(conversionJobProperties.getPoolSize());
+        executor.setQueueCapacity(conversionJobProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("conversion-job-");
+        executor.setTaskDecorator(new LocaleContextTaskDecorator());
+        executor.initialize();
+        clearDirectory(conversionJobProperties.getDirectory());
+    }
+
+    @Override
+    public ConversionJob submit(MultipartFile file, ConversionOptions options, Runnable release) {
+        ConverterMessages messages = converterMessageCatalog.getMessages();
+        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+        ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), fileName);
+        Path input = conversionJobProperties.getDirectory().resolve(job.getId() + ".csv");
+        try {
+            file.transferTo(input);
+        } catch (SizeLimitExceededException e) {
+            deleteQuietly(input);
+            release.run();
+            FileErrorDTO fileErrorDTO = new FileErrorDTO();
+            fileErrorDTO.getGeneralErrors().add(messages.getMessage("MSG_200331", fileName, DataSize.ofBytes(e.getLimit())));
+            throw new FileErrorException("MSG_200331", fileErrorDTO);
+        } catch (IOException e) {
+            deleteQuietly(input);
+            release.run();
+            log.error("MSG_200313", e);
+            throw new FileConverterServiceUnavailableException(messages.getMessage("MSG_200313", fileName), e);
+        } catch (RuntimeException e) {
+            deleteQuietly(input);
+            release.run();
+            throw e;
+        }
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> {
+                try {
+                    convert(job, new PathMultipartFile(input, fileName, file.getContentType()), options);
+                } finally {
+                    release.run();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            deleteQuietly(input);
+            release.run();
+            throw new ConversionJobRejectedException(messages.getMessage("MSG_200322", fileName), conversionJobProperties.getRetryAfterSeconds(), e);
+        }
+        return job;
+    }
+
+    @Override
+    public Optional<ConversionJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    @Scheduled(fixedDelayString = "${converter.job.cleanup-interval:PT1M}")
+    public void removeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(conversionJobProperties.getTtl());
+        jobs.values().removeIf(job -> {
+            if (!job.getStatus().isFinished() || !job.getFinishedAt().isBefore(expiredBefore))
+                return false;
+            if (job.hasResult())
+                deleteQuietly(job.getResultFile());
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void convert(ConversionJob job, PathMultipartFile file, ConversionOptions options) {
+        job.setStatus(ConversionJobStatus.RUNNING);
+        Path xml = conversionJobProperties.getDirectory().resolve(job.getId() + ".xml");
+        try {
+            StreamingResponseBody body = fileConverterService.convertFileStreaming(file, options);
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(xml))) {
+                body.writeTo(outputStream);
+            }
+            job.setResultFile(xml);
+            finish(job, ConversionJobStatus.COMPLETED);
+        } catch (CSVException e) {
+            Path errors = conversionJobProperties.getDirectory().resolve(job.getId() + ".errors.csv");
+            try (CSVErrorReport errorReport = e.getErrorReport();
+                 OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(errors))) {
+                errorReport.writeTo(outputStream, true);
+                job.setResultFile(errors);
+                job.setMessage(e.getMessage());
+                finish(job, ConversionJobStatus.INVALID);
+            } catch (IOException ioException) {
+                fail(job, ioException);
+            }
+        } catch (FileErrorException e) {
+            job.setGeneralErrors(e.getFileErrorDTO().getGeneralErrors());
+            finish(job, ConversionJobStatus.INVALID);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(xml);
+            fail(job, e);
+        } finally {
+            deleteQuietly(file.getPath());
+        }
+    }
+
+    private void fail(ConversionJob job, Exception e) {
+        log.error("conversion job {} failed", job.getId(), e);
+        job.setMessage(e.getMessage());
+        finish(job, ConversionJobStatus.FAILED);
+    }
+
+    private void finish(ConversionJob job, ConversionJobStatus status) {
+        job.setFinishedAt(Instant.now());
+        job.setStatus(status);
+    }
+
+    private void clearDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(this::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("can not delete {}", path, e);
+        }
+    }
+
+}
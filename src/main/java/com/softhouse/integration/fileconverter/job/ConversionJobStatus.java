@@ -0,0 +1,9 @@
+package com.softhouse.integration.fileconverter.job;
+
+public enum ConversionJobStatus {
+    QUEUED, RUNNING, COMPLETED, INVALID, FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == INVALID || this == FAILED;
+    }
+}
@@ -0,0 +1,200 @@
+package com.softhouse.integration.fileconverter.lane;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PreDestroy;
+
+import com.softhouse.integration.fileconverter.exception.ConversionLaneRejectedException;
+import com.softhouse.integration.fileconverter.exception.FileConverterServiceUnavailableException;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import com.softhouse.integration.util.LocaleContextTaskDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Runs the conversions of the request threads in two bounded pools chosen by the size of the upload. The request thread
+ * waits for its conversion, so the response is written as before, but the number of large conversions running and waiting
+ * is bounded by their own lane, and the fast lane always has threads for small uploads. A compressed upload goes by its plain size.
+ * A conversion returning a streaming body keeps its lane thread until the body is written.
+ * The time a conversion waits in its lane's queue and the time it runs are recorded per lane.
+ */
+@Slf4j
+@Component
+public class ConversionLanes {
+
+    public static final String FAST = "fast";
+    public static final String THROUGHPUT = "throughput";
+
+    private final LaneProperties laneProperties;
+    private final ConverterMessageCatalog converterMessageCatalog;
+    private final ConversionMetrics conversionMetrics;
+    private final ThreadPoolTaskExecutor fastExecutor;
+    private final ThreadPoolTaskExecutor throughputExecutor;
+
+    public ConversionLanes(LaneProperties laneProperties, ConverterMessageCatalog converterMessageCatalog, ConversionMetrics conversionMetrics) {
+        this.laneProperties = laneProperties;
+        this.converterMessageCatalog = converterMessageCatalog;
+        this.conversionMetrics = conversionMetrics;
+        this.fastExecutor = executor(FAST, laneProperties.getFast());
+        this.throughputExecutor = executor(THROUGHPUT, laneProperties.getThroughput());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fastExecutor.shutdown();
+        throughputExecutor.shutdown();
+    }
+
+    /**
+     * @param size size of the upload, -1 if it is not known
+     * @return the lane an upload of the size runs in
+     */
+    public String lane(long size) {
+        return size >= 0 && size <= laneProperties.getThreshold().toBytes() ? FAST : THROUGHPUT;
+    }
+
+    /**
+     * A compressed upload is decompressed as far as the threshold, which is enough to know its lane.
+     *
+     * @return the size the lane of the upload is chosen by, -1 if it is not known
+     */
+    public long laneSize(MultipartFile file) {
+        if (!(file instanceof DecodedMultipartFile))
+            return file.getSize();
+        long max = laneProperties.getThreshold().toBytes() + 1;
+        long size = 0;
+        try (InputStream inputStream = file.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            for (int read; size < max && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, max - size))) != -1; )
+                size += read;
+            return size;
+        } catch (IOException e) {
+            log.debug("can not decompress {}, its size is not known", file.getOriginalFilename(), e);
+            return -1;
+        }
+    }
+
+    /**
+     * Runs the conversion in the lane of the size and waits for it. Its exception is thrown as it is,
+     * a conversion which finds its lane full is rejected with a {@link ConversionLaneRejectedException}.
+     *
+     * @param size size of the upload, -1 if it is not known
+     */
+    public <T> T run(long size, Conversion<T> conversion) throws IOException {
+        return run(size, conversion, null);
+    }
+
+    /**
+     * Runs a conversion returning a streaming body like {@link #run(long, Conversion)}, but the conversion keeps its lane thread
+     * until the body has written the xml, so the lane bounds the conversions which are writing too. The thread is freed
+     * after the max hold of the lanes at the latest, in case the body is never written.
+     *
+     * @param size size of the upload, -1 if it is not known
+     */
+    public StreamingResponseBody runStreaming(long size, Conversion<StreamingResponseBody> conversion) throws IOException {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        StreamingResponseBody body;
+        try {
+            body = run(size, conversion, written);
+        } catch (IOException | RuntimeException | Error e) {
+            written.complete(null);
+            throw e;
+        }
+        return outputStream -> {
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                written.complete(null);
+            }
+        };
+    }
+
+    /**
+     * @param written completed once the result has been used, the lane thread waits for it after a successful conversion; null not to wait
+     */
+    private <T> T run(long size, Conversion<T> conversion, CompletableFuture<Void> written) throws IOException {
+        if (!laneProperties.isEnabled())
+            return conversion.convert();
+        String lane = lane(size);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        try {
+            (FAST.equals(lane) ? fastExecutor : throughputExecutor).execute(() -> {
+                long started = System.nanoTime();
+                conversionMetrics.laneWait(lane, started - submitted);
+                try {
+                    T converted = conversion.convert();
+                    if (written != null) {
+                        result.complete(converted);
+                        awaitWritten(lane, written);
+                    }
+                    conversionMetrics.laneService(lane, System.nanoTime() - started);
+                    result.complete(converted);
+                } catch (Throwable e) {
+                    conversionMetrics.laneService(lane, System.nanoTime() - started);
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.info("{} lane is full, conversion of size={} rejected", lane, size);
+            conversionMetrics.laneRejected(lane);
+            throw new ConversionLaneRejectedException(converterMessageCatalog.getMessages().getMessage("MSG_200330"), lane, laneProperties.getRetryAfterSeconds(), e);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new FileConverterServiceUnavailableException(converterMessageCatalog.getMessages().getMessage("MSG_200330"), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (e.getCause() instanceof IOException ioException)
+                throw ioException;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void awaitWritten(String lane, CompletableFuture<Void> written) {
+        try {
+            written.get(laneProperties.getMaxHold().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("streamed body not written within {}, {} lane thread freed", laneProperties.getMaxHold(), lane);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Conversion<T> {
+        T convert() throws IOException;
+    }
+
+    private ThreadPoolTaskExecutor executor(String lane, LaneProperties.Lane settings) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(settings.getPoolSize());
+        executor.setMaxPoolSize(settings.getPoolSize());
+        executor.setQueueCapacity(settings.getQueueCapacity());
+        executor.setThreadNamePrefix(lane + "-lane-");
+        executor.setTaskDecorator(new LocaleContextTaskDecorator());
+        executor.initialize();
+        conversionMetrics.laneQueue(lane, () -> executor.getThreadPoolExecutor().getQueue().size());
+        conversionMetrics.laneActive(lane, executor::getActiveCount);
+        return executor;
+    }
+
+}
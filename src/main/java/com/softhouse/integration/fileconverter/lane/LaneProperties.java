@@ -0,0 +1,60 @@
+package com.softhouse.integration.fileconverter.lane;
+
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the conversion lanes: small uploads run in the fast lane, so they do not wait behind large ones in the throughput lane.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.lanes")
+public class LaneProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Uploads up to this size run in the fast lane, larger ones and ones of unknown size in the throughput lane.
+     */
+    private DataSize threshold = DataSize.ofKilobytes(512);
+
+    private Lane fast = new Lane(8, 200);
+
+    private Lane throughput = new Lane(2, 20);
+
+    /**
+     * Seconds a client is told to wait before retrying a conversion rejected by a full lane.
+     */
+    private long retryAfterSeconds = 5;
+
+    /**
+     * Longest a conversion keeps its lane thread while its streamed body is written, the thread is freed after it
+     * even if the body was never written.
+     */
+    private Duration maxHold = Duration.ofMinutes(10);
+
+    @Data
+    public static class Lane {
+
+        /**
+         * Number of threads converting in the lane.
+         */
+        private int poolSize;
+
+        /**
+         * Number of conversions waiting for a thread of the lane, a conversion beyond them is rejected.
+         */
+        private int queueCapacity;
+
+        public Lane() {
+        }
+
+        Lane(int poolSize, int queueCapacity) {
+            this.poolSize = poolSize;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.softhouse.integration.fileconverter.message;
+
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * One {@link ConverterMessages} per supported language, which only holds its locale and passes the lookups on to the
+ * MessageSource. A request picks its language through Accept-Language; an unsupported language falls back to English.
+ * The Swedish bundle is convertermessage_swe, so both "sv" and "swe" select it.
+ */
+@Component
+public class ConverterMessageCatalog {
+
+    private final ConverterMessages english;
+    private final Map<String, ConverterMessages> messagesByLanguage;
+
+    public ConverterMessageCatalog(MessageSource messageSource) {
+        this.english = new ConverterMessages(messageSource, new Locale("en"));
+        ConverterMessages swedish = new ConverterMessages(messageSource, new Locale("swe"));
+        this.messagesByLanguage = Map.of("en", english, "sv", swedish, "swe", swedish);
+    }
+
+    public ConverterMessages getMessages(Locale locale) {
+        return locale == null ? english : messagesByLanguage.getOrDefault(locale.getLanguage(), english);
+    }
+
+    /**
+     * The messages of the current request's locale.
+     */
+    public ConverterMessages getMessages() {
+        return getMessages(LocaleContextHolder.getLocale());
+    }
+
+}
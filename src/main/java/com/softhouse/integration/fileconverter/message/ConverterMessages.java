@@ -0,0 +1,46 @@
+package com.softhouse.integration.fileconverter.message;
+
+import java.util.Locale;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.context.MessageSource;
+
+/**
+ * The messages of one locale, each looked up in the MessageSource when it is needed; nothing is resolved in advance.
+ * The field names and error descriptions of error rows are resolved by {@link com.softhouse.integration.fileconverter.rules.ValidationRules#get}
+ * the first time a rule set is used in the locale, and kept with the rule set.
+ */
+@Getter
+public class ConverterMessages {
+
+    public static final int YEAR_DIGITS = 4;
+    public static final String FIELDS_NEEDED = "MSG_200103";
+    public static final String PHONE_FORMAT = "MSG_200104";
+    public static final String YEAR_DIGITS_NEEDED = "MSG_200105";
+    public static final String NAME_LENGTH = "MSG_200308";
+
+    private final Locale locale;
+    @Getter(AccessLevel.NONE)
+    private final MessageSource messageSource;
+
+    ConverterMessages(MessageSource messageSource, Locale locale) {
+        this.messageSource = messageSource;
+        this.locale = locale;
+    }
+
+    /**
+     * For the messages which are needed once per file, not once per row.
+     */
+    public String getMessage(String code, Object... args) {
+        return messageSource.getMessage(code, args.length == 0 ? null : args, locale);
+    }
+
+    /**
+     * For a name which is either a message key or the text itself, as the field names of the validation rules.
+     */
+    public String getMessageOrDefault(String code) {
+        return messageSource.getMessage(code, null, code, locale);
+    }
+
+}
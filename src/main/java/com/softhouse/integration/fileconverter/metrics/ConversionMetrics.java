@@ -0,0 +1,249 @@
+package com.softhouse.integration.fileconverter.metrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StopWatch;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The metrics of the conversions. The phases named in the StopWatch of an operation become timers tagged with the operation
+ * and the phase, so the timings of all requests can be aggregated instead of being read from the log.
+ * Timers and size summaries publish percentile histograms.
+ * The conversion metrics of a thread can be suspended, so conversions which are not traffic, as the warm-up's, are not counted.
+ */
+@Slf4j
+@Component
+public class ConversionMetrics {
+
+    private static final Duration MIN_DURATION = Duration.ofMillis(1);
+    private static final Duration MAX_DURATION = Duration.ofMinutes(10);
+    private static final double MIN_SIZE = DataSize.ofKilobytes(1).toBytes();
+    private static final double MAX_SIZE = DataSize.ofGigabytes(2).toBytes();
+
+    private static final ThreadLocal<Boolean> SUSPENDED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final MeterRegistry meterRegistry;
+    private final MetricsProperties metricsProperties;
+    private final DistributionSummary input;
+
+    public ConversionMetrics(MeterRegistry meterRegistry, MetricsProperties metricsProperties) {
+        this.meterRegistry = meterRegistry;
+        this.metricsProperties = metricsProperties;
+        this.input = sizeSummary("converter.input", "Size of the uploaded files").register(meterRegistry);
+    }
+
+    /**
+     * Suspends the conversion metrics of the calling thread until the returned suspension is closed.
+     */
+    public Suspension suspend() {
+        SUSPENDED.set(Boolean.TRUE);
+        return SUSPENDED::remove;
+    }
+
+    /**
+     * Records every task of the StopWatch and its total time, and logs its table if logStopWatch is on.
+     */
+    public void record(StopWatch stopWatch) {
+        if (SUSPENDED.get())
+            return;
+        for (StopWatch.TaskInfo taskInfo : stopWatch.getTaskInfo()) {
+            Timer.builder("converter.phase")
+                    .description("Time of a phase of a conversion")
+                    .tag("operation", stopWatch.getId())
+                    .tag("phase", taskInfo.getTaskName())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_DURATION)
+                    .maximumExpectedValue(MAX_DURATION)
+                    .register(meterRegistry)
+                    .record(taskInfo.getTimeNanos(), TimeUnit.NANOSECONDS);
+        }
+        Timer.builder("converter.operation")
+                .description("Time of a whole conversion")
+                .tag("operation", stopWatch.getId())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_DURATION)
+                .maximumExpectedValue(MAX_DURATION)
+                .register(meterRegistry)
+                .record(stopWatch.getTotalTimeNanos(), TimeUnit.NANOSECONDS);
+        if (metricsProperties.isLogStopWatch())
+            log.info("{}", stopWatch.prettyPrint());
+    }
+
+    public void input(long bytes) {
+        if (!SUSPENDED.get())
+            input.record(bytes);
+    }
+
+    /**
+     * @param type xml, or errors for an error csv
+     */
+    public void output(String type, long bytes) {
+        if (SUSPENDED.get())
+            return;
+        sizeSummary("converter.output", "Size of the converted files and error csvs").tag("type", type).register(meterRegistry).record(bytes);
+    }
+
+    /**
+     * Records the UTF-8 size of a text without encoding it.
+     */
+    public void output(String type, CharSequence text) {
+        if (SUSPENDED.get())
+            return;
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80)
+                bytes++;
+            else if (c < 0x800)
+                bytes += 2;
+            else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else
+                bytes += 3;
+        }
+        output(type, bytes);
+    }
+
+    /**
+     * @param recordCounts the number of lines of each CSVType, by its ordinal
+     */
+    public void records(long[] recordCounts) {
+        if (SUSPENDED.get())
+            return;
+        for (CSVType type : CSVType.values()) {
+            if (recordCounts[type.ordinal()] > 0)
+                Counter.builder("converter.records").description("Lines read by CSVType").tag("type", type.name()).register(meterRegistry).increment(recordCounts[type.ordinal()]);
+        }
+    }
+
+    /**
+     * @param errorCounts the number of errors by message code
+     */
+    public void errors(Map<String, Long> errorCounts) {
+        errorCounts.forEach(this::errors);
+    }
+
+    public void errors(String code, long count) {
+        if (SUSPENDED.get())
+            return;
+        Counter.builder("converter.errors").description("Errors found by message code").tag("code", code).register(meterRegistry).increment(count);
+    }
+
+    /**
+     * @param tier heap or disk
+     */
+    public void cacheHit(String tier) {
+        cacheGets("hit", tier);
+    }
+
+    public void cacheMiss() {
+        cacheGets("miss", "none");
+    }
+
+    public void cacheEviction(String tier) {
+        Counter.builder("converter.cache.evictions").description("Results evicted from the result cache").tag("tier", tier).register(meterRegistry).increment();
+    }
+
+    public void cacheSize(String tier, Supplier<Number> size) {
+        Gauge.builder("converter.cache.size", size).description("Size of the results in the result cache").tag("tier", tier).baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * @param state budget, or in_flight for the heap the running conversions are estimated to need
+     */
+    public void admissionMemory(String state, Supplier<Number> bytes) {
+        Gauge.builder("converter.admission.memory", bytes).description("Heap budget of the running conversions").tag("state", state).baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * @param state running or queued
+     */
+    public void admissionRequests(String state, Supplier<Number> count) {
+        Gauge.builder("converter.admission.requests", count).description("Conversion requests admitted or waiting for the heap budget").tag("state", state).register(meterRegistry);
+    }
+
+    /**
+     * @param reason queue_full or timed_out
+     */
+    public void admissionRejected(String reason) {
+        Counter.builder("converter.admission.rejected").description("Conversion requests rejected by the admission control").tag("reason", reason).register(meterRegistry).increment();
+    }
+
+    public void admissionWait(long nanos) {
+        Timer.builder("converter.admission.wait")
+                .description("Time a conversion request waited for the heap budget")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_DURATION)
+                .maximumExpectedValue(MAX_DURATION)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void laneWait(String lane, long nanos) {
+        laneTimer("converter.lane.wait", "Time a conversion waited in the queue of its lane", lane).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void laneService(String lane, long nanos) {
+        laneTimer("converter.lane.service", "Time a conversion ran in its lane", lane).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void laneQueue(String lane, Supplier<Number> count) {
+        Gauge.builder("converter.lane.queued", count).description("Conversions waiting in the queue of the lane").tag("lane", lane).register(meterRegistry);
+    }
+
+    public void laneActive(String lane, Supplier<Number> count) {
+        Gauge.builder("converter.lane.active", count).description("Conversions running in the lane").tag("lane", lane).register(meterRegistry);
+    }
+
+    public void laneRejected(String lane) {
+        Counter.builder("converter.lane.rejected").description("Conversions rejected by a full lane").tag("lane", lane).register(meterRegistry).increment();
+    }
+
+    /**
+     * @param result converted, errors or failed
+     */
+    public void watchedFile(String result) {
+        Counter.builder("converter.watch.files").description("Files of the watch folders converted").tag("result", result).register(meterRegistry).increment();
+    }
+
+    public interface Suspension extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private void cacheGets(String result, String tier) {
+        Counter.builder("converter.cache.gets").description("Lookups of the result cache").tag("result", result).tag("tier", tier).register(meterRegistry).increment();
+    }
+
+    private Timer laneTimer(String name, String description, String lane) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("lane", lane)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_DURATION)
+                .maximumExpectedValue(MAX_DURATION)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary.Builder sizeSummary(String name, String description) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_SIZE)
+                .maximumExpectedValue(MAX_SIZE);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.softhouse.integration.fileconverter.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the conversion metrics, which are exposed on /actuator/prometheus.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.metrics")
+public class MetricsProperties {
+
+    /**
+     * Also log the table of phase timings of every request, the timings are recorded as metrics either way.
+     */
+    private boolean logStopWatch;
+
+}
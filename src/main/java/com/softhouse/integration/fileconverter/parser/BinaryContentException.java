@@ -0,0 +1,18 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Thrown by {@link TextContentInputStream} when the bytes read are not text.
+ */
+public class BinaryContentException extends IOException {
+
+    @Serial
+    private static final long serialVersionUID = 4571983602749185123L;
+
+    public BinaryContentException(long position) {
+        super("binary content at byte " + position);
+    }
+
+}
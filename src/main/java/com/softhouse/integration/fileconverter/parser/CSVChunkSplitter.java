@@ -0,0 +1,85 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the bytes of a file into chunks which start at a P record, so every chunk holds whole persons
+ * with their T, A and F lines and can be validated and converted on its own.
+ * A chunk boundary is always the start of a line, found by scanning forward from the target size for a line
+ * whose first non-blank characters are "P|". The first chunk starts at the beginning of the file, whatever its first line is.
+ * Only ASCII bytes are compared, so the split is safe for UTF-8 and the other ASCII compatible charsets.
+ */
+public class CSVChunkSplitter {
+
+    private CSVChunkSplitter() {
+    }
+
+    /**
+     * @param content    the whole file, from its position to its limit
+     * @param targetSize the size a chunk should have at least, a chunk is larger when no P line follows sooner
+     * @return slices of content in file order, which together cover all of it
+     */
+    public static List<ByteBuffer> split(ByteBuffer content, int targetSize, char recordType, char delimiter) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int start = content.position();
+        int limit = content.limit();
+        while (start < limit) {
+            int end = nextBoundary(content, start + Math.max(1, targetSize), limit, (byte) recordType, (byte) delimiter);
+            chunks.add(content.slice(start, end - start));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the start of the first line at or after from which begins with the record type, or limit if there is none
+     */
+    private static int nextBoundary(ByteBuffer content, int from, int limit, byte recordType, byte delimiter) {
+        int pos = lineStart(content, from, limit);
+        while (pos < limit) {
+            int first = pos;
+            while (first < limit && isBlank(content.get(first)))
+                first++;
+            if (first + 1 < limit && content.get(first) == recordType && content.get(first + 1) == delimiter)
+                return pos;
+            pos = nextLine(content, first, limit);
+        }
+        return limit;
+    }
+
+    /**
+     * @return pos if a line starts there, otherwise the start of the next line
+     */
+    private static int lineStart(ByteBuffer content, int pos, int limit) {
+        if (pos >= limit)
+            return limit;
+        byte previous = content.get(pos - 1);
+        if (previous == '\n' || (previous == '\r' && content.get(pos) != '\n'))
+            return pos;
+        return nextLine(content, pos, limit);
+    }
+
+    /**
+     * @return the start of the line after the one pos is in, a \r\n counts as one line separator
+     */
+    private static int nextLine(ByteBuffer content, int pos, int limit) {
+        while (pos < limit) {
+            byte b = content.get(pos++);
+            if (b == '\n')
+                return pos;
+            if (b == '\r')
+                return pos < limit && content.get(pos) == '\n' ? pos + 1 : pos;
+        }
+        return limit;
+    }
+
+    /**
+     * Spaces and tabs, not line separators, so the scan stays in one line.
+     */
+    private static boolean isBlank(byte b) {
+        return b >= 0 && b <= ' ' && b != '\n' && b != '\r';
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines into a reusable char buffer instead of creating a String per line.
+ * A line is terminated by \n, \r or \r\n, the same as {@link java.io.BufferedReader#readLine()}.
+ * The current line is the range [lineStart, lineEnd) of the buffer, which stays valid until the next call of readLine.
+ */
+public class CSVLineReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private char[] buffer;
+    private int pos;
+    private int limit;
+    private int lineStart;
+    private int lineEnd;
+    private boolean skipLF;
+    private boolean eof;
+
+    public CSVLineReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CSVLineReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * @return false if the end of the input is reached
+     */
+    public boolean readLine() throws IOException {
+        if (skipLF) {
+            if (pos >= limit && !eof)
+                fill();
+            if (pos < limit && buffer[pos] == '\n')
+                pos++;
+            skipLF = false;
+        }
+        int scan = pos;
+        while (true) {
+            for (; scan < limit; scan++) {
+                char c = buffer[scan];
+                if (c == '\n' || c == '\r') {
+                    lineStart = pos;
+                    lineEnd = scan;
+                    pos = scan + 1;
+                    skipLF = c == '\r';
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos == limit)
+                    return false;
+                lineStart = pos;
+                lineEnd = limit;
+                pos = limit;
+                return true;
+            }
+            scan -= fill();
+        }
+    }
+
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int lineStart() {
+        return lineStart;
+    }
+
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Moves the unread chars to the start of the buffer, growing it if it is full, and reads more.
+     *
+     * @return how far the unread chars are moved back
+     */
+    private int fill() throws IOException {
+        int shift = pos;
+        int remaining = limit - pos;
+        if (shift > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, remaining);
+            buffer = grown;
+        }
+        pos = 0;
+        limit = remaining;
+        int read;
+        do {
+            read = reader.read(buffer, limit, buffer.length - limit);
+        } while (read == 0);
+        if (read < 0)
+            eof = true;
+        else
+            limit += read;
+        return shift;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.util.Arrays;
+
+/**
+ * Splits a line into fields kept as offsets over the line's buffer, so a String is only created for a field that is needed.
+ * The fields are the same as {@code line.trim().split(Pattern.quote(delimiter))}: the line is trimmed,
+ * empty fields are kept except the trailing ones.
+ * <p>
+ * A tokenizer is reused line after line and is not thread safe.
+ */
+public class CSVLineTokenizer {
+
+    private final char delimiter;
+    private char[] buffer;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int count;
+
+    public CSVLineTokenizer(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @return false if the line is blank, then there are no fields
+     */
+    public boolean tokenize(char[] buffer, int start, int end) {
+        this.buffer = buffer;
+        count = 0;
+        while (start < end && buffer[start] <= ' ')
+            start++;
+        while (end > start && buffer[end - 1] <= ' ')
+            end--;
+        if (start == end)
+            return false;
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == delimiter) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        addField(fieldStart, end);
+        while (count > 0 && starts[count - 1] == ends[count - 1])
+            count--;
+        return true;
+    }
+
+    public boolean tokenize(String line) {
+        return tokenize(line.toCharArray(), 0, line.length());
+    }
+
+    public int fieldCount() {
+        return count;
+    }
+
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int fieldStart(int index) {
+        return starts[index];
+    }
+
+    public int fieldEnd(int index) {
+        return ends[index];
+    }
+
+    public int fieldLength(int index) {
+        return ends[index] - starts[index];
+    }
+
+    public boolean fieldEquals(int index, String value) {
+        int length = fieldLength(index);
+        if (length != value.length())
+            return false;
+        int start = starts[index];
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the String of a field, only call it for a value which is kept.
+     */
+    public String field(int index) {
+        return new String(buffer, starts[index], fieldLength(index));
+    }
+
+    /**
+     * Same as {@link Arrays#toString(Object[])} on the split fields.
+     */
+    public String fieldsToString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(buffer, starts[i], fieldLength(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+}
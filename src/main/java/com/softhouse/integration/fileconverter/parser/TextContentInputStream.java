@@ -0,0 +1,49 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Checks the bytes with a {@link TextContentScanner} while they are read, so binary content is found
+ * during the pass that parses the lines instead of by reading the file once more.
+ */
+public class TextContentInputStream extends FilterInputStream {
+
+    private final TextContentScanner textContentScanner;
+
+    public TextContentInputStream(InputStream in, boolean utf8) {
+        super(in);
+        this.textContentScanner = new TextContentScanner(utf8);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            long position = textContentScanner.getPosition();
+            int invalid = textContentScanner.scan(b, off, read);
+            if (invalid != -1)
+                throw new BinaryContentException(position + invalid - off);
+        } else if (read == -1 && !textContentScanner.isComplete())
+            throw new BinaryContentException(textContentScanner.getPosition());
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Classifies bytes as text without decoding them: a NUL byte is binary content, and when checking UTF-8
+ * a byte sequence which is not well-formed UTF-8 is rejected too.
+ * Runs of ASCII are checked eight bytes at a time, reading a long and testing all its bytes at once,
+ * so a file of plain ASCII costs about one comparison per eight bytes.
+ * A scanner keeps the state of an unfinished UTF-8 sequence between calls, so the bytes can be given in any pieces.
+ */
+public class TextContentScanner {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    private final boolean utf8;
+    private int pending;
+    private int lower = 0x80;
+    private int upper = 0xBF;
+    private long position;
+
+    /**
+     * @param utf8 true if the bytes have to be well-formed UTF-8, otherwise only NUL bytes are rejected
+     */
+    public TextContentScanner(boolean utf8) {
+        this.utf8 = utf8;
+    }
+
+    /**
+     * @return the offset of the first byte which is not text, or -1 if all bytes are text
+     */
+    public int scan(byte[] bytes, int off, int len) {
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (pending == 0 && i + Long.BYTES <= end) {
+                long word = (long) LONG_VIEW.get(bytes, i);
+                if ((word & HIGH_BITS) == 0 && ((word - LOW_BITS) & ~word & HIGH_BITS) == 0) {
+                    i += Long.BYTES;
+                    continue;
+                }
+            }
+            if (!accept(bytes[i] & 0xff))
+                return i;
+            i++;
+        }
+        position += len;
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes scanned before the current call
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return true if the bytes did not end inside a UTF-8 sequence
+     */
+    public boolean isComplete() {
+        return pending == 0;
+    }
+
+    /**
+     * A prefix is plain text if it has no control characters other than tab, line feed, form feed, carriage return and escape,
+     * and is well-formed UTF-8 except for a sequence cut at its end.
+     */
+    public static boolean isPlainText(byte[] bytes, int len) {
+        TextContentScanner textContentScanner = new TextContentScanner(true);
+        for (int i = 0; i < len; i++) {
+            int b = bytes[i] & 0xff;
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\f' && b != '\r' && b != 0x1B)
+                return false;
+        }
+        return textContentScanner.scan(bytes, 0, len) == -1;
+    }
+
+    private boolean accept(int b) {
+        if (pending > 0) {
+            if (b < lower || b > upper)
+                return false;
+            lower = 0x80;
+            upper = 0xBF;
+            pending--;
+            return true;
+        }
+        if (b == 0)
+            return false;
+        if (b < 0x80 || !utf8)
+            return true;
+        if (b >= 0xC2 && b <= 0xDF) {
+            pending = 1;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            pending = 2;
+            lower = b == 0xE0 ? 0xA0 : 0x80;
+            upper = b == 0xED ? 0x9F : 0xBF;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            pending = 3;
+            lower = b == 0xF0 ? 0x90 : 0x80;
+            upper = b == 0xF4 ? 0x8F : 0xBF;
+        } else
+            return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.softhouse.integration.fileconverter.record;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.softhouse.integration.fileconverter.dto.PersonRecord;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Writes a json copy of every valid file for the search indexer: an array of the persons, their families, phones and addresses
+ * under the element names of the xml, each person written as soon as its lines are read. The copy is written to a temp file and moved to
+ * {@code <name>-<uuid>.json} in the json directory once the file is found valid, so the indexer never sees a partial copy.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "converter.records", name = "json-enabled", havingValue = "true")
+public class JsonRecordSink implements RecordSink {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final RecordSinkProperties recordSinkProperties;
+    private final ObjectMapper objectMapper;
+
+    public JsonRecordSink(RecordSinkProperties recordSinkProperties, ObjectMapper objectMapper) {
+        this.recordSinkProperties = recordSinkProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public RecordListener open(String fileName) {
+        Path directory = recordSinkProperties.getJsonDirectory();
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, "records-", TEMP_SUFFIX);
+            JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(tempFile.toFile(), JsonEncoding.UTF8);
+            jsonGenerator.writeStartArray();
+            return new JsonRecords(fileName, tempFile, jsonGenerator);
+        } catch (IOException e) {
+            log.warn("can not write the json copy of {}", fileName, e);
+            if (tempFile != null)
+                deleteQuietly(tempFile);
+            return null;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("can not delete {}", path, e);
+        }
+    }
+
+    private class JsonRecords implements RecordListener {
+
+        private final String fileName;
+        private final Path tempFile;
+        private final JsonGenerator jsonGenerator;
+        private final PersonRecordCollector personRecordCollector = new PersonRecordCollector(this::writePerson);
+        private boolean failed;
+
+        JsonRecords(String fileName, Path tempFile, JsonGenerator jsonGenerator) {
+            this.fileName = fileName;
+            this.tempFile = tempFile;
+            this.jsonGenerator = jsonGenerator;
+        }
+
+        @Override
+        public void onPerson(int lineNo, CSVLineTokenizer columns) {
+            personRecordCollector.onPerson(lineNo, columns);
+        }
+
+        @Override
+        public void onPhone(int lineNo, CSVLineTokenizer columns) {
+            personRecordCollector.onPhone(lineNo, columns);
+        }
+
+        @Override
+        public void onAddress(int lineNo, CSVLineTokenizer columns) {
+            personRecordCollector.onAddress(lineNo, columns);
+        }
+
+        @Override
+        public void onFamily(int lineNo, CSVLineTokenizer columns) {
+            personRecordCollector.onFamily(lineNo, columns);
+        }
+
+        @Override
+        public void onEnd(boolean valid) {
+            if (valid)
+                personRecordCollector.finish();
+            try {
+                if (!failed)
+                    jsonGenerator.writeEndArray();
+                jsonGenerator.close();
+                if (valid && !failed) {
+                    Path file = recordSinkProperties.getJsonDirectory().resolve(StringUtils.stripFilenameExtension(StringUtils.getFilename(fileName)) + '-' + UUID.randomUUID() + ".json");
+                    Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("can not write the json copy of {}", fileName, e);
+            }
+            deleteQuietly(tempFile);
+        }
+
+        private void writePerson(PersonRecord personRecord) {
+            if (failed)
+                return;
+            try {
+                jsonGenerator.writeStartObject();
+                writeField("firstname", personRecord, 0, PersonRecord.Field.FIRST_NAME);
+                writeField("lastname", personRecord, 0, PersonRecord.Field.LAST_NAME);
+                writeAddress(personRecord, 0);
+                writePhone(personRecord, 0);
+                if (personRecord.familyCount() > 0) {
+                    jsonGenerator.writeArrayFieldStart("family");
+                    for (int family = 1; family <= personRecord.familyCount(); family++) {
+                        jsonGenerator.writeStartObject();
+                        writeField("name", personRecord, family, PersonRecord.Field.NAME);
+                        writeField("born", personRecord, family, PersonRecord.Field.BORN);
+                        if (personRecord.hasFamilyPhone(family))
+                            writePhone(personRecord, family);
+                        if (personRecord.hasFamilyAddress(family))
+                            writeAddress(personRecord, family);
+                        jsonGenerator.writeEndObject();
+                    }
+                    jsonGenerator.writeEndArray();
+                }
+                jsonGenerator.writeEndObject();
+            } catch (IOException e) {
+                log.warn("can not write the json copy of {}", fileName, e);
+                failed = true;
+            }
+        }
+
+        private void writeAddress(PersonRecord personRecord, int group) throws IOException {
+            if (!personRecord.has(group, PersonRecord.Field.STREET) && !personRecord.has(group, PersonRecord.Field.TOWN) && !personRecord.has(group, PersonRecord.Field.POSTAL_CODE))
+                return;
+            jsonGenerator.writeObjectFieldStart("address");
+            writeField("street", personRecord, group, PersonRecord.Field.STREET);
+            writeField("town", personRecord, group, PersonRecord.Field.TOWN);
+            writeField("postalCode", personRecord, group, PersonRecord.Field.POSTAL_CODE);
+            jsonGenerator.writeEndObject();
+        }
+
+        private void writePhone(PersonRecord personRecord, int group) throws IOException {
+            if (!personRecord.has(group, PersonRecord.Field.MOBILE) && !personRecord.has(group, PersonRecord.Field.LAND_PHONE))
+                return;
+            jsonGenerator.writeObjectFieldStart("phone");
+            writeField("mobile", personRecord, group, PersonRecord.Field.MOBILE);
+            writeField("landPhone", personRecord, group, PersonRecord.Field.LAND_PHONE);
+            jsonGenerator.writeEndObject();
+        }
+
+        private void writeField(String name, PersonRecord personRecord, int group, PersonRecord.Field field) throws IOException {
+            if (!personRecord.has(group, field))
+                return;
+            jsonGenerator.writeFieldName(name);
+            jsonGenerator.writeString(personRecord.chars(), personRecord.start(group, field), personRecord.length(group, field));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.softhouse.integration.fileconverter.record;
+
+import java.util.function.Consumer;
+
+import com.softhouse.integration.fileconverter.dto.CSVFieldA;
+import com.softhouse.integration.fileconverter.dto.CSVFieldF;
+import com.softhouse.integration.fileconverter.dto.CSVFieldP;
+import com.softhouse.integration.fileconverter.dto.CSVFieldT;
+import com.softhouse.integration.fileconverter.dto.PersonRecord;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+
+/**
+ * Builds the person records from the record events with the same rules as the data entries of the JAXB conversion, copying
+ * the fields out of the line buffer instead of creating Strings. A single record is reused: the personRecordConsumer gets it
+ * once the person is complete and has to write it before it returns, since the record is cleared for the next person.
+ */
+public class PersonRecordCollector implements RecordListener {
+
+    private final Consumer<PersonRecord> personRecordConsumer;
+    private final PersonRecord personRecord = new PersonRecord();
+    private boolean started;
+
+    public PersonRecordCollector(Consumer<PersonRecord> personRecordConsumer) {
+        this.personRecordConsumer = personRecordConsumer;
+    }
+
+    @Override
+    public void onPerson(int lineNo, CSVLineTokenizer columns) {
+        finish();
+        personRecord.clear();
+        set(PersonRecord.Field.FIRST_NAME, columns, CSVFieldP.FIRST_NAME.ordinal());
+        set(PersonRecord.Field.LAST_NAME, columns, CSVFieldP.LAST_NAME.ordinal());
+        started = true;
+    }
+
+    @Override
+    public void onPhone(int lineNo, CSVLineTokenizer columns) {
+        if (personRecord.familyCount() > 0)
+            personRecord.setFamilyPhone();
+        set(PersonRecord.Field.MOBILE, columns, CSVFieldT.MOBILE.ordinal());
+        set(PersonRecord.Field.LAND_PHONE, columns, CSVFieldT.PHONE.ordinal());
+    }
+
+    @Override
+    public void onAddress(int lineNo, CSVLineTokenizer columns) {
+        if (personRecord.familyCount() > 0)
+            personRecord.setFamilyAddress();
+        set(PersonRecord.Field.STREET, columns, CSVFieldA.ADDRESS.ordinal());
+        set(PersonRecord.Field.TOWN, columns, CSVFieldA.TOWN.ordinal());
+        set(PersonRecord.Field.POSTAL_CODE, columns, CSVFieldA.POSTAL_CODE.ordinal());
+    }
+
+    @Override
+    public void onFamily(int lineNo, CSVLineTokenizer columns) {
+        personRecord.startFamily();
+        set(PersonRecord.Field.NAME, columns, CSVFieldF.NAME.ordinal());
+        set(PersonRecord.Field.BORN, columns, CSVFieldF.YEAR.ordinal());
+    }
+
+    /**
+     * Hands over the last person.
+     */
+    public void finish() {
+        if (started)
+            personRecordConsumer.accept(personRecord);
+        started = false;
+    }
+
+    /**
+     * A line of an invalid file may miss fields, they are left null since its conversion is thrown away.
+     */
+    private void set(PersonRecord.Field field, CSVLineTokenizer columns, int index) {
+        if (index < columns.fieldCount())
+            personRecord.set(field, columns.buffer(), columns.fieldStart(index), columns.fieldLength(index));
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.softhouse.integration.fileconverter.record;
+
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+
+/**
+ * Receives the records of a file in line order while it is read, so one parse of the file can feed several outputs.
+ * A T or A line belongs to the person, or to its last family once an F line was read.
+ * Records are delivered as long as the file has no error, errors are delivered for every line.
+ * <p>
+ * Line numbers count the non-blank lines from 1, as in the error csv. The columns are only valid during the call.
+ */
+public interface RecordListener {
+
+    /**
+     * A listener ignoring every event.
+     */
+    RecordListener NONE = new RecordListener() {
+    };
+
+    default void onPerson(int lineNo, CSVLineTokenizer columns) {
+    }
+
+    default void onPhone(int lineNo, CSVLineTokenizer columns) {
+    }
+
+    default void onAddress(int lineNo, CSVLineTokenizer columns) {
+    }
+
+    default void onFamily(int lineNo, CSVLineTokenizer columns) {
+    }
+
+    /**
+     * @param code the message code of a field error, see {@link com.softhouse.integration.fileconverter.message.ConverterMessages}
+     */
+    default void onError(int lineNo, String code) {
+    }
+
+    /**
+     * The file is read, valid is false if it was rejected. No event follows.
+     */
+    default void onEnd(boolean valid) {
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.softhouse.integration.fileconverter.record;
+
+import java.util.List;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+
+/**
+ * Hands every event to each of several listeners, in the order they are given.
+ */
+public final class RecordListeners implements RecordListener {
+
+    private final RecordListener[] listeners;
+
+    private RecordListeners(List<RecordListener> listeners) {
+        this.listeners = listeners.toArray(RecordListener[]::new);
+    }
+
+    /**
+     * @return a listener of all of them, the only one itself or {@link RecordListener#NONE} if there is none
+     */
+    public static RecordListener of(List<RecordListener> listeners) {
+        if (listeners.isEmpty())
+            return RecordListener.NONE;
+        return listeners.size() == 1 ? listeners.get(0) : new RecordListeners(listeners);
+    }
+
+    /**
+     * Hands a line read without validation to the listener by its record type, a line of no known type is skipped.
+     */
+    public static void dispatch(RecordListener listener, int lineNo, CSVLineTokenizer columns) {
+        if (columns.fieldEquals(0, CSVType.P.name()))
+            listener.onPerson(lineNo, columns);
+        else if (columns.fieldEquals(0, CSVType.T.name()))
+            listener.onPhone(lineNo, columns);
+        else if (columns.fieldEquals(0, CSVType.A.name()))
+            listener.onAddress(lineNo, columns);
+        else if (columns.fieldEquals(0, CSVType.F.name()))
+            listener.onFamily(lineNo, columns);
+    }
+
+    @Override
+    public void onPerson(int lineNo, CSVLineTokenizer columns) {
+        for (RecordListener listener : listeners)
+            listener.onPerson(lineNo, columns);
+    }
+
+    @Override
+    public void onPhone(int lineNo, CSVLineTokenizer columns) {
+        for (RecordListener listener : listeners)
+            listener.onPhone(lineNo, columns);
+    }
+
+    @Override
+    public void onAddress(int lineNo, CSVLineTokenizer columns) {
+        for (RecordListener listener : listeners)
+            listener.onAddress(lineNo, columns);
+    }
+
+    @Override
+    public void onFamily(int lineNo, CSVLineTokenizer columns) {
+        for (RecordListener listener : listeners)
+            listener.onFamily(lineNo, columns);
+    }
+
+    @Override
+    public void onError(int lineNo, String code) {
+        for (RecordListener listener : listeners)
+            listener.onError(lineNo, code);
+    }
+
+    @Override
+    public void onEnd(boolean valid) {
+        for (RecordListener listener : listeners)
+            listener.onEnd(valid);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.softhouse.integration.fileconverter.record;
+
+/**
+ * An output fed by the validation of every file besides the xml, registered as a bean.
+ * While a sink is registered files are validated in one sequential pass, so its listener gets the records in file order.
+ * A file answered from the result cache is not read again and does not reach the sinks.
+ */
+public interface RecordSink {
+
+    /**
+     * A sink must not fail the conversion, errors of its own output are only logged.
+     *
+     * @param fileName the name of the uploaded file
+     * @return the listener of this file, or null to skip it
+     */
+    RecordListener open(String fileName);
+
+}
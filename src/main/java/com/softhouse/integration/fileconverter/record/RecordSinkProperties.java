@@ -0,0 +1,31 @@
+package com.softhouse.integration.fileconverter.record;
+
+import java.nio.file.Path;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the record sinks fed by the validation besides the xml. Every sink is off by default,
+ * since a registered sink keeps large files from being validated in parallel chunks.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.records")
+public class RecordSinkProperties {
+
+    /**
+     * Logs the records and errors of every file.
+     */
+    private boolean statisticsEnabled = false;
+
+    /**
+     * Writes a json copy of every valid file for the search indexer.
+     */
+    private boolean jsonEnabled = false;
+
+    /**
+     * Directory the json copies are written to.
+     */
+    private Path jsonDirectory = Path.of(System.getProperty("java.io.tmpdir"), "integration-service", "records");
+
+}
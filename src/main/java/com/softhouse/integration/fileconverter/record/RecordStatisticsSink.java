@@ -0,0 +1,97 @@
+package com.softhouse.integration.fileconverter.record;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs the records of every file by type, the most families of a person, and its field errors by message code.
+ * For a rejected file the records are counted up to its first error.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "converter.records", name = "statistics-enabled", havingValue = "true")
+public class RecordStatisticsSink implements RecordSink {
+
+    @Override
+    public RecordListener open(String fileName) {
+        return new RecordStatistics(fileName);
+    }
+
+    static class RecordStatistics implements RecordListener {
+
+        private final String fileName;
+        private long persons;
+        private long families;
+        private long phones;
+        private long addresses;
+        private int personFamilies;
+        private int maxFamilies;
+        private final Map<String, Long> errors = new TreeMap<>();
+
+        RecordStatistics(String fileName) {
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void onPerson(int lineNo, CSVLineTokenizer columns) {
+            persons++;
+            personFamilies = 0;
+        }
+
+        @Override
+        public void onPhone(int lineNo, CSVLineTokenizer columns) {
+            phones++;
+        }
+
+        @Override
+        public void onAddress(int lineNo, CSVLineTokenizer columns) {
+            addresses++;
+        }
+
+        @Override
+        public void onFamily(int lineNo, CSVLineTokenizer columns) {
+            families++;
+            maxFamilies = Math.max(maxFamilies, ++personFamilies);
+        }
+
+        @Override
+        public void onError(int lineNo, String code) {
+            errors.merge(code, 1L, Long::sum);
+        }
+
+        @Override
+        public void onEnd(boolean valid) {
+            log.info("file {} valid={} persons={} families={} phones={} addresses={} maxFamilies={} errors={}", fileName, valid, persons, families, phones, addresses, maxFamilies, errors);
+        }
+
+        long getPersons() {
+            return persons;
+        }
+
+        long getFamilies() {
+            return families;
+        }
+
+        long getPhones() {
+            return phones;
+        }
+
+        long getAddresses() {
+            return addresses;
+        }
+
+        int getMaxFamilies() {
+            return maxFamilies;
+        }
+
+        Map<String, Long> getErrors() {
+            return errors;
+        }
+    }
+
+}
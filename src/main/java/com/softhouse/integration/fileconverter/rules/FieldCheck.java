@@ -0,0 +1,15 @@
+package com.softhouse.integration.fileconverter.rules;
+
+/**
+ * A field check compiled from its rule, with its settings bound as constants. It tests the field in the line's buffer,
+ * so no String is created for a valid field.
+ */
+@FunctionalInterface
+public interface FieldCheck {
+
+    /**
+     * @return true if the field from start to end is valid
+     */
+    boolean test(char[] buffer, int start, int end);
+
+}
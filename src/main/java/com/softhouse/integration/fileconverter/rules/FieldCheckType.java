@@ -0,0 +1,123 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import java.nio.CharBuffer;
+import java.util.regex.Pattern;
+
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.util.CommonEnum;
+
+/**
+ * The kinds of field checks a rule can have. Each compiles its rule into a {@link FieldCheck} of its own class,
+ * and knows the message of its error description and the arguments of the message.
+ */
+public enum FieldCheckType {
+
+    /**
+     * Letters and spaces only, from minLength to maxLength characters.
+     */
+    ALPHA_SPACE(ConverterMessages.NAME_LENGTH) {
+        @Override
+        FieldCheck compile(ValidationRulesProperties.FieldRuleProperties rule) {
+            int minLength = rule.getMinLength();
+            int maxLength = rule.getMaxLength();
+            return (buffer, start, end) -> end - start >= minLength && end - start <= maxLength && isAlphaSpace(buffer, start, end);
+        }
+    },
+
+    /**
+     * At least one digit and digits only, from minLength to maxLength of them.
+     */
+    DIGITS(ConverterMessages.YEAR_DIGITS_NEEDED) {
+        @Override
+        FieldCheck compile(ValidationRulesProperties.FieldRuleProperties rule) {
+            int minLength = Math.max(1, rule.getMinLength());
+            int maxLength = rule.getMaxLength();
+            return (buffer, start, end) -> end - start >= minLength && end - start <= maxLength && isDigits(buffer, start, end);
+        }
+
+        @Override
+        Object[] messageArgs(ValidationRulesProperties.FieldRuleProperties rule) {
+            return new Object[]{rule.getMinLength()};
+        }
+    },
+
+    /**
+     * One of the {@link CommonEnum.PhonePattern}s.
+     */
+    PHONE(ConverterMessages.PHONE_FORMAT) {
+        @Override
+        FieldCheck compile(ValidationRulesProperties.FieldRuleProperties rule) {
+            return CommonEnum.PhonePattern::matchesAny;
+        }
+    },
+
+    /**
+     * Any characters, from minLength to maxLength of them.
+     */
+    LENGTH("MSG_200329") {
+        @Override
+        FieldCheck compile(ValidationRulesProperties.FieldRuleProperties rule) {
+            int minLength = rule.getMinLength();
+            int maxLength = rule.getMaxLength();
+            return (buffer, start, end) -> end - start >= minLength && end - start <= maxLength;
+        }
+    },
+
+    /**
+     * Matches the regular expression of the rule. Unlike the other checks it needs a Matcher for every value,
+     * so one of them is preferred where it fits.
+     */
+    PATTERN("MSG_200328") {
+        @Override
+        FieldCheck compile(ValidationRulesProperties.FieldRuleProperties rule) {
+            if (rule.getPattern() == null)
+                throw new IllegalArgumentException("a PATTERN check of field " + rule.getIndex() + " has no pattern");
+            Pattern pattern = Pattern.compile(rule.getPattern());
+            return (buffer, start, end) -> pattern.matcher(CharBuffer.wrap(buffer, start, end - start)).matches();
+        }
+
+        @Override
+        Object[] messageArgs(ValidationRulesProperties.FieldRuleProperties rule) {
+            return new Object[]{rule.getPattern()};
+        }
+    };
+
+    private final String message;
+
+    FieldCheckType(String message) {
+        this.message = message;
+    }
+
+    abstract FieldCheck compile(ValidationRulesProperties.FieldRuleProperties rule);
+
+    /**
+     * The code of the error description, unless the rule names another.
+     */
+    String getMessage() {
+        return message;
+    }
+
+    Object[] messageArgs(ValidationRulesProperties.FieldRuleProperties rule) {
+        return new Object[]{rule.getMinLength(), rule.getMaxLength()};
+    }
+
+    /**
+     * Same as {@link org.apache.commons.lang3.StringUtils#isAlphaSpace(CharSequence)} on the field.
+     */
+    private static boolean isAlphaSpace(char[] buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isLetter(buffer[i]) && buffer[i] != ' ')
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigits(char[] buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(buffer[i]))
+                return false;
+        }
+        return true;
+    }
+
+}
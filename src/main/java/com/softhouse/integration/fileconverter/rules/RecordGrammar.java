@@ -0,0 +1,87 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+
+/**
+ * The order of the record types as a state machine, compiled from {@link ValidationRulesProperties.GrammarProperties}.
+ * There is a state before the first line of a file, one before the first line of a chunk in the middle of a file,
+ * and one after each record type. Checking the order of a line is a lookup in the transition table,
+ * so the check needs no memory of the lines before but the state.
+ */
+public final class RecordGrammar {
+
+    /**
+     * The state before the first line of a file, only the start types may follow.
+     */
+    public static final int START = 0;
+
+    /**
+     * The state before the first line of a chunk which does not start the file, any record type may follow.
+     */
+    public static final int ANY = 1;
+
+    /**
+     * The transition of a record type which may not follow the state.
+     */
+    public static final int REJECTED = -1;
+
+    private static final CSVType[] CSV_TYPES = CSVType.values();
+
+    /**
+     * The next state by the state and the ordinal of the record type, or REJECTED.
+     */
+    private final int[][] transitions;
+    private final List<List<CSVType>> followers;
+
+    RecordGrammar(ValidationRulesProperties.GrammarProperties grammarProperties) {
+        if (grammarProperties.getStart().isEmpty())
+            throw new IllegalStateException("the grammar has no record type a file may begin with");
+        List<CSVType> anyType = List.of(CSV_TYPES);
+        followers = new ArrayList<>(CSV_TYPES.length + 2);
+        followers.add(List.copyOf(grammarProperties.getStart()));
+        followers.add(anyType);
+        Map<CSVType, List<CSVType>> configured = grammarProperties.getFollowers();
+        for (CSVType type : CSV_TYPES)
+            followers.add(configured.containsKey(type) ? List.copyOf(configured.get(type)) : anyType);
+        transitions = new int[followers.size()][CSV_TYPES.length];
+        for (int state = 0; state < transitions.length; state++) {
+            Arrays.fill(transitions[state], REJECTED);
+            for (CSVType type : followers.get(state))
+                transitions[state][type.ordinal()] = after(type.ordinal());
+        }
+    }
+
+    /**
+     * @return the state after a line of the record type
+     */
+    public static int after(int typeOrdinal) {
+        return typeOrdinal + 2;
+    }
+
+    /**
+     * @return the state after a line of the record type, or REJECTED if it may not follow the state
+     */
+    public int next(int state, int typeOrdinal) {
+        return transitions[state][typeOrdinal];
+    }
+
+    /**
+     * @return the record type of the line before, or null for START and ANY
+     */
+    public CSVType previousType(int state) {
+        return state < 2 ? null : CSV_TYPES[state - 2];
+    }
+
+    /**
+     * @return the record types which may follow the state
+     */
+    public List<CSVType> followers(int state) {
+        return followers.get(state);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+
+/**
+ * A compiled rule set in the language of one request: the rules of every record type in an array by the ordinal of its
+ * {@link CSVType}, with the field names and error descriptions already resolved, so checking a line only loops over
+ * the checks of its type.
+ */
+public final class RuleSet {
+
+    private final String name;
+    private final RecordRule[] recordRules;
+    private final RecordGrammar grammar;
+
+    RuleSet(String name, RecordRule[] recordRules, RecordGrammar grammar) {
+        this.name = name;
+        this.recordRules = recordRules;
+        this.grammar = grammar;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The order the record types are checked by.
+     */
+    public RecordGrammar getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * @return the rules of the record type, or null if it is not checked
+     */
+    public RecordRule recordRule(int typeOrdinal) {
+        return recordRules[typeOrdinal];
+    }
+
+    /**
+     * @param fieldCount   number of fields a line must have, 0 for any number
+     * @param name         field name of the error row of a line with another number of fields
+     * @param fieldsNeeded error description of a line with another number of fields
+     */
+    public record RecordRule(int fieldCount, String name, String fieldsNeeded, FieldRule[] fieldRules) {
+    }
+
+    /**
+     * @param code        message code of the error, counted in the metrics
+     * @param description error description of the row
+     */
+    public record FieldRule(int index, FieldCheck check, String name, String code, String description) {
+    }
+
+}
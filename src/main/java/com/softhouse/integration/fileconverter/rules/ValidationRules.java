@@ -0,0 +1,172 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.softhouse.integration.fileconverter.dto.CSVFieldA;
+import com.softhouse.integration.fileconverter.dto.CSVFieldF;
+import com.softhouse.integration.fileconverter.dto.CSVFieldP;
+import com.softhouse.integration.fileconverter.dto.CSVFieldT;
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compiles the configured rule sets at startup, a rule set which can not be compiled stops the application.
+ * Every field rule becomes a {@link FieldCheck} with its settings bound, so the rules are not interpreted per line.
+ * The names and descriptions of a rule set are resolved once per language and kept.
+ * The order of the record types is compiled into a {@link RecordGrammar} all rule sets share.
+ * Every rule set has a fingerprint of its rules and the grammar, which changes whenever its configuration does.
+ */
+@Slf4j
+@Component
+public class ValidationRules {
+
+    private final String defaultRules;
+    private final Map<String, CompiledRuleSet> ruleSets = new HashMap<>();
+
+    public ValidationRules(ValidationRulesProperties validationRulesProperties) {
+        this.defaultRules = validationRulesProperties.getDefaultRules();
+        RecordGrammar grammar = new RecordGrammar(validationRulesProperties.getGrammar());
+        Map<String, Map<CSVType, ValidationRulesProperties.RecordRuleProperties>> configured = new LinkedHashMap<>();
+        configured.put(ValidationRulesProperties.DEFAULT_RULES, builtInRules());
+        configured.putAll(validationRulesProperties.getRuleSets());
+        configured.forEach((name, recordRules) -> ruleSets.put(name, compile(name, recordRules, grammar, fingerprint(name, recordRules, validationRulesProperties.getGrammar()))));
+        if (!ruleSets.containsKey(defaultRules))
+            throw new IllegalStateException("the default rule set " + defaultRules + " is not configured");
+        log.info("validation rule sets {} compiled", ruleSets.keySet());
+    }
+
+    /**
+     * The built-in rule set compiled on its own, for code which checks lines outside the application.
+     */
+    public static RuleSet defaultRuleSet(ConverterMessages messages) {
+        return BuiltIn.RULES.get(null, messages);
+    }
+
+    private static final class BuiltIn {
+        static final ValidationRules RULES = new ValidationRules(new ValidationRulesProperties());
+    }
+
+    /**
+     * @param name the name of the rule set, null for the default one
+     * @return the rule set in the language of the messages, or null if there is no rule set of the name
+     */
+    public RuleSet get(String name, ConverterMessages messages) {
+        CompiledRuleSet compiledRuleSet = ruleSets.get(name == null ? defaultRules : name);
+        return compiledRuleSet == null ? null : compiledRuleSet.localized().computeIfAbsent(messages, compiledRuleSet::localize);
+    }
+
+    /**
+     * @param name the name of the rule set, null for the default one
+     * @return the fingerprint of the rule set, or null if there is no rule set of the name
+     */
+    public String fingerprint(String name) {
+        CompiledRuleSet compiledRuleSet = ruleSets.get(name == null ? defaultRules : name);
+        return compiledRuleSet == null ? null : compiledRuleSet.fingerprint();
+    }
+
+    /**
+     * The checks of the original validation: names of letters and spaces with 2 to 255 characters, a year of 4 digits and
+     * a mobile of one of the phone patterns. A line of another number of fields is reported with the field count of P,
+     * and an A or F line under the name P, as the original error csv has it.
+     */
+    static Map<CSVType, ValidationRulesProperties.RecordRuleProperties> builtInRules() {
+        Map<CSVType, ValidationRulesProperties.RecordRuleProperties> rules = new EnumMap<>(CSVType.class);
+        int fieldsNeeded = CSVFieldP.values().length;
+        rules.put(CSVType.P, recordRule(CSVFieldP.values().length, CSVType.P.name(), fieldsNeeded,
+                fieldRule(CSVFieldP.FIRST_NAME.ordinal(), "Field.firstName", FieldCheckType.ALPHA_SPACE, 2, 255),
+                fieldRule(CSVFieldP.LAST_NAME.ordinal(), "Field.lastName", FieldCheckType.ALPHA_SPACE, 2, 255)));
+        rules.put(CSVType.T, recordRule(CSVFieldT.values().length, CSVType.T.name(), fieldsNeeded,
+                fieldRule(CSVFieldT.MOBILE.ordinal(), "Field.mobile", FieldCheckType.PHONE, 0, Integer.MAX_VALUE)));
+        rules.put(CSVType.A, recordRule(CSVFieldA.values().length, CSVType.P.name(), fieldsNeeded));
+        rules.put(CSVType.F, recordRule(CSVFieldF.values().length, CSVType.P.name(), fieldsNeeded,
+                fieldRule(CSVFieldF.NAME.ordinal(), "Field.name", FieldCheckType.ALPHA_SPACE, 2, 255),
+                fieldRule(CSVFieldF.YEAR.ordinal(), "Field.year", FieldCheckType.DIGITS, ConverterMessages.YEAR_DIGITS, ConverterMessages.YEAR_DIGITS)));
+        return rules;
+    }
+
+    private static ValidationRulesProperties.RecordRuleProperties recordRule(int fieldCount, String name, int fieldsNeeded, ValidationRulesProperties.FieldRuleProperties... fieldRules) {
+        ValidationRulesProperties.RecordRuleProperties recordRule = new ValidationRulesProperties.RecordRuleProperties();
+        recordRule.setFieldCount(fieldCount);
+        recordRule.setName(name);
+        recordRule.setFieldsNeeded(fieldsNeeded);
+        recordRule.setFields(List.of(fieldRules));
+        return recordRule;
+    }
+
+    private static ValidationRulesProperties.FieldRuleProperties fieldRule(int index, String name, FieldCheckType check, int minLength, int maxLength) {
+        ValidationRulesProperties.FieldRuleProperties fieldRule = new ValidationRulesProperties.FieldRuleProperties();
+        fieldRule.setIndex(index);
+        fieldRule.setName(name);
+        fieldRule.setCheck(check);
+        fieldRule.setMinLength(minLength);
+        fieldRule.setMaxLength(maxLength);
+        return fieldRule;
+    }
+
+    /**
+     * SHA-256 of the settings as the properties print them, with the record types in a fixed order.
+     */
+    private static String fingerprint(String name, Map<CSVType, ValidationRulesProperties.RecordRuleProperties> recordRules, ValidationRulesProperties.GrammarProperties grammar) {
+        String settings = name + '\0' + new TreeMap<>(recordRules) + '\0' + grammar.getStart() + '\0' + new TreeMap<>(grammar.getFollowers());
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(settings.getBytes(StandardCharsets.UTF_8)), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CompiledRuleSet compile(String name, Map<CSVType, ValidationRulesProperties.RecordRuleProperties> recordRules, RecordGrammar grammar, String fingerprint) {
+        FieldCheck[][] checks = new FieldCheck[CSVType.values().length][];
+        recordRules.forEach((type, recordRule) -> {
+            List<ValidationRulesProperties.FieldRuleProperties> fieldRules = recordRule.getFields();
+            checks[type.ordinal()] = new FieldCheck[fieldRules.size()];
+            for (int i = 0; i < fieldRules.size(); i++) {
+                ValidationRulesProperties.FieldRuleProperties fieldRule = fieldRules.get(i);
+                if (fieldRule.getIndex() < 1 || fieldRule.getCheck() == null)
+                    throw new IllegalStateException("rule set " + name + " has a rule of " + type + " without a check or a field index of at least 1");
+                if (recordRule.getFieldCount() > 0 && fieldRule.getIndex() >= recordRule.getFieldCount())
+                    throw new IllegalStateException("rule set " + name + " checks field " + fieldRule.getIndex() + " of " + type + " which has " + recordRule.getFieldCount() + " fields");
+                checks[type.ordinal()][i] = fieldRule.getCheck().compile(fieldRule);
+            }
+        });
+        return new CompiledRuleSet(name, recordRules, checks, grammar, fingerprint, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param checks the compiled field checks by the ordinal of the record type and the index of the field rule
+     */
+    private record CompiledRuleSet(String name, Map<CSVType, ValidationRulesProperties.RecordRuleProperties> recordRules, FieldCheck[][] checks,
+                                   RecordGrammar grammar, String fingerprint, Map<ConverterMessages, RuleSet> localized) {
+
+        RuleSet localize(ConverterMessages messages) {
+            RuleSet.RecordRule[] localizedRules = new RuleSet.RecordRule[checks.length];
+            recordRules.forEach((type, recordRule) -> {
+                List<ValidationRulesProperties.FieldRuleProperties> fieldRules = recordRule.getFields();
+                RuleSet.FieldRule[] localizedFieldRules = new RuleSet.FieldRule[fieldRules.size()];
+                for (int i = 0; i < fieldRules.size(); i++) {
+                    ValidationRulesProperties.FieldRuleProperties fieldRule = fieldRules.get(i);
+                    String code = fieldRule.getMessage() == null ? fieldRule.getCheck().getMessage() : fieldRule.getMessage();
+                    String fieldName = fieldRule.getName() == null ? String.valueOf(fieldRule.getIndex()) : messages.getMessageOrDefault(fieldRule.getName());
+                    localizedFieldRules[i] = new RuleSet.FieldRule(fieldRule.getIndex(), checks[type.ordinal()][i], fieldName, code, messages.getMessage(code, fieldRule.getCheck().messageArgs(fieldRule)));
+                }
+                int fieldsNeeded = recordRule.getFieldsNeeded() == null ? recordRule.getFieldCount() : recordRule.getFieldsNeeded();
+                String recordName = recordRule.getName() == null ? type.name() : recordRule.getName();
+                localizedRules[type.ordinal()] = new RuleSet.RecordRule(recordRule.getFieldCount(), recordName, messages.getMessage(ConverterMessages.FIELDS_NEEDED, fieldsNeeded), localizedFieldRules);
+            });
+            return new RuleSet(name, localizedRules, grammar);
+        }
+    }
+
+}
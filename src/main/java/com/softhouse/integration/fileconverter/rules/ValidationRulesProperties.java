@@ -0,0 +1,115 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.softhouse.integration.fileconverter.dto.CSVFollowerF;
+import com.softhouse.integration.fileconverter.dto.CSVFollowerP;
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Rule sets of the field checks, by name, so every partner can have its own. A request picks one with the rules parameter.
+ * The built-in rule set "default" holds the original checks, a configured "default" replaces it.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.validation")
+public class ValidationRulesProperties {
+
+    public static final String DEFAULT_RULES = "default";
+
+    /**
+     * Rule set of a request which names none.
+     */
+    private String defaultRules = DEFAULT_RULES;
+
+    /**
+     * The rules of each record type by rule set name. A record type without rules is not checked.
+     */
+    private Map<String, Map<CSVType, RecordRuleProperties>> ruleSets = new LinkedHashMap<>();
+
+    /**
+     * The order of the record types, the same for every rule set.
+     */
+    private GrammarProperties grammar = new GrammarProperties();
+
+    @Data
+    public static class RecordRuleProperties {
+
+        /**
+         * Number of fields a line must have, the record type included. 0 for any number.
+         */
+        private int fieldCount;
+
+        /**
+         * Field name of the error row of a line with another number of fields, the record type if not set.
+         */
+        private String name;
+
+        /**
+         * Number of fields the error row says are needed, the field count if not set.
+         */
+        private Integer fieldsNeeded;
+
+        /**
+         * Checks of the fields, only run on a line with the right number of fields.
+         */
+        private List<FieldRuleProperties> fields = new ArrayList<>();
+
+    }
+
+    @Data
+    public static class FieldRuleProperties {
+
+        /**
+         * Index of the field in the line, the record type is 0.
+         */
+        private int index;
+
+        /**
+         * Field name of the error row, a message key such as Field.firstName or the name itself.
+         */
+        private String name;
+
+        private FieldCheckType check;
+
+        private int minLength = 0;
+
+        private int maxLength = Integer.MAX_VALUE;
+
+        /**
+         * Regular expression of a PATTERN check, it has to match the whole field.
+         */
+        private String pattern;
+
+        /**
+         * Message code of the error description, the one of the check if not set.
+         */
+        private String message;
+
+    }
+
+    @Data
+    public static class GrammarProperties {
+
+        /**
+         * Record types a file may begin with.
+         */
+        private List<CSVType> start = new ArrayList<>(List.of(CSVType.P));
+
+        /**
+         * Record types which may follow each record type, a record type without an entry may be followed by any.
+         * Entries are added to the ones of P and F, which can be replaced but not removed.
+         */
+        private Map<CSVType, List<CSVType>> followers = new EnumMap<>(Map.of(
+                CSVType.P, Arrays.stream(CSVFollowerP.values()).map(follower -> CSVType.valueOf(follower.name())).toList(),
+                CSVType.F, Arrays.stream(CSVFollowerF.values()).map(follower -> CSVType.valueOf(follower.name())).toList()));
+
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.softhouse.integration.fileconverter.warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.FileConverterService;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.util.ByteArrayMultipartFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StopWatch;
+
+/**
+ * Converts made up P/T/A/F files through the services before the first request, so the detection of the mime type,
+ * the field checks, the xml writer and the error csv are loaded and compiled by the JIT. Spring Boot reports the readiness
+ * state ACCEPTING_TRAFFIC only once the application runners are done, so the readiness probe answers DOWN until the warm-up ends.
+ * The files are marked synthetic, so the record sinks never see them, and the conversion metrics are suspended meanwhile,
+ * so they only count traffic. Configured validation rules which reject the made up valid file do not stop the startup,
+ * the warm-up then only covers the validation.
+ */
+@Slf4j
+@Component
+public class ConversionWarmUp implements ApplicationRunner {
+
+    private final WarmUpProperties warmUpProperties;
+    private final FileConverterService fileConverterService;
+    private final ConversionMetrics conversionMetrics;
+    private int completedIterations;
+
+    public ConversionWarmUp(WarmUpProperties warmUpProperties, FileConverterService fileConverterService, ConversionMetrics conversionMetrics) {
+        this.warmUpProperties = warmUpProperties;
+        this.fileConverterService = fileConverterService;
+        this.conversionMetrics = conversionMetrics;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!warmUpProperties.isEnabled())
+            return;
+        int persons = warmUpProperties.getPersons();
+        ByteArrayMultipartFile valid = file("warm-up.csv", validText(persons));
+        ByteArrayMultipartFile fieldErrors = file("warm-up-errors.csv", fieldErrorsText(persons));
+        ByteArrayMultipartFile orderError = file("warm-up-order.csv", validText(persons) + "F|Victoria|1977\nP|Barack|Obama\n");
+        ConversionOptions options = ConversionOptions.synthetic();
+        ConversionOptions compact = ConversionOptions.synthetic();
+        compact.setCompact(true);
+        StopWatch stopWatch = new StopWatch("warmUp");
+        stopWatch.start();
+        long deadline = System.nanoTime() + warmUpProperties.getTimeBudget().toNanos();
+        int iteration = 0;
+        int rejected = 0;
+        try (ConversionMetrics.Suspension ignored = conversionMetrics.suspend()) {
+            for (; iteration < warmUpProperties.getIterations() && System.nanoTime() < deadline; iteration++) {
+                if (!convert(valid, options))
+                    rejected++;
+                try {
+                    fileConverterService.convertFileStreaming(valid, compact).writeTo(OutputStream.nullOutputStream());
+                } catch (CSVException e) {
+                    e.getErrorReport().close();
+                } catch (FileErrorException e) {
+                    // the configured rules reject the file, already counted
+                }
+                convert(fieldErrors, options);
+                convert(orderError, options);
+            }
+        }
+        stopWatch.stop();
+        completedIterations = iteration;
+        log.info("warm-up of {} of {} iterations done, running time (s) = {}", iteration, warmUpProperties.getIterations(), stopWatch.getTotalTimeSeconds());
+        if (rejected > 0)
+            log.warn("the configured validation rules reject the valid file of the warm-up, the xml conversion is not warmed up");
+    }
+
+    /**
+     * @return true if the file is converted, false if it is found invalid
+     */
+    private boolean convert(ByteArrayMultipartFile file, ConversionOptions options) {
+        try {
+            fileConverterService.convertFile(file, options);
+            return true;
+        } catch (CSVException e) {
+            e.getErrorReport().close();
+        } catch (FileErrorException e) {
+            // the general errors of the file are all there is to it
+        }
+        return false;
+    }
+
+    /**
+     * @return the rounds the last warm-up completed
+     */
+    public int getCompletedIterations() {
+        return completedIterations;
+    }
+
+    /**
+     * Persons with a phone, an address and a family member with a phone and an address, as many as given.
+     */
+    static String validText(int persons) {
+        StringBuilder text = new StringBuilder(persons * 160);
+        for (int i = 0; i < persons; i++) {
+            text.append("P|Carl Gustaf|Bernadotte\n")
+                    .append("T|0768-101801|08-101801\n")
+                    .append("A|Drottningholms slott|Stockholm|10001\n")
+                    .append("F|Victoria|1977\n")
+                    .append("T|0768-101802|08-101802\n")
+                    .append("A|Haga Slott|Stockholm|10002\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Persons whose last name, mobile and year of a family member are invalid.
+     */
+    static String fieldErrorsText(int persons) {
+        StringBuilder text = new StringBuilder(persons * 120);
+        for (int i = 0; i < persons; i++) {
+            text.append("P|Barack|O\n")
+                    .append("T|0768/101801|08101801\n")
+                    .append("F|Malia|98\n")
+                    .append("A|1600 Pennsylvania Avenue|Washington|10003\n");
+        }
+        return text.toString();
+    }
+
+    private static ByteArrayMultipartFile file(String fileName, String text) {
+        return new ByteArrayMultipartFile(text.getBytes(StandardCharsets.UTF_8), fileName, MediaType.TEXT_PLAIN_VALUE);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.softhouse.integration.fileconverter.warmup;
+
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the warm-up, which converts made up files at startup before the service reports it is ready.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.warm-up")
+public class WarmUpProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Rounds of conversions, each converts a valid file as a string and as a stream and validates two invalid files.
+     */
+    private int iterations = 100;
+
+    /**
+     * The warm-up ends after this time even if not all rounds are done.
+     */
+    private Duration timeBudget = Duration.ofSeconds(30);
+
+    /**
+     * Persons of the made up files.
+     */
+    private int persons = 50;
+
+}
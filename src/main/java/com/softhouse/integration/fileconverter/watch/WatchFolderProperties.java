@@ -0,0 +1,50 @@
+package com.softhouse.integration.fileconverter.watch;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the watch folders, where files dropped on a local volume are converted without a request.
+ */
+@Data
+@ConfigurationProperties(prefix = "converter.watch")
+public class WatchFolderProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Directories whose files are converted, they are created if they do not exist.
+     */
+    private List<Path> directories = new ArrayList<>();
+
+    /**
+     * Glob the names of the files to convert match.
+     */
+    private String include = "*.csv";
+
+    /**
+     * Subdirectory of a watched directory the converted files are moved to.
+     */
+    private String processedDirectory = "processed";
+
+    /**
+     * Number of files converted at the same time.
+     */
+    private int parallelism = 2;
+
+    /**
+     * How long a file must be left unmodified before it is converted, so a file still being copied is not read.
+     */
+    private Duration settleTime = Duration.ofSeconds(1);
+
+    /**
+     * How often files waiting to settle are checked.
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+}
@@ -0,0 +1,249 @@
+package com.softhouse.integration.fileconverter.watch;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.FileConverterService;
+import com.softhouse.integration.fileconverter.LargeFileProperties;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+import com.softhouse.integration.fileconverter.exception.FileErrorException;
+import com.softhouse.integration.fileconverter.filewriter.CSVErrorReport;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.util.PathMultipartFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Converts the files dropped in the watched directories, as an upload to /convertFile/stream would be converted.
+ * A file is converted once it is left unmodified for the settle time. Its xml, or its error csv, is written next to it
+ * through a hidden temporary file moved into place, and then the file is moved to the processed directory.
+ * The move marks the file as done: the files left in a watched directory at startup are converted, and a file
+ * converted again after a crash before its move gets the same output.
+ * A file which can not be converted for another reason is left in place and tried again once it is modified.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "converter.watch", name = "enabled", havingValue = "true")
+public class WatchFolderService {
+
+    public static final String XML_SUFFIX = ".xml";
+    public static final String ERRORS_SUFFIX = ".errors.csv";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final WatchFolderProperties watchFolderProperties;
+    private final FileConverterService fileConverterService;
+    private final LargeFileProperties largeFileProperties;
+    private final ConversionMetrics conversionMetrics;
+    private final PathMatcher includeMatcher;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    /**
+     * Files seen in a watched directory and not converted yet.
+     */
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private final Set<Path> converting = ConcurrentHashMap.newKeySet();
+    /**
+     * Files which could not be converted, by the time they were last modified.
+     */
+    private final Map<Path, FileTime> failed = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    public WatchFolderService(WatchFolderProperties watchFolderProperties, FileConverterService fileConverterService, LargeFileProperties largeFileProperties, ConversionMetrics conversionMetrics) {
+        this.watchFolderProperties = watchFolderProperties;
+        this.fileConverterService = fileConverterService;
+        this.largeFileProperties = largeFileProperties;
+        this.conversionMetrics = conversionMetrics;
+        this.includeMatcher = FileSystems.getDefault().getPathMatcher("glob:" + watchFolderProperties.getInclude());
+        executor.setCorePoolSize(watchFolderProperties.getParallelism());
+        executor.setMaxPoolSize(watchFolderProperties.getParallelism());
+        executor.setThreadNamePrefix("watch-conversion-");
+    }
+
+    /**
+     * Registers the directories before looking at their files, so no file dropped meanwhile is missed.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        executor.initialize();
+        watchService = FileSystems.getDefault().newWatchService();
+        List<Path> directories = watchFolderProperties.getDirectories();
+        for (Path directory : directories) {
+            Files.createDirectories(directory.resolve(watchFolderProperties.getProcessedDirectory()));
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        directories.forEach(this::scan);
+        watcher = new Thread(this::watch, "watch-folder");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("watching {} for {}", directories, watchFolderProperties.getInclude());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("watch service can not be closed", e);
+        }
+        watcher.join(TimeUnit.SECONDS.toMillis(5));
+        executor.shutdown();
+    }
+
+    private void watch() {
+        long pollInterval = watchFolderProperties.getPollInterval().toMillis();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(pollInterval, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            scan(directory);
+                        else
+                            offer(directory.resolve((Path) event.context()));
+                    }
+                    key.reset();
+                }
+                submitSettled();
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.info("watch folders closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scan(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            files.forEach(this::offer);
+        } catch (IOException e) {
+            log.error("watch folder {} can not be read", directory, e);
+        }
+    }
+
+    private void offer(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.startsWith(".") && !fileName.endsWith(ERRORS_SUFFIX) && includeMatcher.matches(file.getFileName()))
+            pending.add(file);
+    }
+
+    /**
+     * Hands the pending files which are left unmodified for the settle time to the executor, a file which is gone is forgotten.
+     */
+    private void submitSettled() {
+        long settled = System.currentTimeMillis() - watchFolderProperties.getSettleTime().toMillis();
+        for (Path file : pending) {
+            FileTime lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(file);
+            } catch (IOException e) {
+                pending.remove(file);
+                failed.remove(file);
+                continue;
+            }
+            if (lastModified.toMillis() > settled || converting.contains(file))
+                continue;
+            pending.remove(file);
+            if (lastModified.equals(failed.get(file)))
+                continue;
+            converting.add(file);
+            executor.execute(() -> {
+                try {
+                    convert(file, lastModified);
+                } finally {
+                    converting.remove(file);
+                }
+            });
+        }
+    }
+
+    private void convert(Path file, FileTime lastModified) {
+        String fileName = file.getFileName().toString();
+        String baseName = StringUtils.stripFilenameExtension(fileName);
+        String result;
+        try {
+            try {
+                StreamingResponseBody body = fileConverterService.convertFileStreaming(
+                        new PathMultipartFile(file, fileName, MediaType.TEXT_PLAIN_VALUE, largeFileProperties.getWindowSize().toBytes()), new ConversionOptions());
+                write(file.resolveSibling(baseName + XML_SUFFIX), body);
+                result = "converted";
+            } catch (CSVException e) {
+                try (CSVErrorReport errorReport = e.getErrorReport()) {
+                    write(file.resolveSibling(baseName + ERRORS_SUFFIX), outputStream -> errorReport.writeTo(outputStream, true));
+                }
+                result = "errors";
+            } catch (FileErrorException e) {
+                write(file.resolveSibling(baseName + ERRORS_SUFFIX), outputStream -> writeGeneralErrors(outputStream, fileName, e.getFileErrorDTO().getGeneralErrors()));
+                result = "errors";
+            }
+            Files.move(file, file.resolveSibling(watchFolderProperties.getProcessedDirectory()).resolve(fileName), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            failed.remove(file);
+            log.info("watched file {} {}", file, result);
+        } catch (IOException | RuntimeException e) {
+            log.error("watched file {} can not be converted", file, e);
+            failed.put(file, lastModified);
+            result = "failed";
+        }
+        conversionMetrics.watchedFile(result);
+    }
+
+    /**
+     * Writes the output to a hidden file through a FileChannel, forces it to the disk and moves it over the target,
+     * so the target is never seen half written.
+     */
+    private void write(Path target, StreamingResponseBody output) throws IOException {
+        Path temporary = target.resolveSibling("." + target.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+                output.writeTo(outputStream);
+                outputStream.flush();
+                channel.force(false);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeGeneralErrors(OutputStream outputStream, String fileName, Collection<String> errorDescriptions) throws IOException {
+        CSVErrorReport.writeHeader(outputStream);
+        for (String errorDescription : errorDescriptions)
+            outputStream.write(CSVLineErrorDTO.builder().lineNo(0).fileName(fileName).fieldName("").fieldValue("").errorDescription(errorDescription).build()
+                    .toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.softhouse.integration.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * A MultipartFile held in memory, such as an entry read from an uploaded archive.
+ */
+public class ByteArrayMultipartFile implements MultipartFile {
+
+    private final byte[] content;
+    private final String originalFilename;
+    private final String contentType;
+
+    public ByteArrayMultipartFile(byte[] content, String originalFilename, String contentType) {
+        this.content = content;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return content.length == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return content.length;
+    }
+
+    @Override
+    @NonNull
+    public byte[] getBytes() {
+        return content;
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public void transferTo(@NonNull File dest) throws IOException {
+        Files.write(dest.toPath(), content);
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.softhouse.integration.util;
 
+import java.util.regex.Pattern;
+
 /**
  * Created by Shahrooz on 02/17/2022.
  */
@@ -33,18 +35,62 @@ public class CommonEnum {
         }
     }
 
+    /**
+     * Besides the regex, every pattern knows its digit counts before and after the dash,
+     * so a value can be matched by a scanner on a char range without creating a String or a Matcher.
+     */
     public enum PhonePattern {
-        MOBILE("\\d{4}-\\d{6}"), PHONE("\\d{2}-\\d{6}");
+        MOBILE("\\d{4}-\\d{6}", 4, 6), PHONE("\\d{2}-\\d{6}", 2, 6);
+
+        /**
+         * values() clones the array on every call, matchesAny runs on every T line.
+         */
+        private static final PhonePattern[] VALUES = values();
 
         private final String value;
+        private final Pattern pattern;
+        private final int prefixDigits;
+        private final int suffixDigits;
 
-        PhonePattern(String value) {
+        PhonePattern(String value, int prefixDigits, int suffixDigits) {
             this.value = value;
+            this.pattern = Pattern.compile(value);
+            this.prefixDigits = prefixDigits;
+            this.suffixDigits = suffixDigits;
         }
 
         public String getValue() {
             return value;
         }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Same as getPattern().matcher(String.valueOf(buffer, start, end - start).trim()).matches()
+         */
+        public boolean matches(char[] buffer, int start, int end) {
+            while (start < end && buffer[start] <= ' ')
+                start++;
+            while (end > start && buffer[end - 1] <= ' ')
+                end--;
+            if (end - start != prefixDigits + 1 + suffixDigits || buffer[start + prefixDigits] != '-')
+                return false;
+            for (int i = start; i < end; i++) {
+                if (i != start + prefixDigits && (buffer[i] < '0' || buffer[i] > '9'))
+                    return false;
+            }
+            return true;
+        }
+
+        public static boolean matchesAny(char[] buffer, int start, int end) {
+            for (PhonePattern phonePattern : VALUES) {
+                if (phonePattern.matches(buffer, start, end))
+                    return true;
+            }
+            return false;
+        }
     }
 
 }
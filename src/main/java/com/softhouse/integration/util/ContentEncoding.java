@@ -0,0 +1,78 @@
+package com.softhouse.integration.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+/**
+ * The compressions an upload may come in. They are recognized by their magic bytes rather than by a header or the file name,
+ * which clients do not set reliably, and decompressed as a stream so the plain content is never held as a whole.
+ * The decompressed stream fails with a {@link SizeLimitExceededException} once it passes the given plain size.
+ */
+public enum ContentEncoding {
+
+    GZIP(new byte[]{0x1f, (byte) 0x8b}, ".gz"),
+    ZSTD(new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}, ".zst");
+
+    private static final int MAGIC_LENGTH = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] magic;
+    private final String extension;
+
+    ContentEncoding(byte[] magic, String extension) {
+        this.magic = magic;
+        this.extension = extension;
+    }
+
+    /**
+     * @param maxDecodedSize the most bytes the decompressed stream may give
+     */
+    public InputStream decode(InputStream inputStream, long maxDecodedSize) throws IOException {
+        return new SizeLimitedInputStream(switch (this) {
+            case GZIP -> new GZIPInputStream(inputStream, BUFFER_SIZE);
+            case ZSTD -> new ZstdInputStream(inputStream);
+        }, maxDecodedSize);
+    }
+
+    /**
+     * @return the file name without the extension of this compression, such as file.csv for file.csv.gz
+     */
+    public String stripExtension(String fileName) {
+        if (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(extension))
+            return fileName.substring(0, fileName.length() - extension.length());
+        return fileName;
+    }
+
+    /**
+     * Reads the magic bytes of a stream, which is wrapped so they are read again.
+     *
+     * @param maxDecodedSize the most bytes the decompressed stream may give
+     * @return the decompressed stream, or the stream itself if it is not compressed
+     */
+    public static InputStream decodeIfCompressed(InputStream inputStream, long maxDecodedSize) throws IOException {
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, MAGIC_LENGTH);
+        byte[] prefix = pushbackInputStream.readNBytes(MAGIC_LENGTH);
+        pushbackInputStream.unread(prefix);
+        ContentEncoding contentEncoding = of(prefix);
+        return contentEncoding == null ? pushbackInputStream : contentEncoding.decode(pushbackInputStream, maxDecodedSize);
+    }
+
+    /**
+     * @param prefix the first bytes of the content
+     * @return the compression, or null if the content is not compressed
+     */
+    public static ContentEncoding of(byte[] prefix) {
+        for (ContentEncoding contentEncoding : values()) {
+            if (prefix.length >= contentEncoding.magic.length && Arrays.equals(prefix, 0, contentEncoding.magic.length, contentEncoding.magic, 0, contentEncoding.magic.length))
+                return contentEncoding;
+        }
+        return null;
+    }
+
+}
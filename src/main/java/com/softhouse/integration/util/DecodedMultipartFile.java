@@ -0,0 +1,97 @@
+package com.softhouse.integration.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * A compressed upload seen as its plain content: every read decompresses it again as a stream, and the compression's
+ * extension is dropped from the file name. The size stays the compressed size, the plain size is not known without reading it,
+ * and reading fails with a {@link SizeLimitExceededException} once it passes the most plain bytes allowed.
+ */
+public class DecodedMultipartFile implements MultipartFile {
+
+    private final MultipartFile file;
+    private final ContentEncoding contentEncoding;
+    private final long maxDecodedSize;
+
+    private DecodedMultipartFile(MultipartFile file, ContentEncoding contentEncoding, long maxDecodedSize) {
+        this.file = file;
+        this.contentEncoding = contentEncoding;
+        this.maxDecodedSize = maxDecodedSize;
+    }
+
+    /**
+     * @param maxDecodedSize the most bytes the decompressed file may have
+     * @return the decompressed file, or the file itself if it is not compressed
+     */
+    public static MultipartFile of(MultipartFile file, long maxDecodedSize) throws IOException {
+        byte[] prefix;
+        try (InputStream inputStream = file.getInputStream()) {
+            prefix = inputStream.readNBytes(4);
+        }
+        ContentEncoding contentEncoding = ContentEncoding.of(prefix);
+        return contentEncoding == null ? file : new DecodedMultipartFile(file, contentEncoding, maxDecodedSize);
+    }
+
+    public ContentEncoding getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public long getMaxDecodedSize() {
+        return maxDecodedSize;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return contentEncoding.stripExtension(file.getOriginalFilename());
+    }
+
+    @Override
+    public String getContentType() {
+        return file.getContentType();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return file.isEmpty();
+    }
+
+    @Override
+    public long getSize() {
+        return file.getSize();
+    }
+
+    @Override
+    @NonNull
+    public byte[] getBytes() throws IOException {
+        try (InputStream inputStream = getInputStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() throws IOException {
+        return contentEncoding.decode(file.getInputStream(), maxDecodedSize);
+    }
+
+    @Override
+    public void transferTo(@NonNull File dest) throws IOException {
+        try (InputStream inputStream = getInputStream()) {
+            Files.copy(inputStream, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.softhouse.integration.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Holds back the first bytes written through it, and only opens its target once more is written or it is closed.
+ * Until then the writer can still drop what it wrote and answer otherwise, such as a response whose status is not sent yet.
+ */
+public class HoldBackOutputStream extends OutputStream {
+
+    private final Target target;
+    private final int holdBack;
+    private ByteArrayOutputStream held = new ByteArrayOutputStream();
+    private OutputStream out;
+
+    public HoldBackOutputStream(Target target, int holdBack) {
+        this.target = target;
+        this.holdBack = holdBack;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out == null) {
+            if (held.size() + len <= holdBack) {
+                held.write(b, off, len);
+                return;
+            }
+            open();
+        }
+        out.write(b, off, len);
+    }
+
+    /**
+     * Held bytes stay held, only an opened target is flushed.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null)
+            open();
+        out.close();
+    }
+
+    /**
+     * @return whether the target is opened, after which what was written can not be taken back
+     */
+    public boolean isOpened() {
+        return out != null;
+    }
+
+    private void open() throws IOException {
+        out = target.open();
+        held.writeTo(out);
+        held = null;
+    }
+
+    @FunctionalInterface
+    public interface Target {
+        OutputStream open() throws IOException;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.softhouse.integration.util;
+
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.lang.NonNull;
+
+/**
+ * Runs a task with the locale of the thread which submitted it, so messages are resolved in the language of the request.
+ */
+public class LocaleContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    @NonNull
+    public Runnable decorate(@NonNull Runnable runnable) {
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        return () -> {
+            LocaleContextHolder.setLocaleContext(localeContext);
+            try {
+                runnable.run();
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+            }
+        };
+    }
+
+}
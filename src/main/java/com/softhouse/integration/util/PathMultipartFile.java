@@ -0,0 +1,88 @@
+package com.softhouse.integration.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * A MultipartFile backed by a local file, so the validator and the converter can work on files
+ * which do not come from a multipart request or which have to outlive it.
+ * With a mapped window size the file is read through a {@link MappedFileInputStream}.
+ */
+public class PathMultipartFile implements MultipartFile {
+
+    private final Path path;
+    private final String originalFilename;
+    private final String contentType;
+    private final long mappedWindowSize;
+
+    public PathMultipartFile(Path path, String originalFilename, String contentType) {
+        this(path, originalFilename, contentType, 0);
+    }
+
+    public PathMultipartFile(Path path, String originalFilename, String contentType, long mappedWindowSize) {
+        this.path = path;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.mappedWindowSize = mappedWindowSize;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    @NonNull
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() throws IOException {
+        return mappedWindowSize > 0 ? new MappedFileInputStream(path, mappedWindowSize) : Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(@NonNull File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
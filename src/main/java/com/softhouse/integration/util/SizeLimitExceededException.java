@@ -0,0 +1,25 @@
+package com.softhouse.integration.util;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Thrown by {@link SizeLimitedInputStream} when more bytes are read than its limit.
+ */
+public class SizeLimitExceededException extends IOException {
+
+    @Serial
+    private static final long serialVersionUID = 6207513478213641951L;
+
+    private final long limit;
+
+    public SizeLimitExceededException(long limit) {
+        super("more than " + limit + " bytes");
+        this.limit = limit;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+}
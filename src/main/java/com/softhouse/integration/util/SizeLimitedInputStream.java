@@ -0,0 +1,58 @@
+package com.softhouse.integration.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it and fails once they pass a limit, such as the plain size of a decompressed upload,
+ * which a small compressed upload can make arbitrarily large.
+ */
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count;
+
+    public SizeLimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1)
+            count(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0)
+            count(read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    /**
+     * Mark and reset would count the bytes read again.
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long read) throws SizeLimitExceededException {
+        count += read;
+        if (count > limit)
+            throw new SizeLimitExceededException(limit);
+    }
+
+}
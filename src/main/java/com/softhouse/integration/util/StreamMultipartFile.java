@@ -0,0 +1,133 @@
+package com.softhouse.integration.util;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * A request body seen as a file while it is still arriving. It can only be read once, and its size is the number of
+ * bytes read so far, so it is the whole size once the body is read to its end.
+ */
+public class StreamMultipartFile implements MultipartFile {
+
+    private final String fileName;
+    private final String contentType;
+    private final CountingInputStream countingInputStream;
+    private final PushbackInputStream inputStream;
+    private boolean read;
+
+    public StreamMultipartFile(InputStream inputStream, String fileName, String contentType) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.countingInputStream = new CountingInputStream(inputStream);
+        this.inputStream = new PushbackInputStream(countingInputStream);
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Waits for the first byte of the body if none is read yet.
+     */
+    @Override
+    public boolean isEmpty() {
+        if (countingInputStream.count > 0)
+            return false;
+        try {
+            int b = inputStream.read();
+            if (b == -1)
+                return true;
+            inputStream.unread(b);
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return countingInputStream.count;
+    }
+
+    @Override
+    @NonNull
+    public byte[] getBytes() throws IOException {
+        try (InputStream in = getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() {
+        if (read)
+            throw new IllegalStateException("the body of " + fileName + " is already read");
+        read = true;
+        return inputStream;
+    }
+
+    @Override
+    public void transferTo(@NonNull File dest) throws IOException {
+        try (InputStream in = getInputStream()) {
+            Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.softhouse.integration.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes everything written through it also to a second stream, such as a response which is cached while it is sent.
+ * Closing it closes only the first stream.
+ */
+public class TeeOutputStream extends FilterOutputStream {
+
+    private final OutputStream branch;
+
+    public TeeOutputStream(OutputStream out, OutputStream branch) {
+        super(out);
+        this.branch = branch;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        branch.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        branch.write(b, off, len);
+    }
+
+}
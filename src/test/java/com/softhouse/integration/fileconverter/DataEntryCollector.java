@@ -0,0 +1,82 @@
+package com.softhouse.integration.fileconverter;
+
+import java.util.function.Consumer;
+
+import com.softhouse.integration.fileconverter.dto.Address;
+import com.softhouse.integration.fileconverter.dto.CSVFieldA;
+import com.softhouse.integration.fileconverter.dto.CSVFieldF;
+import com.softhouse.integration.fileconverter.dto.CSVFieldP;
+import com.softhouse.integration.fileconverter.dto.CSVFieldT;
+import com.softhouse.integration.fileconverter.dto.DataEntry;
+import com.softhouse.integration.fileconverter.dto.Family;
+import com.softhouse.integration.fileconverter.dto.Phone;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+
+/**
+ * Builds the data entries from the record events, while the file is being read.
+ * A P line starts a new entry, T and A lines belong to the entry or to its last family, F lines add a family.
+ * An entry is handed to the dataEntryConsumer once it is complete, that is when the next P line or {@link #finish()} is reached.
+ */
+class DataEntryCollector implements RecordListener {
+
+    private final Consumer<DataEntry> dataEntryConsumer;
+    private DataEntry dataEntry = new DataEntry();
+    private boolean started;
+
+    DataEntryCollector(Consumer<DataEntry> dataEntryConsumer) {
+        this.dataEntryConsumer = dataEntryConsumer;
+    }
+
+    @Override
+    public void onPerson(int lineNo, CSVLineTokenizer columns) {
+        finish();
+        dataEntry = new DataEntry();
+        dataEntry.setFirstName(columns.field(CSVFieldP.FIRST_NAME.ordinal()));
+        dataEntry.setLastName(columns.field(CSVFieldP.LAST_NAME.ordinal()));
+        started = true;
+    }
+
+    @Override
+    public void onPhone(int lineNo, CSVLineTokenizer columns) {
+        if (dataEntry.getFamilies().isEmpty()) {
+            dataEntry.setMobile(columns.field(CSVFieldT.MOBILE.ordinal()));
+            dataEntry.setLandPhone(columns.field(CSVFieldT.PHONE.ordinal()));
+        } else {
+            Phone phone = new Phone();
+            phone.setMobile(columns.field(CSVFieldT.MOBILE.ordinal()));
+            phone.setLandPhone(columns.field(CSVFieldT.PHONE.ordinal()));
+            dataEntry.getFamilies().peek().setPhone(phone);
+        }
+    }
+
+    @Override
+    public void onAddress(int lineNo, CSVLineTokenizer columns) {
+        if (dataEntry.getFamilies().isEmpty()) {
+            dataEntry.setStreet(columns.field(CSVFieldA.ADDRESS.ordinal()));
+            dataEntry.setTown(columns.field(CSVFieldA.TOWN.ordinal()));
+            dataEntry.setPostalCode(columns.field(CSVFieldA.POSTAL_CODE.ordinal()));
+        } else {
+            Address address = new Address();
+            address.setTown(columns.field(CSVFieldA.TOWN.ordinal()));
+            address.setStreet(columns.field(CSVFieldA.ADDRESS.ordinal()));
+            address.setPostalCode(columns.field(CSVFieldA.POSTAL_CODE.ordinal()));
+            dataEntry.getFamilies().peek().setAddress(address);
+        }
+    }
+
+    @Override
+    public void onFamily(int lineNo, CSVLineTokenizer columns) {
+        Family family = new Family();
+        family.setName(columns.field(CSVFieldF.NAME.ordinal()));
+        family.setBorn(columns.field(CSVFieldF.YEAR.ordinal()));
+        dataEntry.getFamilies().add(family);
+    }
+
+    void finish() {
+        if (started)
+            dataEntryConsumer.accept(dataEntry);
+        started = false;
+    }
+
+}
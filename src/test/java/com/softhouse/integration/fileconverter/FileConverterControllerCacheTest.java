@@ -0,0 +1,78 @@
+package com.softhouse.integration.fileconverter;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest
+class FileConverterControllerCacheTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void convertFileCached() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        MockMultipartFile file = new MockMultipartFile("file", "cached.csv", MediaType.TEXT_PLAIN_VALUE, "P|Cached|Person\nT|0768-101801|08-101801\n".getBytes());
+        double hits = heapHits();
+        MockHttpServletResponse converted = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file))
+                .andExpect(status().isCreated()).andReturn().getResponse();
+        MockHttpServletResponse cached = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file))
+                .andExpect(status().isCreated()).andReturn().getResponse();
+        Assertions.assertEquals(converted.getContentAsString(), cached.getContentAsString());
+        Assertions.assertEquals(converted.getContentType(), cached.getContentType());
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile/stream").file(file))
+                .andExpect(request().asyncStarted()).andReturn();
+        String streamed = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(converted.getContentAsString(), streamed);
+        Assertions.assertEquals(hits + 2, heapHits());
+    }
+
+    @Test
+    void convertFileErrorsCached() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        double hits = heapHits();
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")).param("maxErrors", "3"))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile/stream").file(sample("sampleCSVErr3.csv")).param("maxErrors", "3"))
+                .andExpect(request().asyncStarted()).andReturn();
+        String cachedErrors = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(errors, cachedErrors);
+        Assertions.assertEquals(hits + 1, heapHits());
+
+        String moreErrors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")).param("maxErrors", "4"))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertNotEquals(errors, moreErrors);
+        Assertions.assertEquals(hits + 1, heapHits());
+    }
+
+    private double heapHits() {
+        return meterRegistry.counter("converter.cache.gets", "result", "hit", "tier", "heap").count();
+    }
+
+    private MockMultipartFile sample(String fileName) throws IOException {
+        return new MockMultipartFile("file", fileName, MediaType.TEXT_PLAIN_VALUE, new ClassPathResource(fileName).getInputStream());
+    }
+}
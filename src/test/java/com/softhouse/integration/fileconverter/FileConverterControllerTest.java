@@ -1,18 +1,41 @@
 package com.softhouse.integration.fileconverter;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.Zstd;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.exception.ConversionAbortedException;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.util.NestedServletException;
 
-@SpringBootTest
+/**
+ * The cache is disabled, so every request converts its file. Cached results are tested by FileConverterControllerCacheTest.
+ */
+@SpringBootTest(properties = {"converter.cache.enabled=false", "converter.large-file.max-decoded-size=1MB"})
+@AutoConfigureMetrics
 class FileConverterControllerTest {
 
     @Autowired
@@ -59,4 +82,235 @@ class FileConverterControllerTest {
         MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
         mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file)).andExpect(status().isCreated());
     }
-}
\ No newline at end of file
+
+    @Test
+    void convertFileSamples() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr1.csv")))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("File should begin with 'P'"));
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr2.csv")))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("Line 7: F should follow with [T, A]"));
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(List.of(
+                "File Name|Line Number|Field Name|Field Value|Error",
+                "sampleCSVErr3.csv|1|firstName|Carl2 Gustaf            |Field should just have at least 2 and at max 255 characters.",
+                "sampleCSVErr3.csv|2|mobile|768-101801              |Numbers should be like 0768-101801 Or 08-101802",
+                "sampleCSVErr3.csv|6|name|Carl3 Philip            |Field should just have at least 2 and at max 255 characters.",
+                "sampleCSVErr3.csv|6|year|19791|Field Should have 4 digits.",
+                "sampleCSVErr3.csv|7|T|[T, 0768-101802             , 08-101802      , 08-101802]|3 fields needed.",
+                "sampleCSVErr3.csv|8|P|[P, Barack                  , Obama          , fsd]|3 fields needed."), errors.lines().toList());
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(2, xml.split("<person>").length - 1);
+        Assertions.assertEquals(2, xml.split("<family>").length - 1);
+    }
+
+    @Test
+    void convertFileMaxErrors() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")).param("maxErrors", "2").param("countAllErrors", "true"))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(List.of(
+                "File Name|Line Number|Field Name|Field Value|Error",
+                "sampleCSVErr3.csv|1|firstName|Carl2 Gustaf            |Field should just have at least 2 and at max 255 characters.",
+                "sampleCSVErr3.csv|2|mobile|768-101801              |Numbers should be like 0768-101801 Or 08-101802",
+                "sampleCSVErr3.csv|0|||4 more errors are not shown."), errors.lines().toList());
+    }
+
+    @Test
+    void convertFileMaxErrorsLowerBound() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")).param("maxErrors", "2"))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(List.of(
+                "File Name|Line Number|Field Name|Field Value|Error",
+                "sampleCSVErr3.csv|1|firstName|Carl2 Gustaf            |Field should just have at least 2 and at max 255 characters.",
+                "sampleCSVErr3.csv|2|mobile|768-101801              |Numbers should be like 0768-101801 Or 08-101802",
+                "sampleCSVErr3.csv|0|||At least 2 more errors are not shown."), errors.lines().toList());
+    }
+
+    @Test
+    void convertFileStreaming() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile/stream").file(sample("sampleCSV1.csv")))
+                .andExpect(request().asyncStarted()).andReturn();
+        String streamedXml = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        Assertions.assertEquals(xml, streamedXml);
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile/stream").file(sample("sampleCSVErr3.csv")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void convertLargeFile() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/convertLargeFile").contentType(MediaType.APPLICATION_OCTET_STREAM).content(sample("sampleCSV1.csv").getBytes()))
+                .andExpect(request().asyncStarted()).andReturn();
+        String largeFileXml = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertEquals(xml, largeFileXml);
+
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        String largeFileErrors = mockMvc.perform(MockMvcRequestBuilders.post("/convertLargeFile").param("fileName", "sampleCSVErr3.csv").contentType(MediaType.TEXT_PLAIN).content(sample("sampleCSVErr3.csv").getBytes()))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(errors, largeFileErrors);
+    }
+
+    @Test
+    void convertFileBody() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        for (byte[] content : List.of(sample("sampleCSV1.csv").getBytes(), gzip(sample("sampleCSV1.csv").getBytes()))) {
+            Assertions.assertEquals(xml, mockMvc.perform(MockMvcRequestBuilders.post("/convertFile/body").contentType(MediaType.APPLICATION_OCTET_STREAM).content(content))
+                    .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8));
+        }
+
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        String bodyErrors = mockMvc.perform(MockMvcRequestBuilders.post("/convertFile/body").param("fileName", "sampleCSVErr3.csv").contentType(MediaType.TEXT_PLAIN).content(sample("sampleCSVErr3.csv").getBytes()))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(errors, bodyErrors);
+        mockMvc.perform(MockMvcRequestBuilders.post("/convertFile/body").contentType(MediaType.TEXT_PLAIN).content(new byte[0]))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("Failed to store empty multipartFile ."));
+    }
+
+    @Test
+    void convertFileBodyAborted() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        byte[] content = ("P|Carl Gustaf|Bernadotte\nT|0768-101801|08-101801\n".repeat(5000) + "P|Carl Gustaf|Bernadotte\nT|768-101801|08101801\n").getBytes(StandardCharsets.UTF_8);
+        NestedServletException exception = Assertions.assertThrows(NestedServletException.class,
+                () -> mockMvc.perform(MockMvcRequestBuilders.post("/convertFile/body").contentType(MediaType.TEXT_PLAIN).content(content)));
+        Assertions.assertInstanceOf(ConversionAbortedException.class, exception.getCause());
+        Assertions.assertInstanceOf(CSVException.class, exception.getCause().getCause());
+    }
+
+    @Test
+    void convertFileSwedish() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")).header(HttpHeaders.ACCEPT_LANGUAGE, "sv-SE"))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(errors.contains("sampleCSVErr3.csv|6|år|19791|Fältet ska ha 4 siffror."), errors);
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr1.csv")).header(HttpHeaders.ACCEPT_LANGUAGE, "sv"))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("Filen ska börja med 'P'"));
+    }
+
+    @Test
+    void convertFileBinary() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String text = "P|Carl Gustaf|Bernadotte\nT|0768-101801|08-101801\n".repeat(500);
+        byte[] content = (text + "P|Carl\0Gustaf|Bernadotte\nT|0768-101801|08-101801\n").getBytes(StandardCharsets.UTF_8);
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(new MockMultipartFile("file", "binary.csv", MediaType.TEXT_PLAIN_VALUE, content)))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("File binary.csv type should be text/plain but is application/octet-stream."));
+    }
+
+    @Test
+    void convertFileLatin1() throws Exception {
+        // the names are decoded as UTF-8 and fail their checks, but the file is not taken as binary wherever the Latin-1 line is
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String text = "P|Carl Gustaf|Bernadotte\nT|0768-101801|08-101801\n".repeat(500);
+        String latin1 = "P|Åsa|Öberg\nT|0768-101801|08-101801\n";
+        for (String csv : List.of(latin1 + text, text + latin1)) {
+            byte[] content = csv.getBytes(StandardCharsets.ISO_8859_1);
+            mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(new MockMultipartFile("file", "latin1.csv", MediaType.TEXT_PLAIN_VALUE, content)))
+                    .andExpect(status().isBadRequest()).andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN));
+        }
+    }
+
+    @Test
+    void convertFileCompressed() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        byte[] csv = sample("sampleCSV1.csv").getBytes();
+        for (MockMultipartFile file : List.of(compressed("sampleCSV1.csv.gz", gzip(csv)), compressed("sampleCSV1.csv.zst", Zstd.compress(csv))))
+            Assertions.assertEquals(xml, mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file))
+                    .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString(), file.getOriginalFilename());
+
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv")))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        String compressedErrors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(compressed("sampleCSVErr3.csv.gz", gzip(sample("sampleCSVErr3.csv").getBytes()))))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(errors, compressedErrors);
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/convertLargeFile").contentType(MediaType.APPLICATION_OCTET_STREAM).content(Zstd.compress(csv)))
+                .andExpect(request().asyncStarted()).andReturn();
+        Assertions.assertEquals(xml, mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void convertFileCompressedTooLarge() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        byte[] csv = sample("sampleCSV1.csv").getBytes();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        while (byteArrayOutputStream.size() <= 2 * 1024 * 1024)
+            byteArrayOutputStream.write(csv);
+        byte[] gzip = gzip(byteArrayOutputStream.toByteArray());
+        Assertions.assertTrue(gzip.length < 64 * 1024);
+        String message = "File sampleCSV1.csv is larger than 1048576B when decompressed.";
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(compressed("sampleCSV1.csv.gz", gzip)))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value(message));
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(compressed("sampleCSV1.csv.zst", Zstd.compress(byteArrayOutputStream.toByteArray()))))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value(message));
+        mockMvc.perform(MockMvcRequestBuilders.post("/convertLargeFile").param("fileName", "sampleCSV1.csv").contentType(MediaType.APPLICATION_OCTET_STREAM).content(gzip))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value(message));
+    }
+
+    @Test
+    void convertFileCompact() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        String compactXml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")).param("compact", "true"))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(xml.replaceAll("\n *", ""), compactXml);
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile/stream").file(sample("sampleCSV1.csv")).param("compact", "true"))
+                .andExpect(request().asyncStarted()).andReturn();
+        Assertions.assertEquals(compactXml, mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void conversionMetrics() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv"))).andExpect(status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr1.csv"))).andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSVErr3.csv"))).andExpect(status().isBadRequest());
+        String metrics = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        for (String metric : List.of(
+                "converter_phase_seconds_bucket{operation=\"validateFile\",phase=\"linesCheck\",",
+                "converter_operation_seconds_count{operation=\"convertFile\",}",
+                "converter_input_bytes_bucket{",
+                "converter_output_bytes_count{type=\"xml\",}",
+                "converter_output_bytes_count{type=\"errors\",}",
+                "converter_records_total{type=\"F\",}",
+                "converter_errors_total{code=\"MSG_200100\",}",
+                "converter_errors_total{code=\"MSG_200105\",}"))
+            Assertions.assertTrue(metrics.contains(metric), metric);
+    }
+
+    private MockMultipartFile sample(String fileName) throws IOException {
+        return new MockMultipartFile("file", fileName, MediaType.TEXT_PLAIN_VALUE, new ClassPathResource(fileName).getInputStream());
+    }
+
+    private MockMultipartFile compressed(String fileName, byte[] content) {
+        return new MockMultipartFile("file", fileName, MediaType.APPLICATION_OCTET_STREAM_VALUE, content);
+    }
+
+    private byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(content);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+}
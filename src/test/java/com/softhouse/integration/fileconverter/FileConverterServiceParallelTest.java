@@ -0,0 +1,108 @@
+package com.softhouse.integration.fileconverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.softhouse.integration.fileconverter.dto.DataEntry;
+import com.softhouse.integration.fileconverter.dto.ObjectToXml;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+
+/**
+ * Every file is split at each of its P records, the results must be the ones of the sequential validation and conversion.
+ */
+@SpringBootTest(properties = {"converter.parallel.threshold=1B", "converter.parallel.min-chunk-size=1B"})
+class FileConverterServiceParallelTest {
+
+    private static final String[] DETAIL_LINES = {"T|0768-101801|08-101801", "A|Drottningholms slott|Stockholm|10001", "A|Haga Slott|Stockholm|10002", "T|0768-101802|08-101802"};
+    private static final String[] FAMILY_LINES = {"F|Victoria|1977", "F|Carl Philip|1979"};
+    private static final String[] INVALID_LINES = {"T|768-101801|08101801", "F|Carl3 Philip|19791", "P|Barack|Obama|fsd", "P|Barack", "X|unknown", "P|Barack|Obama", "F|Victoria|1977\nF|Estelle|2012"};
+    private static final String[] SEPARATORS = {"\n", "\r\n", "\n\n"};
+
+    @Autowired
+    private FileValidatorService fileValidatorService;
+
+    @Autowired
+    private FileConverterService fileConverterService;
+
+    @Test
+    void convertFileParallel() throws Exception {
+        Random random = new Random(42);
+        for (int n = 0; n < 50; n++) {
+            MockMultipartFile file = generate(random, 0);
+            Assertions.assertTrue(fileValidatorService.isParallel(file));
+            List<DataEntry> dataEntries = new ArrayList<>();
+            DataEntryCollector dataEntryCollector = new DataEntryCollector(dataEntries::add);
+            fileValidatorService.validateFile(file, new ConversionOptions(), dataEntryCollector);
+            dataEntryCollector.finish();
+            String expected = ObjectToXml.INSTANCE.convertToXML(ObjectToXml.INSTANCE.createPeopleByEntries(dataEntries));
+            Assertions.assertEquals(expected, fileConverterService.convertFile(file, new ConversionOptions()));
+            ConversionOptions compact = new ConversionOptions();
+            compact.setCompact(true);
+            Assertions.assertEquals(ObjectToXml.INSTANCE.convertToXML(ObjectToXml.INSTANCE.createPeopleByEntries(dataEntries), true), fileConverterService.convertFile(file, compact));
+        }
+    }
+
+    @Test
+    void validateFileParallel() throws Exception {
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++) {
+            MockMultipartFile file = generate(random, 0.05);
+            ConversionOptions options = new ConversionOptions();
+            options.setMaxErrors(n % 2 == 0 ? null : 3);
+            options.setCountAllErrors(n % 4 == 1);
+            RuntimeException expected = outcome(() -> fileValidatorService.validateFile(file, options, RecordListener.NONE));
+            RuntimeException actual = outcome(() -> fileValidatorService.validateFile(file, options));
+            String text = new String(file.getBytes(), StandardCharsets.UTF_8);
+            if (expected == null) {
+                Assertions.assertNull(actual, text);
+                continue;
+            }
+            Assertions.assertNotNull(actual, text);
+            Assertions.assertEquals(expected.getClass(), actual.getClass(), text);
+            Assertions.assertEquals(expected.getMessage(), actual.getMessage(), text);
+            if (expected instanceof CSVException csvException)
+                Assertions.assertEquals(new String(csvException.getContent(), StandardCharsets.UTF_8), new String(((CSVException) actual).getContent(), StandardCharsets.UTF_8), text);
+        }
+    }
+
+    private MockMultipartFile generate(Random random, double errorRate) {
+        StringBuilder sb = new StringBuilder();
+        int persons = 1 + random.nextInt(20);
+        for (int p = 0; p < persons; p++) {
+            line(sb, random, errorRate, "P|Carl Gustaf|Bernadotte");
+            int families = random.nextInt(3);
+            for (int f = 0; f <= families; f++) {
+                if (f > 0)
+                    line(sb, random, errorRate, FAMILY_LINES[random.nextInt(FAMILY_LINES.length)]);
+                int details = 1 + random.nextInt(3);
+                for (int i = 0; i < details; i++)
+                    line(sb, random, errorRate, DETAIL_LINES[random.nextInt(DETAIL_LINES.length)]);
+            }
+        }
+        return new MockMultipartFile("file", "filename.csv", MediaType.TEXT_PLAIN_VALUE, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void line(StringBuilder sb, Random random, double errorRate, String validLine) {
+        sb.append(random.nextDouble() < errorRate ? INVALID_LINES[random.nextInt(INVALID_LINES.length)] : validLine);
+        sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+    }
+
+    private RuntimeException outcome(Runnable validation) {
+        try {
+            validation.run();
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.softhouse.integration.fileconverter.admission;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+import com.jayway.jsonpath.JsonPath;
+import com.softhouse.integration.fileconverter.exception.AdmissionRejectedException;
+import com.softhouse.integration.fileconverter.job.ConversionJobStatus;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.metrics.MetricsProperties;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.multipart.MultipartFile;
+
+@SpringBootTest(properties = {"converter.cache.enabled=false", "converter.admission.memory-budget=1MB", "converter.admission.max-wait=50ms"})
+class AdmissionFilterTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private AdmissionFilter admissionFilter;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private ConverterMessageCatalog converterMessageCatalog;
+
+    @Test
+    void admitAndRelease() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(admissionFilter).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample())).andExpect(status().isCreated());
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile/stream").file(sample()))
+                .andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isCreated());
+        mvcResult.getRequest().getAsyncContext().complete();
+
+        int budget = admissionControl.cost(-1, false);
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, admissionControl.admit(budget));
+        admissionControl.release(budget);
+    }
+
+    @Test
+    void rejectOverBudget() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(admissionFilter).build();
+        int budget = admissionControl.cost(-1, false);
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, admissionControl.admit(budget));
+        try {
+            mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample()))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+                    .andExpect(jsonPath("$.generalErrors[0]").value("System is busy, the file can not be converted now."));
+            mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", "unknown")).andExpect(status().isNotFound());
+        } finally {
+            admissionControl.release(budget);
+        }
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample())).andExpect(status().isCreated());
+    }
+
+    @Test
+    void releaseAfterJob() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(admissionFilter).build();
+        String job = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertJobs").file(sample()))
+                .andExpect(status().isAccepted()).andReturn().getResponse().getContentAsString();
+        String id = JsonPath.read(job, "$.id");
+        for (int i = 0; i < 100 && !ConversionJobStatus.valueOf(JsonPath.read(mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", id))
+                .andReturn().getResponse().getContentAsString(), "$.status")).isFinished(); i++)
+            Thread.sleep(100);
+
+        int budget = admissionControl.cost(-1, false);
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, admissionControl.admit(budget));
+        admissionControl.release(budget);
+    }
+
+    @Test
+    void chargeCompressedUploads() throws Exception {
+        AdmissionProperties admissionProperties = new AdmissionProperties();
+        admissionProperties.setMemoryBudget(DataSize.ofKilobytes(100));
+        admissionProperties.setMaxWait(Duration.ofMillis(20));
+        AdmissionControl control = new AdmissionControl(admissionProperties, conversionMetrics(), converterMessageCatalog);
+        byte[] gzip = gzip(new byte[64 * 1024]);
+        MultipartFile decodedFile = DecodedMultipartFile.of(new MockMultipartFile("file", "zeros.csv.gz", MediaType.APPLICATION_OCTET_STREAM_VALUE, gzip), DataSize.ofKilobytes(64).toBytes());
+
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, control.admit(1));
+        AdmissionTicket ticket = new AdmissionTicket(control, 1);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AdmissionControl.TICKET_ATTRIBUTE, ticket);
+        control.chargeDecoded(request, decodedFile);
+        Assertions.assertEquals(control.cost(gzip.length * 10L, false), ticket.getCost());
+
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, control.admit(100 - ticket.getCost()));
+        MockHttpServletRequest secondRequest = new MockHttpServletRequest();
+        secondRequest.setAttribute(AdmissionControl.TICKET_ATTRIBUTE, new AdmissionTicket(control, 0));
+        Assertions.assertThrows(AdmissionRejectedException.class, () -> control.chargeDecoded(secondRequest, decodedFile));
+        control.release(100 - ticket.getCost());
+        ticket.release();
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, control.admit(100));
+    }
+
+    @Test
+    void admission() throws InterruptedException {
+        AdmissionProperties admissionProperties = new AdmissionProperties();
+        admissionProperties.setMemoryBudget(DataSize.ofKilobytes(100));
+        admissionProperties.setMaxQueued(1);
+        admissionProperties.setMaxWait(Duration.ofMillis(20));
+        AdmissionControl control = new AdmissionControl(admissionProperties, conversionMetrics(), converterMessageCatalog);
+        Assertions.assertEquals(40, control.cost(10 * 1024, false));
+        Assertions.assertEquals(100, control.cost(-1, false));
+        Assertions.assertEquals(100, control.cost(DataSize.ofMegabytes(100).toBytes(), true));
+
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, control.admit(80));
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, control.admit(20));
+        Assertions.assertEquals(AdmissionControl.Admission.TIMED_OUT, control.admit(1));
+        admissionProperties.setMaxQueued(0);
+        Assertions.assertEquals(AdmissionControl.Admission.QUEUE_FULL, control.admit(1));
+        control.release(20);
+        Assertions.assertEquals(AdmissionControl.Admission.ADMITTED, control.admit(1));
+    }
+
+    private static ConversionMetrics conversionMetrics() {
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setLogStopWatch(false);
+        return new ConversionMetrics(new SimpleMeterRegistry(), metricsProperties);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(content);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static MockMultipartFile sample() throws IOException {
+        return new MockMultipartFile("file", "sampleCSV1.csv", MediaType.TEXT_PLAIN_VALUE, new ClassPathResource("sampleCSV1.csv").getInputStream());
+    }
+
+}
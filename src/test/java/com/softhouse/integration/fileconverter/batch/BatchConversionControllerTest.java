@@ -0,0 +1,111 @@
+package com.softhouse.integration.fileconverter.batch;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest(properties = {"converter.batch.max-files=5", "converter.batch.max-expanded-size=1KB"})
+class BatchConversionControllerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Test
+    void convertBatch() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("file", "sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        MockMultipartFile archive = new MockMultipartFile("files", "registers.zip", "application/zip", zip("sampleCSV1.csv", "sampleCSVErr1.csv"));
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertBatch")
+                        .file(sample("files", "sampleCSV1.csv")).file(sample("files", "sampleCSVErr3.csv")).file(archive)
+                        .file(new MockMultipartFile("files", "broken.zip", "application/zip", "no zip".getBytes())))
+                .andExpect(request().asyncStarted()).andReturn();
+        byte[] content = mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isCreated()).andReturn().getResponse().getContentAsByteArray();
+        Map<String, String> entries = unzip(content);
+
+        Assertions.assertEquals(List.of("sampleCSV1.xml", "sampleCSV1-1.xml", "errors.csv"), List.copyOf(entries.keySet()));
+        Assertions.assertEquals(xml, entries.get("sampleCSV1.xml"));
+        Assertions.assertEquals(xml, entries.get("sampleCSV1-1.xml"));
+        List<String> errors = entries.get("errors.csv").lines().toList();
+        Assertions.assertEquals("File Name|Line Number|Field Name|Field Value|Error", errors.get(0));
+        Assertions.assertEquals("broken.zip|0|||Archive broken.zip can not be read or has no files.", errors.get(1));
+        Assertions.assertEquals("sampleCSVErr1.csv|0|||File should begin with 'P'", errors.get(2));
+        Assertions.assertTrue(errors.get(3).startsWith("sampleCSVErr3.csv|1|"));
+        Assertions.assertEquals(9, errors.size());
+    }
+
+    @Test
+    void expandWithinBatchBudget() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertBatch")
+                        .file(new MockMultipartFile("files", "first.zip", "application/zip", zip("sampleCSV1.csv", "sampleCSVErr1.csv")))
+                        .file(new MockMultipartFile("files", "second.zip", "application/zip", zip("sampleCSV1.csv", "sampleCSVErr1.csv"))))
+                .andExpect(request().asyncStarted()).andReturn();
+        Map<String, String> entries = unzip(mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isCreated()).andReturn().getResponse().getContentAsByteArray());
+
+        Assertions.assertEquals(List.of("sampleCSV1.xml", "errors.csv"), List.copyOf(entries.keySet()));
+        Assertions.assertEquals(List.of(
+                "File Name|Line Number|Field Name|Field Value|Error",
+                "sampleCSVErr1.csv|0|||File should begin with 'P'",
+                "second.zip|0|||Archive second.zip does not fit in the 1024B the archives of a batch may expand to."), entries.get("errors.csv").lines().toList());
+    }
+
+    @Test
+    void rejectTooManyFiles() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertBatch")
+                        .file(sample("files", "sampleCSV1.csv")).file(sample("files", "sampleCSVErr1.csv")).file(sample("files", "sampleCSVErr3.csv"))
+                        .file(new MockMultipartFile("files", "registers.zip", "application/zip", zip("sampleCSV.csv", "sampleCSVErr2.csv", "sampleCSVErr3.csv"))))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("A batch can have at most 5 files."));
+    }
+
+    private byte[] zip(String... fileNames) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream)) {
+            zipOutputStream.putNextEntry(new ZipEntry("registers/"));
+            for (String fileName : fileNames) {
+                zipOutputStream.putNextEntry(new ZipEntry("registers/" + fileName));
+                zipOutputStream.write(new ClassPathResource(fileName).getInputStream().readAllBytes());
+            }
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private Map<String, String> unzip(byte[] content) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(content))) {
+            for (ZipEntry zipEntry = zipInputStream.getNextEntry(); zipEntry != null; zipEntry = zipInputStream.getNextEntry())
+                entries.put(zipEntry.getName(), new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        return entries;
+    }
+
+    private MockMultipartFile sample(String name, String fileName) throws IOException {
+        return new MockMultipartFile(name, fileName, MediaType.TEXT_PLAIN_VALUE, new ClassPathResource(fileName).getInputStream());
+    }
+}
@@ -0,0 +1,159 @@
+package com.softhouse.integration.fileconverter.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import com.softhouse.integration.fileconverter.filewriter.ErrorReportProperties;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.metrics.MetricsProperties;
+import com.softhouse.integration.fileconverter.record.RecordListener;
+import com.softhouse.integration.fileconverter.record.RecordSink;
+import com.softhouse.integration.fileconverter.rules.ValidationRules;
+import com.softhouse.integration.fileconverter.rules.ValidationRulesProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+class ConversionResultCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setHeapSize(DataSize.ofBytes(30));
+        ConversionResultCache cache = cache(properties);
+        ResultCacheKey first = key(cache, "first");
+        ResultCacheKey second = key(cache, "second");
+        ResultCacheKey third = key(cache, "third");
+        cache.putXml(first, "<people>1</people>");
+        cache.putXml(second, "<people/>");
+        Assertions.assertTrue(cache.get(first).isPresent());
+        cache.putXml(third, "<people/>");
+
+        Assertions.assertTrue(cache.get(first).isPresent());
+        Assertions.assertTrue(cache.get(second).isEmpty());
+        Assertions.assertEquals("<people/>", new String(cache.get(third).orElseThrow().content()));
+        Assertions.assertEquals(1, meterRegistry.counter("converter.cache.evictions", "tier", "heap").count());
+        Assertions.assertEquals(1, meterRegistry.counter("converter.cache.gets", "result", "miss", "tier", "none").count());
+    }
+
+    @Test
+    void keepLargeResultsOnDisk(@TempDir Path directory) throws IOException {
+        ResultCacheProperties properties = diskProperties(directory);
+        properties.setMaxHeapEntrySize(DataSize.ofBytes(8));
+        ConversionResultCache cache = cache(properties);
+        ResultCacheKey key = key(cache, "large");
+        try (CacheEntryOutputStream outputStream = cache.xmlOutputStream(key)) {
+            outputStream.write("<people/>".getBytes());
+            outputStream.commit();
+        }
+
+        CachedResult cachedResult = cache.get(key).orElseThrow();
+        Assertions.assertTrue(cachedResult.isOnDisk());
+        Assertions.assertEquals("<people/>", Files.readString(cachedResult.file()));
+        Assertions.assertEquals(1, countFiles(directory));
+        Assertions.assertEquals(1, meterRegistry.counter("converter.cache.gets", "result", "hit", "tier", "disk").count());
+
+        ConversionResultCache restarted = cache(properties);
+        Assertions.assertEquals(cachedResult.file(), restarted.get(key).orElseThrow().file());
+    }
+
+    @Test
+    void keepResultsOfOtherRulesApart(@TempDir Path directory) {
+        ResultCacheProperties properties = diskProperties(directory);
+        ConversionResultCache cache = cache(properties);
+        cache.putXml(key(cache, "people"), "<people/>");
+
+        ValidationRulesProperties changedRules = new ValidationRulesProperties();
+        ValidationRulesProperties.RecordRuleProperties recordRule = new ValidationRulesProperties.RecordRuleProperties();
+        recordRule.setFieldCount(3);
+        changedRules.getRuleSets().put(ValidationRulesProperties.DEFAULT_RULES, Map.of(CSVType.P, recordRule));
+        ConversionResultCache restarted = cache(properties, new ValidationRules(changedRules));
+        Assertions.assertNotEquals(key(cache, "people"), key(restarted, "people"));
+        Assertions.assertTrue(restarted.get(key(restarted, "people")).isEmpty());
+        Assertions.assertTrue(cache(properties).get(key(cache, "people")).isPresent());
+    }
+
+    @Test
+    void dropResultsTooLargeToCache(@TempDir Path directory) throws IOException {
+        ResultCacheProperties properties = diskProperties(directory);
+        properties.setMaxHeapEntrySize(DataSize.ofBytes(4));
+        properties.setMaxDiskEntrySize(DataSize.ofBytes(8));
+        ConversionResultCache cache = cache(properties);
+        ResultCacheKey key = key(cache, "too large");
+        try (CacheEntryOutputStream outputStream = cache.xmlOutputStream(key)) {
+            outputStream.write("<people>".getBytes());
+            outputStream.write("</people>".getBytes());
+            outputStream.commit();
+        }
+
+        Assertions.assertTrue(cache.get(key).isEmpty());
+        Assertions.assertEquals(0, countFiles(directory));
+    }
+
+    @Test
+    void deleteEvictedFilesAfterDelay(@TempDir Path directory) throws IOException {
+        ResultCacheProperties properties = diskProperties(directory);
+        properties.setDiskSize(DataSize.ofBytes(10));
+        properties.setDeleteDelay(Duration.ZERO);
+        ConversionResultCache cache = cache(properties);
+        cache.putXml(key(cache, "first"), "<people/>");
+        cache.putXml(key(cache, "second"), "<people/>");
+        Assertions.assertEquals(2, countFiles(directory));
+
+        cache.deleteEvictedFiles();
+        Assertions.assertEquals(1, countFiles(directory));
+        Assertions.assertEquals(1, meterRegistry.counter("converter.cache.evictions", "tier", "disk").count());
+    }
+
+    @Test
+    void skipWhileRecordSinksAreRegistered() {
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setLogStopWatch(false);
+        RecordSink recordSink = fileName -> RecordListener.NONE;
+        ConversionResultCache cache = new ConversionResultCache(new ResultCacheProperties(), new ErrorReportProperties(), new ConversionMetrics(meterRegistry, metricsProperties),
+                new ValidationRules(new ValidationRulesProperties()), List.of(recordSink));
+        Assertions.assertNull(key(cache, "P|Carl|Gustaf\n"));
+    }
+
+    private ConversionResultCache cache(ResultCacheProperties properties) {
+        return cache(properties, new ValidationRules(new ValidationRulesProperties()));
+    }
+
+    private ConversionResultCache cache(ResultCacheProperties properties, ValidationRules validationRules) {
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setLogStopWatch(false);
+        return new ConversionResultCache(properties, new ErrorReportProperties(), new ConversionMetrics(meterRegistry, metricsProperties), validationRules, List.of());
+    }
+
+    private ResultCacheProperties diskProperties(Path directory) {
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setDiskEnabled(true);
+        properties.setDirectory(directory);
+        return properties;
+    }
+
+    private ResultCacheKey key(ConversionResultCache cache, String content) {
+        return cache.key(new MockMultipartFile("file", "sample.csv", MediaType.TEXT_PLAIN_VALUE, content.getBytes()), new ConversionOptions());
+    }
+
+    private long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+}
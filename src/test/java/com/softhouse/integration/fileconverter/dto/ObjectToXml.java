@@ -13,6 +13,13 @@ public enum ObjectToXml {
 
     INSTANCE;
 
+    /**
+     * Creating the context reflects over the whole People graph, so it is done once. A Marshaller is not thread safe,
+     * each thread keeps its own, configured once.
+     */
+    private volatile JAXBContext jaxbContext;
+    private final ThreadLocal<Marshaller> marshallers = new ThreadLocal<>();
+
     public Person prepareData(DataEntry dataEntry) {
         Person person = new Person();
         person.setFirstname(dataEntry.getFirstName());
@@ -41,12 +48,39 @@ public enum ObjectToXml {
     }
 
     public String convertToXML(People people) throws JAXBException {
-        Marshaller marshallerObj = JAXBContext.newInstance(People.class).createMarshaller();
-        marshallerObj.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshallerObj.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        return convertToXML(people, false);
+    }
+
+    /**
+     * @param compact without indentation and line breaks
+     */
+    public String convertToXML(People people, boolean compact) throws JAXBException {
         StringWriter sw = new StringWriter();
-        marshallerObj.marshal(people, sw);
+        getMarshaller(compact).marshal(people, sw);
         return sw.toString();
     }
 
+    private Marshaller getMarshaller(boolean compact) throws JAXBException {
+        Marshaller marshallerObj = marshallers.get();
+        if (marshallerObj == null) {
+            marshallerObj = getJaxbContext().createMarshaller();
+            marshallerObj.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            marshallers.set(marshallerObj);
+        }
+        marshallerObj.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, !compact);
+        return marshallerObj;
+    }
+
+    private JAXBContext getJaxbContext() throws JAXBException {
+        JAXBContext context = jaxbContext;
+        if (context == null) {
+            synchronized (this) {
+                context = jaxbContext;
+                if (context == null)
+                    jaxbContext = context = JAXBContext.newInstance(People.class);
+            }
+        }
+        return context;
+    }
+
 }
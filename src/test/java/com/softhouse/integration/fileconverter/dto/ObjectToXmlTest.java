@@ -1,9 +1,11 @@
 package com.softhouse.integration.fileconverter.dto;
 
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -68,6 +70,66 @@ class ObjectToXmlTest {
         Assertions.assertEquals("<people>", xml.substring(0, 8));
     }
 
+    @Test
+    void peopleXmlWriterPersonRecord() throws JAXBException, XMLStreamException {
+        String xml = writePersonRecords(false);
+
+        Assertions.assertEquals(ObjectToXml.INSTANCE.convertToXML(new People(persons())), xml);
+    }
+
+    @Test
+    void peopleXmlWriterPersonRecordCompact() throws JAXBException, XMLStreamException {
+        String xml = writePersonRecords(true);
+
+        Assertions.assertEquals(ObjectToXml.INSTANCE.convertToXML(new People(persons()), true), xml);
+        Assertions.assertFalse(xml.contains("\n"), xml);
+        Assertions.assertEquals(ObjectToXml.INSTANCE.convertToXML(new People(persons())).replaceAll("\n *", ""), xml);
+    }
+
+    /**
+     * The persons of {@link #writePersonRecords(boolean)} as the JAXB mapping has them.
+     */
+    private List<Person> persons() {
+        DataEntry second = new DataEntry();
+        second.setFirstName("A & <b>");
+        return List.of(ObjectToXml.INSTANCE.prepareData(getDataEntry()), ObjectToXml.INSTANCE.prepareData(second), ObjectToXml.INSTANCE.prepareData(new DataEntry()));
+    }
+
+    private String writePersonRecords(boolean compact) throws XMLStreamException {
+        PersonRecord personRecord = new PersonRecord();
+        set(personRecord, PersonRecord.Field.FIRST_NAME, "Carl");
+        set(personRecord, PersonRecord.Field.LAST_NAME, "Gustaf");
+        set(personRecord, PersonRecord.Field.STREET, "Wernskoldsgatan");
+        set(personRecord, PersonRecord.Field.TOWN, "Kalmar");
+        set(personRecord, PersonRecord.Field.POSTAL_CODE, "39249");
+        set(personRecord, PersonRecord.Field.MOBILE, "0768-101802");
+        set(personRecord, PersonRecord.Field.LAND_PHONE, "08-101802");
+        personRecord.startFamily();
+        set(personRecord, PersonRecord.Field.NAME, "Carl");
+        set(personRecord, PersonRecord.Field.BORN, "Vaxjo");
+        personRecord.setFamilyPhone();
+        set(personRecord, PersonRecord.Field.LAND_PHONE, "08-101803");
+        set(personRecord, PersonRecord.Field.MOBILE, "0768-101801");
+        personRecord.setFamilyAddress();
+        set(personRecord, PersonRecord.Field.STREET, "Serafimervagen");
+        set(personRecord, PersonRecord.Field.POSTAL_CODE, "35257");
+        StringWriter recordWriter = new StringWriter();
+        PeopleXmlWriter recordXmlWriter = new PeopleXmlWriter(recordWriter, false, compact);
+        recordXmlWriter.writePerson(personRecord);
+        personRecord.clear();
+        set(personRecord, PersonRecord.Field.FIRST_NAME, "A & <b>");
+        recordXmlWriter.writePerson(personRecord);
+        personRecord.clear();
+        recordXmlWriter.writePerson(personRecord);
+        recordXmlWriter.writeEndPeople();
+        return recordWriter.toString();
+    }
+
+    private void set(PersonRecord personRecord, PersonRecord.Field field, String value) {
+        char[] buffer = ("," + value + ",").toCharArray();
+        personRecord.set(field, buffer, 1, value.length());
+    }
+
     private Person getPerson() {
         Family family = new Family();
         family.setName("Carl");
@@ -0,0 +1,50 @@
+package com.softhouse.integration.fileconverter.filewriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import com.softhouse.integration.fileconverter.exception.CSVLineErrorDTO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CSVErrorReportTest {
+
+    @Test
+    void spoolRows(@TempDir Path directory) throws IOException {
+        CSVErrorReport memoryReport = report(directory, Long.MAX_VALUE);
+        Assertions.assertEquals(0, countFiles(directory));
+        CSVErrorReport spooledReport = report(directory, 64);
+        Assertions.assertEquals(1, countFiles(directory));
+        Assertions.assertArrayEquals(memoryReport.toByteArray(), spooledReport.toByteArray());
+
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        spooledReport.writeTo(rows, false);
+        Assertions.assertEquals(100, rows.toString(StandardCharsets.UTF_8).lines().count());
+        try (InputStream inputStream = spooledReport.getInputStream()) {
+            Assertions.assertArrayEquals(memoryReport.toByteArray(), inputStream.readAllBytes());
+        }
+        Assertions.assertEquals(0, countFiles(directory));
+        spooledReport.close();
+    }
+
+    private CSVErrorReport report(Path directory, long spoolThreshold) {
+        CSVErrorReport errorReport = new CSVErrorReport("sample.csv", 1000, directory, spoolThreshold, null);
+        for (int i = 1; i <= 100; i++)
+            errorReport.add(CSVLineErrorDTO.builder().fileName("sample.csv").lineNo(i).fieldName("year").fieldValue("19791").errorDescription("Field Should have 4 digits.").build());
+        errorReport.finish();
+        return errorReport;
+    }
+
+    private long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.softhouse.integration.fileconverter.job;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest(properties = "converter.large-file.max-decoded-size=1MB")
+class ConversionJobControllerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Test
+    void convertJob() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(sample("sampleCSV1.csv")))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        String id = submit(mockMvc, "sampleCSV1.csv");
+        waitUntilFinished(mockMvc, id);
+        mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", id)).andExpect(jsonPath("$.status").value("COMPLETED"));
+        String result = mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}/result", id))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        Assertions.assertEquals(xml, result);
+    }
+
+    @Test
+    void convertJobInvalid() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String id = submit(mockMvc, "sampleCSVErr3.csv");
+        waitUntilFinished(mockMvc, id);
+        mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", id)).andExpect(jsonPath("$.status").value("INVALID"));
+        String errors = mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}/result", id))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Assertions.assertTrue(errors.startsWith("File Name|Line Number"));
+
+        id = submit(mockMvc, "sampleCSVErr1.csv");
+        waitUntilFinished(mockMvc, id);
+        mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", id)).andExpect(jsonPath("$.generalErrors[0]").value("File should begin with 'P'"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}/result", id)).andExpect(status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", "unknown")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void convertJobCompressedTooLarge() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(new byte[2 * 1024 * 1024]);
+        }
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertJobs").file(new MockMultipartFile("file", "zeros.csv.gz", MediaType.APPLICATION_OCTET_STREAM_VALUE, byteArrayOutputStream.toByteArray())))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("File zeros.csv is larger than 1048576B when decompressed."));
+    }
+
+    private String submit(MockMvc mockMvc, String fileName) throws Exception {
+        String job = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertJobs").file(sample(fileName)))
+                .andExpect(status().isAccepted()).andExpect(header().exists("Location")).andReturn().getResponse().getContentAsString();
+        return JsonPath.read(job, "$.id");
+    }
+
+    private void waitUntilFinished(MockMvc mockMvc, String id) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            String job = mockMvc.perform(MockMvcRequestBuilders.get("/convertJobs/{id}", id)).andReturn().getResponse().getContentAsString();
+            if (ConversionJobStatus.valueOf(JsonPath.read(job, "$.status")).isFinished())
+                return;
+            Thread.sleep(100);
+        }
+        Assertions.fail("job " + id + " did not finish");
+    }
+
+    private MockMultipartFile sample(String fileName) throws IOException {
+        return new MockMultipartFile("file", fileName, MediaType.TEXT_PLAIN_VALUE, new ClassPathResource(fileName).getInputStream());
+    }
+}
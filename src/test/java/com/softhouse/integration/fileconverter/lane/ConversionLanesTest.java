@@ -0,0 +1,148 @@
+package com.softhouse.integration.fileconverter.lane;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.softhouse.integration.fileconverter.exception.ConversionLaneRejectedException;
+import com.softhouse.integration.fileconverter.message.ConverterMessageCatalog;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import com.softhouse.integration.fileconverter.metrics.MetricsProperties;
+import com.softhouse.integration.util.DecodedMultipartFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@SpringBootTest(properties = "converter.cache.enabled=false")
+class ConversionLanesTest {
+
+    @Autowired
+    private ConverterMessageCatalog converterMessageCatalog;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LaneProperties laneProperties;
+    private ConversionLanes conversionLanes;
+
+    @BeforeEach
+    void setUp() {
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setLogStopWatch(false);
+        meterRegistry = new SimpleMeterRegistry();
+        laneProperties = new LaneProperties();
+        laneProperties.setThreshold(DataSize.ofKilobytes(1));
+        laneProperties.setThroughput(new LaneProperties.Lane(1, 0));
+        conversionLanes = new ConversionLanes(laneProperties, converterMessageCatalog, new ConversionMetrics(meterRegistry, metricsProperties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        conversionLanes.shutdown();
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    void laneBySize() throws IOException {
+        Assertions.assertEquals(ConversionLanes.FAST, conversionLanes.lane(0));
+        Assertions.assertEquals(ConversionLanes.FAST, conversionLanes.lane(1024));
+        Assertions.assertEquals(ConversionLanes.THROUGHPUT, conversionLanes.lane(1025));
+        Assertions.assertEquals(ConversionLanes.THROUGHPUT, conversionLanes.lane(-1));
+
+        LocaleContextHolder.setLocale(new Locale("sv"));
+        Assertions.assertEquals("fast-lane-sv", conversionLanes.run(100, () -> Thread.currentThread().getName().replaceAll("\\d+$", "") + LocaleContextHolder.getLocale()));
+        Assertions.assertTrue(conversionLanes.run(-1, () -> Thread.currentThread().getName()).startsWith("throughput-lane-"));
+
+        Assertions.assertEquals(1, meterRegistry.get("converter.lane.wait").tag("lane", ConversionLanes.FAST).timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("converter.lane.service").tag("lane", ConversionLanes.THROUGHPUT).timer().count());
+    }
+
+    @Test
+    void laneByPlainSize() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(new byte[64 * 1024]);
+        }
+        MockMultipartFile gzip = new MockMultipartFile("file", "zeros.csv.gz", MediaType.APPLICATION_OCTET_STREAM_VALUE, byteArrayOutputStream.toByteArray());
+        Assertions.assertEquals(ConversionLanes.FAST, conversionLanes.lane(conversionLanes.laneSize(gzip)));
+        Assertions.assertEquals(ConversionLanes.THROUGHPUT, conversionLanes.lane(conversionLanes.laneSize(DecodedMultipartFile.of(gzip, Long.MAX_VALUE))));
+    }
+
+    @Test
+    void holdLaneUntilWritten() throws Exception {
+        StreamingResponseBody body = conversionLanes.runStreaming(-1, () -> outputStream -> outputStream.write('x'));
+        Assertions.assertThrows(ConversionLaneRejectedException.class, () -> conversionLanes.run(-1, () -> "xml"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        Assertions.assertEquals("x", outputStream.toString());
+        for (int i = 0; i < 100; i++) {
+            try {
+                Assertions.assertEquals("xml", conversionLanes.run(-1, () -> "xml"));
+                return;
+            } catch (ConversionLaneRejectedException e) {
+                Thread.sleep(10);
+            }
+        }
+        Assertions.fail("lane not freed");
+    }
+
+    @Test
+    void disabled() throws IOException {
+        laneProperties.setEnabled(false);
+        Thread caller = Thread.currentThread();
+        Assertions.assertSame(caller, conversionLanes.run(100, Thread::currentThread));
+    }
+
+    @Test
+    void exceptions() {
+        Assertions.assertThrows(IOException.class, () -> conversionLanes.run(100, () -> {
+            throw new IOException("unreadable");
+        }));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> conversionLanes.run(100, () -> {
+            throw new IllegalArgumentException("invalid");
+        }));
+    }
+
+    @Test
+    void rejectWhenFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread large = new Thread(() -> {
+            try {
+                conversionLanes.run(-1, () -> {
+                    running.countDown();
+                    try {
+                        return release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        large.start();
+        Assertions.assertTrue(running.await(5, TimeUnit.SECONDS));
+        try {
+            ConversionLaneRejectedException e = Assertions.assertThrows(ConversionLaneRejectedException.class, () -> conversionLanes.run(-1, () -> "xml"));
+            Assertions.assertEquals(5, e.getRetryAfterSeconds());
+            Assertions.assertEquals(ConversionLanes.THROUGHPUT, e.getLane());
+            Assertions.assertEquals("xml", conversionLanes.run(100, () -> "xml"));
+        } finally {
+            release.countDown();
+            large.join();
+        }
+        Assertions.assertEquals(1, meterRegistry.get("converter.lane.rejected").tag("lane", ConversionLanes.THROUGHPUT).counter().count());
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CSVChunkSplitterTest {
+
+    private static final String[] LINES = {"P|a|b", " P|c|d", "T|1|2", "A|x|y|z", "F|e|1977", "", " ", "X|P|", "P"};
+    private static final String[] SEPARATORS = {"\n", "\r", "\r\n"};
+
+    @Test
+    void splitAtPRecords() {
+        Random random = new Random(42);
+        for (int n = 0; n < 500; n++) {
+            StringBuilder sb = new StringBuilder();
+            int lines = random.nextInt(30);
+            for (int i = 0; i < lines; i++)
+                sb.append(LINES[random.nextInt(LINES.length)]).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            String text = sb.toString();
+            List<ByteBuffer> chunks = CSVChunkSplitter.split(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), 1 + random.nextInt(20), 'P', '|');
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < chunks.size(); i++) {
+                String chunk = StandardCharsets.UTF_8.decode(chunks.get(i)).toString();
+                Assertions.assertFalse(chunk.isEmpty(), text);
+                if (i > 0) {
+                    Assertions.assertTrue(chunk.strip().startsWith("P|"), chunk);
+                    Assertions.assertFalse(chunk.startsWith("\n") && joined.charAt(joined.length() - 1) == '\r', text);
+                    char previous = joined.charAt(joined.length() - 1);
+                    Assertions.assertTrue(previous == '\n' || previous == '\r', text);
+                }
+                joined.append(chunk);
+            }
+            Assertions.assertEquals(text, joined.toString());
+        }
+    }
+
+}
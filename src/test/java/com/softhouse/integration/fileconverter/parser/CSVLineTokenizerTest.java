@@ -0,0 +1,58 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CSVLineTokenizerTest {
+
+    private static final char[] ALPHABET = {'P', 'T', 'a', '1', ' ', '\t', '|', '|', '-', '\r', '\n'};
+
+    @Test
+    void tokenizeLikeSplit() {
+        CSVLineTokenizer tokenizer = new CSVLineTokenizer('|');
+        for (String line : List.of("P|Carl Gustaf             |Bernadotte", "A|street||", "|A|b", "P", "P|", "  T|1|2  ", "a||b|||")) {
+            Assertions.assertTrue(tokenizer.tokenize(line));
+            String[] columns = line.trim().split(Pattern.quote("|"));
+            Assertions.assertEquals(Arrays.toString(columns), tokenizer.fieldsToString(), line);
+            Assertions.assertEquals(columns.length, tokenizer.fieldCount(), line);
+            for (int i = 0; i < columns.length; i++) {
+                Assertions.assertEquals(columns[i], tokenizer.field(i));
+                Assertions.assertTrue(tokenizer.fieldEquals(i, columns[i]));
+            }
+        }
+        Assertions.assertFalse(tokenizer.tokenize(" \t "));
+        Assertions.assertTrue(tokenizer.tokenize("||"));
+        Assertions.assertEquals(0, tokenizer.fieldCount());
+    }
+
+    @Test
+    void readLikeBufferedReader() throws IOException {
+        Random random = new Random(42);
+        CSVLineTokenizer tokenizer = new CSVLineTokenizer('|');
+        for (int n = 0; n < 500; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(200);
+            for (int i = 0; i < length; i++)
+                sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            String text = sb.toString();
+            List<String> expected = new BufferedReader(new StringReader(text)).lines().filter(line -> !line.trim().isEmpty()).map(line -> Arrays.toString(line.trim().split(Pattern.quote("|")))).toList();
+            List<String> actual = new ArrayList<>();
+            CSVLineReader lineReader = new CSVLineReader(new StringReader(text), 4);
+            while (lineReader.readLine()) {
+                if (tokenizer.tokenize(lineReader.buffer(), lineReader.lineStart(), lineReader.lineEnd()))
+                    actual.add(tokenizer.fieldsToString());
+            }
+            Assertions.assertEquals(expected, actual, text);
+        }
+    }
+
+}
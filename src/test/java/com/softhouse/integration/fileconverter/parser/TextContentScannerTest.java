@@ -0,0 +1,58 @@
+package com.softhouse.integration.fileconverter.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TextContentScannerTest {
+
+    private static final byte[][] PIECES = {"P|Carl|Gustaf\n".getBytes(StandardCharsets.UTF_8), "åäö".getBytes(StandardCharsets.UTF_8),
+            "😀".getBytes(StandardCharsets.UTF_8), {0}, {(byte) 0xC3}, {(byte) 0xA5}, {(byte) 0xED, (byte) 0xA0, (byte) 0x80}, {(byte) 0xC0, (byte) 0xAF}, {(byte) 0xF4, (byte) 0x90}};
+
+    @Test
+    void scanLikeDecoder() {
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            int pieces = random.nextInt(20);
+            for (int i = 0; i < pieces; i++)
+                buffer.put(random.nextInt(4) == 0 ? PIECES[random.nextInt(PIECES.length)] : PIECES[random.nextInt(3)]);
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip().get(bytes);
+            boolean expected = isWellFormed(bytes);
+            TextContentScanner textContentScanner = new TextContentScanner(true);
+            int split = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            boolean actual = textContentScanner.scan(bytes, 0, split) == -1 && textContentScanner.scan(bytes, split, bytes.length - split) == -1 && textContentScanner.isComplete();
+            Assertions.assertEquals(expected, actual, new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Test
+    void scanLatin1() {
+        byte[] bytes = "P|Åsa|Öberg\n".getBytes(StandardCharsets.ISO_8859_1);
+        Assertions.assertEquals(-1, new TextContentScanner(false).scan(bytes, 0, bytes.length));
+        Assertions.assertEquals(3, new TextContentScanner(true).scan(bytes, 0, bytes.length));
+        Assertions.assertEquals(8, new TextContentScanner(false).scan(new byte[]{'P', '|', 'a', 'b', 'c', 'd', 'e', 'f', 0}, 0, 9));
+        Assertions.assertTrue(TextContentScanner.isPlainText("P|Carl|Gustaf\r\n".getBytes(StandardCharsets.UTF_8), 15));
+        Assertions.assertFalse(TextContentScanner.isPlainText(new byte[]{'P', 1}, 2));
+    }
+
+    private boolean isWellFormed(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b == 0)
+                return false;
+        }
+        try {
+            StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(bytes));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.softhouse.integration.fileconverter.record;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.softhouse.integration.fileconverter.ConversionOptions;
+import com.softhouse.integration.fileconverter.FileConverterService;
+import com.softhouse.integration.fileconverter.FileValidatorService;
+import com.softhouse.integration.fileconverter.exception.CSVException;
+import com.softhouse.integration.fileconverter.message.ConverterMessages;
+import com.softhouse.integration.fileconverter.parser.CSVLineTokenizer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+
+@SpringBootTest(properties = {"converter.cache.enabled=false", "converter.records.json-enabled=true", "converter.records.statistics-enabled=true",
+        "converter.parallel.threshold=1B"})
+class RecordSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private RecordSinkProperties recordSinkProperties;
+
+    @Autowired
+    private FileValidatorService fileValidatorService;
+
+    @Autowired
+    private FileConverterService fileConverterService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        recordSinkProperties.setJsonDirectory(directory);
+    }
+
+    @Test
+    void writeJsonCopy() throws IOException {
+        MockMultipartFile file = file("P|Carl Gustaf|Bernadotte\nT|0768-101801|08101801\nF|Victoria|1977\nA|Haga Slott|Stockholm|10002\nP|Barack|Obama\n");
+        Assertions.assertFalse(fileValidatorService.isParallel(file));
+        String xml = fileConverterService.convertFile(file, new ConversionOptions());
+
+        List<Path> files = jsonFiles();
+        Assertions.assertEquals(1, files.size());
+        Assertions.assertTrue(files.get(0).getFileName().toString().startsWith("people-"));
+        JsonNode people = objectMapper.readTree(files.get(0).toFile());
+        Assertions.assertEquals(2, people.size());
+        Assertions.assertEquals(xml.split("<person>").length - 1, people.size());
+        Assertions.assertEquals("Carl Gustaf", people.get(0).get("firstname").asText());
+        Assertions.assertEquals("0768-101801", people.get(0).get("phone").get("mobile").asText());
+        Assertions.assertEquals("Stockholm", people.get(0).get("family").get(0).get("address").get("town").asText());
+        Assertions.assertEquals("Obama", people.get(1).get("lastname").asText());
+    }
+
+    @Test
+    void skipJsonCopyOfInvalidFile() throws IOException {
+        MockMultipartFile file = file("P|Carl Gustaf|Bernadotte\nT|768-101801|08101801\n");
+        Assertions.assertThrows(CSVException.class, () -> fileConverterService.convertFile(file, new ConversionOptions()));
+
+        Assertions.assertEquals(List.of(), jsonFiles());
+    }
+
+    @Test
+    void recordEvents() {
+        MockMultipartFile file = file("P|Carl Gustaf|Bernadotte\n\nT|0768-101801|08101801\nF|Victoria|1977\nA|Haga Slott|Stockholm|10002\nF|V|1977\nT|768|08101801\n");
+        List<String> events = new ArrayList<>();
+        RecordListener recordListener = new RecordListener() {
+            @Override
+            public void onPerson(int lineNo, CSVLineTokenizer columns) {
+                events.add("P" + lineNo);
+            }
+
+            @Override
+            public void onPhone(int lineNo, CSVLineTokenizer columns) {
+                events.add("T" + lineNo);
+            }
+
+            @Override
+            public void onAddress(int lineNo, CSVLineTokenizer columns) {
+                events.add("A" + lineNo);
+            }
+
+            @Override
+            public void onFamily(int lineNo, CSVLineTokenizer columns) {
+                events.add("F" + lineNo);
+            }
+
+            @Override
+            public void onError(int lineNo, String code) {
+                events.add(code + "@" + lineNo);
+            }
+
+            @Override
+            public void onEnd(boolean valid) {
+                events.add("end " + valid);
+            }
+        };
+        CSVException csvException = Assertions.assertThrows(CSVException.class, () -> fileValidatorService.validateFile(file, new ConversionOptions(), recordListener));
+        csvException.getErrorReport().close();
+
+        Assertions.assertEquals(List.of("P1", "T2", "F3", "A4", ConverterMessages.NAME_LENGTH + "@5", ConverterMessages.PHONE_FORMAT + "@6", "end false"), events);
+    }
+
+    @Test
+    void recordStatistics() {
+        RecordStatisticsSink.RecordStatistics statistics = (RecordStatisticsSink.RecordStatistics) new RecordStatisticsSink().open("people.csv");
+        MockMultipartFile file = file("P|Carl Gustaf|Bernadotte\nF|Victoria|1977\nA|Haga Slott|Stockholm|10002\nF|Carl Philip|1979\nT|0768-101801|08101801\nP|Barack|Obama\nT|0768-101802|08101802\n");
+        fileValidatorService.validateFile(file, new ConversionOptions(), statistics);
+
+        Assertions.assertEquals(2, statistics.getPersons());
+        Assertions.assertEquals(2, statistics.getFamilies());
+        Assertions.assertEquals(2, statistics.getMaxFamilies());
+        Assertions.assertEquals(2, statistics.getPhones());
+        Assertions.assertEquals(1, statistics.getAddresses());
+        Assertions.assertTrue(statistics.getErrors().isEmpty());
+    }
+
+    private MockMultipartFile file(String content) {
+        return new MockMultipartFile("file", "people.csv", MediaType.TEXT_PLAIN_VALUE, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Path> jsonFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import java.util.List;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RecordGrammarTest {
+
+    @Test
+    void defaultGrammar() {
+        RecordGrammar grammar = new RecordGrammar(new ValidationRulesProperties.GrammarProperties());
+        Assertions.assertEquals(RecordGrammar.after(CSVType.P.ordinal()), grammar.next(RecordGrammar.START, CSVType.P.ordinal()));
+        Assertions.assertEquals(RecordGrammar.REJECTED, grammar.next(RecordGrammar.START, CSVType.T.ordinal()));
+        for (CSVType type : CSVType.values()) {
+            Assertions.assertEquals(RecordGrammar.after(type.ordinal()), grammar.next(RecordGrammar.ANY, type.ordinal()));
+            Assertions.assertEquals(RecordGrammar.after(type.ordinal()), grammar.next(RecordGrammar.after(CSVType.T.ordinal()), type.ordinal()));
+            Assertions.assertEquals(RecordGrammar.after(type.ordinal()), grammar.next(RecordGrammar.after(CSVType.A.ordinal()), type.ordinal()));
+        }
+        int afterP = RecordGrammar.after(CSVType.P.ordinal());
+        int afterF = RecordGrammar.after(CSVType.F.ordinal());
+        Assertions.assertEquals(RecordGrammar.REJECTED, grammar.next(afterP, CSVType.P.ordinal()));
+        Assertions.assertEquals(RecordGrammar.after(CSVType.F.ordinal()), grammar.next(afterP, CSVType.F.ordinal()));
+        Assertions.assertEquals(RecordGrammar.REJECTED, grammar.next(afterF, CSVType.F.ordinal()));
+        Assertions.assertEquals(RecordGrammar.REJECTED, grammar.next(afterF, CSVType.P.ordinal()));
+        Assertions.assertEquals(CSVType.F, grammar.previousType(afterF));
+        Assertions.assertEquals(List.of(CSVType.T, CSVType.A), grammar.followers(afterF));
+        Assertions.assertNull(grammar.previousType(RecordGrammar.START));
+    }
+
+    @Test
+    void configuredGrammar() {
+        ValidationRulesProperties.GrammarProperties grammarProperties = new ValidationRulesProperties.GrammarProperties();
+        grammarProperties.setStart(List.of(CSVType.P, CSVType.T));
+        grammarProperties.getFollowers().put(CSVType.T, List.of(CSVType.P));
+        RecordGrammar grammar = new RecordGrammar(grammarProperties);
+        Assertions.assertEquals(RecordGrammar.after(CSVType.T.ordinal()), grammar.next(RecordGrammar.START, CSVType.T.ordinal()));
+        Assertions.assertEquals(RecordGrammar.REJECTED, grammar.next(RecordGrammar.after(CSVType.T.ordinal()), CSVType.T.ordinal()));
+        Assertions.assertEquals(RecordGrammar.REJECTED, grammar.next(RecordGrammar.after(CSVType.P.ordinal()), CSVType.P.ordinal()));
+
+        grammarProperties.setStart(List.of());
+        Assertions.assertThrows(IllegalStateException.class, () -> new RecordGrammar(grammarProperties));
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.softhouse.integration.fileconverter.rules;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.Map;
+
+import com.softhouse.integration.fileconverter.dto.CSVType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * A partner rule set which allows one letter first names and mobiles of digits, spaces and dashes, and does not check F lines.
+ * The grammar only lets another A or a P follow an A.
+ */
+@SpringBootTest(properties = {"converter.cache.enabled=false",
+        "converter.validation.rule-sets.partner.P.field-count=3",
+        "converter.validation.rule-sets.partner.P.fields[0].index=1",
+        "converter.validation.rule-sets.partner.P.fields[0].name=Field.firstName",
+        "converter.validation.rule-sets.partner.P.fields[0].check=LENGTH",
+        "converter.validation.rule-sets.partner.P.fields[0].min-length=1",
+        "converter.validation.rule-sets.partner.P.fields[0].max-length=100",
+        "converter.validation.rule-sets.partner.T.field-count=3",
+        "converter.validation.rule-sets.partner.T.fields[0].index=1",
+        "converter.validation.rule-sets.partner.T.fields[0].name=Field.mobile",
+        "converter.validation.rule-sets.partner.T.fields[0].check=PATTERN",
+        "converter.validation.rule-sets.partner.T.fields[0].pattern=[+]?[0-9 -]{6,20}",
+        "converter.validation.grammar.followers.A=A,P"})
+class ValidationRulesTest {
+
+    private static final String TEXT = """
+            P|C|Bernadotte
+            T|+46 768 101801|08101801
+            P|Barack|Obama
+            F|V|19
+            T|0768-101801|08101801
+            """;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Test
+    void partnerRules() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file(TEXT)))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(List.of(
+                "File Name|Line Number|Field Name|Field Value|Error",
+                "people.csv|1|firstName|C|Field should just have at least 2 and at max 255 characters.",
+                "people.csv|2|mobile|+46 768 101801|Numbers should be like 0768-101801 Or 08-101802",
+                "people.csv|4|name|V|Field should just have at least 2 and at max 255 characters.",
+                "people.csv|4|year|19|Field Should have 4 digits."), errors.lines().toList());
+
+        String xml = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file(TEXT)).param("rules", "partner"))
+                .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(2, xml.split("<person>").length - 1);
+    }
+
+    @Test
+    void partnerRulesErrors() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        String errors = mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file("P||Bernadotte\nT|0768/101801|08101801\nP|Barack\n")).param("rules", "partner"))
+                .andExpect(status().isBadRequest()).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(List.of(
+                "File Name|Line Number|Field Name|Field Value|Error",
+                "people.csv|1|firstName||Field should have at least 1 and at max 100 characters.",
+                "people.csv|2|mobile|0768/101801|Field should match [+]?[0-9 -]{6,20}.",
+                "people.csv|3|P|[P, Barack]|3 fields needed."), errors.lines().toList());
+    }
+
+    @Test
+    void grammar() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file("P|Carl|Bernadotte\nA|Haga Slott|Stockholm|10002\nA|Solliden|Borgholm|38791\nP|Barack|Obama\n")))
+                .andExpect(status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file("P|Carl|Bernadotte\nA|Haga Slott|Stockholm|10002\nT|0768-101801|08101801\n")))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("Line 3: A should follow with [A, P]"));
+    }
+
+    @Test
+    void unknownRules() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/convertFile").file(file(TEXT)).param("rules", "other"))
+                .andExpect(status().isBadRequest()).andExpect(jsonPath("$.generalErrors[0]").value("Validation rules other are not configured."));
+    }
+
+    @Test
+    void invalidRules() {
+        ValidationRulesProperties unknownDefault = new ValidationRulesProperties();
+        unknownDefault.setDefaultRules("partner");
+        Assertions.assertThrows(IllegalStateException.class, () -> new ValidationRules(unknownDefault));
+
+        ValidationRulesProperties.FieldRuleProperties fieldRule = new ValidationRulesProperties.FieldRuleProperties();
+        fieldRule.setIndex(3);
+        fieldRule.setCheck(FieldCheckType.LENGTH);
+        ValidationRulesProperties.RecordRuleProperties recordRule = new ValidationRulesProperties.RecordRuleProperties();
+        recordRule.setFieldCount(3);
+        recordRule.setFields(List.of(fieldRule));
+        ValidationRulesProperties outOfRange = new ValidationRulesProperties();
+        outOfRange.setRuleSets(Map.of("partner", Map.of(CSVType.P, recordRule)));
+        Assertions.assertThrows(IllegalStateException.class, () -> new ValidationRules(outOfRange));
+
+        fieldRule.setIndex(1);
+        fieldRule.setCheck(FieldCheckType.PATTERN);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ValidationRules(outOfRange));
+    }
+
+    private static MockMultipartFile file(String text) {
+        return new MockMultipartFile("file", "people.csv", MediaType.TEXT_PLAIN_VALUE, text.getBytes());
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.softhouse.integration.fileconverter.warmup;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.softhouse.integration.fileconverter.record.RecordSinkProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * The json copies of the records are written to a directory of their own, which the warm-up must leave empty,
+ * and no conversion but the warm-up's runs, so the conversion metrics must be empty.
+ */
+@SpringBootTest(properties = {"converter.cache.enabled=false", "converter.warm-up.iterations=3",
+        "converter.records.json-enabled=true", "converter.records.json-directory=target/warm-up-records"})
+class ConversionWarmUpTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private ConversionWarmUp conversionWarmUp;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private RecordSinkProperties recordSinkProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void readyAfterWarmUp() throws Exception {
+        Assertions.assertEquals(3, conversionWarmUp.getCompletedIterations());
+        Assertions.assertEquals(ReadinessState.ACCEPTING_TRAFFIC, applicationAvailability.getReadinessState());
+        MockMvcBuilders.webAppContextSetup(webApplicationContext).build()
+                .perform(MockMvcRequestBuilders.get("/actuator/health/readiness"))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.status").value("UP"));
+    }
+
+    @Test
+    void noMetricsOfTheWarmUp() {
+        Assertions.assertEquals(0, meterRegistry.find("converter.operation").timers().size());
+        Assertions.assertEquals(0, meterRegistry.find("converter.errors").counters().size());
+        Assertions.assertEquals(0, meterRegistry.get("converter.input").summary().count());
+    }
+
+    @Test
+    void noRecordsOfTheWarmUp() throws IOException {
+        Path jsonDirectory = recordSinkProperties.getJsonDirectory();
+        if (Files.exists(jsonDirectory)) {
+            try (var files = Files.list(jsonDirectory)) {
+                Assertions.assertEquals(0, files.count());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.softhouse.integration.fileconverter.watch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+
+import com.softhouse.integration.fileconverter.FileConverterService;
+import com.softhouse.integration.fileconverter.LargeFileProperties;
+import com.softhouse.integration.fileconverter.metrics.ConversionMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+
+@SpringBootTest(properties = "converter.cache.enabled=false")
+class WatchFolderServiceTest {
+
+    @Autowired
+    private FileConverterService fileConverterService;
+
+    @Autowired
+    private LargeFileProperties largeFileProperties;
+
+    @Autowired
+    private ConversionMetrics conversionMetrics;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void convertDroppedFiles() throws Exception {
+        copy("sampleCSV1.csv", "people.csv");
+        WatchFolderService watchFolderService = start();
+        try {
+            copy("sampleCSVErr1.csv", "invalid.csv");
+            awaitProcessed("people.csv");
+            awaitProcessed("invalid.csv");
+        } finally {
+            watchFolderService.shutdown();
+        }
+        Assertions.assertTrue(Files.readString(directory.resolve("people.xml")).contains("<person>"));
+        Assertions.assertTrue(Files.readString(directory.resolve("invalid.errors.csv")).startsWith("File Name|Line Number|Field Name|Field Value|Error"));
+        Assertions.assertFalse(Files.exists(directory.resolve("people.csv")));
+        try (var files = Files.list(directory)) {
+            Assertions.assertEquals(List.of("invalid.errors.csv", "people.xml", "processed"), files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    @Test
+    void restart() throws Exception {
+        copy("sampleCSV1.csv", "people.csv");
+        WatchFolderService watchFolderService = start();
+        try {
+            awaitProcessed("people.csv");
+        } finally {
+            watchFolderService.shutdown();
+        }
+        Files.delete(directory.resolve("people.xml"));
+
+        watchFolderService = start();
+        try {
+            copy("sampleCSV1.csv", "next.csv");
+            awaitProcessed("next.csv");
+        } finally {
+            watchFolderService.shutdown();
+        }
+        Assertions.assertFalse(Files.exists(directory.resolve("people.xml")));
+        Assertions.assertTrue(Files.exists(directory.resolve("next.xml")));
+    }
+
+    private WatchFolderService start() throws IOException {
+        WatchFolderProperties watchFolderProperties = new WatchFolderProperties();
+        watchFolderProperties.setEnabled(true);
+        watchFolderProperties.setDirectories(List.of(directory));
+        watchFolderProperties.setSettleTime(Duration.ZERO);
+        watchFolderProperties.setPollInterval(Duration.ofMillis(50));
+        WatchFolderService watchFolderService = new WatchFolderService(watchFolderProperties, fileConverterService, largeFileProperties, conversionMetrics);
+        watchFolderService.start();
+        return watchFolderService;
+    }
+
+    private void copy(String resource, String fileName) throws IOException {
+        Path temporary = Files.createTempFile(directory, ".drop", ".tmp");
+        try (InputStream inputStream = new ClassPathResource(resource).getInputStream()) {
+            Files.copy(inputStream, temporary, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(temporary, directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void awaitProcessed(String fileName) throws InterruptedException {
+        Path processed = directory.resolve("processed").resolve(fileName);
+        for (int i = 0; i < 200 && !Files.exists(processed); i++)
+            Thread.sleep(50);
+        Assertions.assertTrue(Files.exists(processed), fileName + " is not processed");
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.softhouse.integration.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CommonEnumTest {
+
+    private static final char[] ALPHABET = {'0', '1', '9', '-', ' ', '\t', 'a', '٣'};
+
+    @Test
+    void phonePatternMatchesLikeRegex() {
+        Random random = new Random(7);
+        List<String> values = new ArrayList<>(List.of("0768-101801", " 08-101802 ", "08101801", "768-101801", "0768-1018011", ""));
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int i = 0; i < length; i++)
+                sb.append(random.nextInt(3) == 0 ? ALPHABET[random.nextInt(ALPHABET.length)] : (char) ('0' + random.nextInt(10)));
+            if (sb.length() > 4)
+                sb.setCharAt(random.nextBoolean() ? 2 : 4, '-');
+            values.add(sb.toString());
+        }
+        for (String value : values) {
+            char[] buffer = ("|" + value + "|").toCharArray();
+            for (CommonEnum.PhonePattern phonePattern : CommonEnum.PhonePattern.values())
+                Assertions.assertEquals(phonePattern.getPattern().matcher(value.trim()).matches(), phonePattern.matches(buffer, 1, buffer.length - 1), value);
+        }
+    }
+
+}
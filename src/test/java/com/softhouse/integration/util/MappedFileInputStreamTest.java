@@ -0,0 +1,31 @@
+package com.softhouse.integration.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+class MappedFileInputStreamTest {
+
+    @Test
+    void readAcrossWindows(@TempDir Path directory) throws IOException {
+        byte[] content = new ClassPathResource("sampleCSV1.csv").getInputStream().readAllBytes();
+        Path path = Files.write(directory.resolve("sample.csv"), content);
+        for (long windowSize : new long[]{1, 7, content.length, content.length + 1L}) {
+            try (InputStream inputStream = new MappedFileInputStream(path, windowSize)) {
+                Assertions.assertArrayEquals(content, inputStream.readAllBytes());
+                Assertions.assertEquals(-1, inputStream.read());
+            }
+        }
+        Path empty = Files.createFile(directory.resolve("empty.csv"));
+        try (InputStream inputStream = new MappedFileInputStream(empty, 16)) {
+            Assertions.assertEquals(-1, inputStream.read());
+        }
+    }
+
+}